@@ -3,50 +3,251 @@ package de.codesourcery.fft;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.IdentityHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.ThreadPoolExecutor.AbortPolicy;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.sound.sampled.AudioFormat;
 import javax.sound.sampled.AudioFormat.Encoding;
 
-import de.codesourcery.fft.filter.BiQuadFilter;
-import de.codesourcery.fft.filter.FilterCascade;
+import de.codesourcery.fft.filter.BiQuadCascade;
+import de.codesourcery.fft.filter.BiQuadCoefficients;
 import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+import de.codesourcery.fft.filter.Decimator;
+import de.codesourcery.fft.filter.FilterChainConfig;
+import de.codesourcery.fft.filter.FilterChainConfig.Section;
+import de.codesourcery.fft.filter.ParallelBiQuadFilter;
 import de.codesourcery.fft.filter.Filter;
+import de.codesourcery.fft.filter.SpectralGainTable;
 import de.codesourcery.fft.filter.Filter.NOPFilter;
+import de.codesourcery.fft.kernels.SampleKernels;
 import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
 
 public abstract class AbstractSpectrumProvider implements ISpectrumProvider
 {
-	private final Object LOCK = new Object();
-
 	public static final Filter NOP_FILTER = new NOPFilter();
 
-	// @GuardedBy( LOCK )
-	private Spectrum spectrum;
+	/**
+	 * Max. deviation of parallel filtering from serial filtering , relative to the peak amplitude.
+	 */
+	public static final double PARALLEL_FILTER_TOLERANCE = 1e-6;
+
+	protected static final SampleKernels KERNELS = SampleKernels.getInstance();
+
+	// windowing function coefficients by window size
+	private static final ConcurrentHashMap<Integer,double[]> WINDOWS = new ConcurrentHashMap<>();
+
+	// spectra calculated from the current data of a static provider, replaced as a whole on every change
+	private final AtomicReference<SpectrumCache> cache = new AtomicReference<>( new SpectrumCache( 0 , new HashMap<Parameters,Spectrum>() ) );
+
+	private final Set<ICallback> pendingRequests = Collections.newSetFromMap( new ConcurrentHashMap<ICallback,Boolean>() );
+
+	// calculations currently running for a static provider , requests for the same parameters just wait for the result
+	private final ConcurrentHashMap<Parameters,PendingCalculation> inFlight = new ConcurrentHashMap<>();
+
+	private final AnalysisPool.Lane worker;
+
+	// delivers pushed spectra so that slow subscribers never stall the worker thread
+	private static final ExecutorService DELIVERY_POOL = Executors.newCachedThreadPool( new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			final Thread t = new Thread( r , "spectrum-delivery" );
+			t.setDaemon( true );
+			return t;
+		}
+	});
 
-	private static final Integer DUMMY = new Integer(0);
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
 
-	// @GuardedBy( LOCK )
-	private final Map<ICallback,Integer> pendingRequests = new IdentityHashMap<>();
+	private final AtomicBoolean publisherScheduled = new AtomicBoolean(false);
 
-	private final ExecutorService threadPool;
+	private volatile boolean closed;
 
-	private final Filter filter;
+	private final Runnable publisher = new Runnable() {
+
+		@Override
+		public void run()
+		{
+			try {
+				publishToSubscribers();
+			} 
+			catch(Exception e) {
+				e.printStackTrace();
+			} 
+			finally 
+			{
+				publisherScheduled.set( false );
+				if ( ! isStatic() || hasStaleSubscriptions() ) {
+					schedulePublisher();
+				}
+			}
+		}
+	};
+
+	private final AtomicReference<FilterChainConfig> filterChain = new AtomicReference<>();
+
+	// whether to apply the filters' magnitude response to the power spectrum instead of filtering the samples
+	private volatile boolean spectralFiltering;
+
+	/**
+	 * Pitch detection algorithms.
+	 */
+	public static enum PitchDetection 
+	{
+		/**
+		 * Calculate the auto-correlation (using a second FFT) and report its strongest peaks.
+		 * @see Spectrum#getTopAutoCorrelated()
+		 */
+		AUTOCORRELATION,
+		/**
+		 * Detect the fundamental frequency directly from the power spectrum.
+		 * @see Spectrum#getFundamentalFrequency()
+		 * @see HarmonicProductSpectrum
+		 */
+		HARMONIC_PRODUCT_SPECTRUM,
+		/**
+		 * Like {@link #HARMONIC_PRODUCT_SPECTRUM} but live providers only search near the previous
+		 * pitch while a note is held. Static providers always perform a full search.
+		 * @see PitchTracker
+		 */
+		TRACKING;
+	}
+
+	private static final HarmonicProductSpectrum HPS = new HarmonicProductSpectrum();
+
+	private volatile PitchDetection pitchDetection = PitchDetection.AUTOCORRELATION;
+
+	// whether static providers filter long signals on multiple threads
+	private volatile boolean parallelFiltering;
+
+	// 1 = no decimation
+	private volatile int decimationFactor = 1;
+
+	// null = calculate full spectra
+	private volatile GoertzelBank targetedBins;
+
+	// pitch tracker for each parameter set of a live provider
+	// @GuardedBy( worker ) , live providers run on a serial lane
+	private final Map<Parameters,PitchTracker> liveTrackers = new HashMap<>();
+
+	// null = every chunk gets analysed
+	private volatile SilenceGate silenceGate;
+
+	// gate state for each parameter set of a live provider
+	// @GuardedBy( worker ) , live providers run on a serial lane
+	private final Map<Parameters,SilenceGate.Detector> liveGates = new HashMap<>();
+
+	// decimator for each parameter set of a live provider
+	// @GuardedBy( worker ) , live providers run on a serial lane
+	private final Map<Parameters,Decimator> liveDecimators = new HashMap<>();
+
+	// filter state for each parameter set of a live provider, consecutive calculations process a continuous stream
+	// @GuardedBy( worker ) , live providers run on a serial lane
+	private final Map<Parameters,Filter> liveFilters = new HashMap<>();
+	// design the live filters were created from
+	// @GuardedBy( worker )
+	private BiQuadCoefficients[] liveFilterDesign;
 
 	private final AudioFormat audioFormat;
 	private final boolean signedSamples;
 
 	private final WaveWriter waveWriter;    
 
+	/**
+	 * Immutable set of parameters a spectrum is calculated with.
+	 */
+	protected static final class Parameters 
+	{
+		public final int fftSize;
+		public final boolean applyWindowingFunction;
+		public final boolean applyFilters;
+
+		public Parameters(int fftSize, boolean applyWindowingFunction,boolean applyFilters) 
+		{
+			this.fftSize = fftSize;
+			this.applyWindowingFunction = applyWindowingFunction;
+			this.applyFilters = applyFilters;
+		}
+
+		public boolean matches(Spectrum s) 
+		{
+			return s.getFFTSize() == fftSize && s.isWindowFunctionApplied() == applyWindowingFunction && s.isFiltersApplied() == applyFilters;
+		}
+
+		@Override
+		public boolean equals(Object obj) 
+		{
+			if ( obj instanceof Parameters ) 
+			{
+				final Parameters o = (Parameters) obj;
+				return o.fftSize == fftSize && o.applyWindowingFunction == applyWindowingFunction && o.applyFilters == applyFilters;
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() 
+		{
+			return 31*fftSize + ( applyWindowingFunction ? 2 : 0 ) + ( applyFilters ? 1 : 0 );
+		}
+
+		@Override
+		public String toString() {
+			return "Parameters [fftSize=" + fftSize + ", applyWindowingFunction=" + applyWindowingFunction + ", applyFilters=" + applyFilters + "]";
+		}
+	}
+
+	/**
+	 * Immutable snapshot of all spectra calculated for one generation of (static) input data.
+	 */
+	private static final class SpectrumCache 
+	{
+		public final long generation;
+		private final Map<Parameters,Spectrum> spectra;
+
+		public SpectrumCache(long generation,Map<Parameters,Spectrum> spectra) 
+		{
+			this.generation = generation;
+			this.spectra = spectra;
+		}
+
+		public Spectrum get(Parameters parameters) {
+			return spectra.get( parameters );
+		}
+
+		public SpectrumCache with(Parameters parameters,Spectrum spectrum) 
+		{
+			final Map<Parameters,Spectrum> copy = new HashMap<>( spectra );
+			copy.put( parameters , spectrum );
+			return new SpectrumCache( generation , copy );
+		}
+
+		public SpectrumCache nextGeneration() {
+			return new SpectrumCache( generation+1 , new HashMap<Parameters,Spectrum>() );
+		}
+	}
+
 	public AbstractSpectrumProvider(AudioFormat audioFormat,File waveFile) throws FileNotFoundException 
+	{
+		this(audioFormat,waveFile,AnalysisPool.getDefault());
+	}
+
+	public AbstractSpectrumProvider(AudioFormat audioFormat,File waveFile,AnalysisPool pool) throws FileNotFoundException 
 	{
 		if ( waveFile != null ) 
 		{
@@ -67,111 +268,633 @@ public abstract class AbstractSpectrumProvider implements ISpectrumProvider
 			this.waveWriter = null;
 		}
 		
-		Filter highPass = BiQuadFilter.create( BiQuadType.HIGHPASS , 200 , audioFormat.getSampleRate() , 1 , 6 ); 
-        Filter lowPass = BiQuadFilter.create( BiQuadType.LOWPASS , 18000 , audioFormat.getSampleRate() , 1 , 6 );
-        
-        this.filter = new FilterCascade( highPass , lowPass );
+		this.audioFormat = audioFormat;
+		FilterChainConfig defaultChain = new FilterChainConfig( new Section( BiQuadType.HIGHPASS , 200 , 1 , 6 ) );
+		if ( 18000 < audioFormat.getSampleRate() / 2 ) {
+			defaultChain = defaultChain.with( new Section( BiQuadType.LOWPASS , 18000 , 1 , 6 ) );
+		}
+		this.filterChain.set( defaultChain );
         
 		this.signedSamples = audioFormat.getEncoding() == Encoding.PCM_SIGNED || audioFormat.getEncoding() == Encoding.PCM_FLOAT;        
 
-		final BlockingQueue<Runnable> workQueue = new ArrayBlockingQueue<>(10);
-
-		final ThreadFactory threadFactory = new ThreadFactory() {
-
-			@Override
-			public Thread newThread(final Runnable r)
-			{
-				final Thread t = new Thread("worker-thread") {
-					@Override
-					public void run()
-					{
-						r.run();
-					}
-				};
-				t.setDaemon( true );
-				return t;
-			}};
+		if ( isStatic() ) {
+			// calculations on static data are independent of each other
+			this.worker = pool.attach( getClass().getSimpleName() , false , pool.getThreadCount() );
+		} else {
 			// ringbuffer implementation is based on the assumption of exactly ONE reader and writer
-			// so thread pool must not use more than one thread
-			threadPool = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, workQueue, threadFactory, new AbortPolicy() );
+			// so all calculations of this provider need to run on the same (serial) lane
+			this.worker = pool.attach( getClass().getSimpleName() , true );
+		}
+	}
 
-			this.audioFormat = audioFormat;
+	/**
+	 * Returns the filter to use for a calculation.
+	 * 
+	 * Static calculations always start from a clean filter state, live providers
+	 * keep one filter state per parameter set so the stream is filtered without discontinuities.
+	 */
+	private Filter getFilter(Parameters parameters,BiQuadCoefficients[] design) 
+	{
+		if ( isStatic() ) {
+			return new BiQuadCascade( design );
+		}
+		if ( design != liveFilterDesign ) 
+		{
+			// filter chain has been swapped
+			liveFilters.clear();
+			liveFilterDesign = design;
+		}
+		Filter result = liveFilters.get( parameters );
+		if ( result == null ) 
+		{
+			result = new BiQuadCascade( design );
+			liveFilters.put( parameters , result );
+		}
+		return result;
 	}
 
 	public final AudioFormat getAudioFormat() {
 		return audioFormat;
 	}
 
+	/**
+	 * Replaces the filter chain used for spectra calculated with <code>applyFilters</code> set.
+	 * 
+	 * The new chain gets picked up by the next calculation , calculations that are already 
+	 * running finish with the chain they started with. Live providers start filtering from
+	 * a clean state when the chain changes.
+	 * 
+	 * @param config
+	 * @throws IllegalArgumentException if a section's cut-off frequency is not below the Nyquist frequency of this provider
+	 */
+	public final void setFilterChain(FilterChainConfig config) 
+	{
+		if ( config == null ) {
+			throw new IllegalArgumentException("Filter chain must not be NULL");
+		}
+		// fail fast on sections that can't be realized at our sample rate
+		config.getDesign( audioFormat.getSampleRate() );
+		if ( ! config.equals( filterChain.getAndSet( config ) ) ) {
+			invalidateCache();
+		}
+	}
+
+	public final FilterChainConfig getFilterChain() {
+		return filterChain.get();
+	}
+
+	/**
+	 * Switches between time-domain and spectral-domain filtering.
+	 * 
+	 * In spectral mode , spectra calculated with <code>applyFilters</code> set skip the time-domain 
+	 * filter pass and get the filters' power response applied to each FFT bin instead. The resulting power spectrum 
+	 * is (apart from filter transients) the same but costs almost nothing to calculate.
+	 * Note that the debug WAV file will contain unfiltered data in spectral mode.
+	 * 
+	 * @param yesNo
+	 */
+	public final void setSpectralFiltering(boolean yesNo) 
+	{
+		if ( this.spectralFiltering != yesNo ) 
+		{
+			this.spectralFiltering = yesNo;
+			invalidateCache();
+		}
+	}
+
+	public final boolean isSpectralFiltering() {
+		return spectralFiltering;
+	}
+
+	/**
+	 * Enables filtering long signals of static providers in chunks on multiple threads.
+	 * 
+	 * Results deviate from serial filtering by at most {@link #PARALLEL_FILTER_TOLERANCE} (relative to
+	 * the peak amplitude) , live providers always filter serially. Has no effect while spectral filtering
+	 * is enabled , since there is no time-domain filter pass then.
+	 * 
+	 * @param yesNo
+	 * @see ParallelBiQuadFilter
+	 * @see #setSpectralFiltering(boolean)
+	 */
+	public final void setParallelFiltering(boolean yesNo) {
+		this.parallelFiltering = yesNo;
+	}
+
+	public final boolean isParallelFiltering() {
+		return parallelFiltering;
+	}
+
+	/**
+	 * Selects the pitch detection algorithm.
+	 * 
+	 * @param detection
+	 */
+	public final void setPitchDetection(PitchDetection detection) 
+	{
+		if ( detection == null ) {
+			throw new IllegalArgumentException("Pitch detection must not be NULL");
+		}
+		if ( this.pitchDetection != detection ) 
+		{
+			this.pitchDetection = detection;
+			invalidateCache();
+		}
+	}
+
+	public final PitchDetection getPitchDetection() {
+		return pitchDetection;
+	}
+
+	/**
+	 * Sets the factor by which sample data gets decimated (after filtering) before performing the FFT.
+	 * 
+	 * Decimating by a factor of N yields the same frequency resolution with an N times smaller FFT size 
+	 * but limits the analysed frequency range to 1/N of the original Nyquist frequency. Spectra carry the 
+	 * reduced sample rate.
+	 * 
+	 * @param factor 1 (no decimation) or a factor between {@link Decimator#MIN_FACTOR} and {@link Decimator#MAX_FACTOR}
+	 */
+	public final void setDecimationFactor(int factor) 
+	{
+		if ( factor != 1 && ( factor < Decimator.MIN_FACTOR || factor > Decimator.MAX_FACTOR ) ) {
+			throw new IllegalArgumentException("Unsupported decimation factor: "+factor);
+		}
+		if ( this.decimationFactor != factor ) 
+		{
+			this.decimationFactor = factor;
+			invalidateCache();
+		}
+	}
+
+	public final int getDecimationFactor() {
+		return decimationFactor;
+	}
+
+	/**
+	 * Sets the gate that decides whether sample data is loud enough to be analysed.
+	 * 
+	 * Chunks rejected by the gate skip filtering , FFT and pitch detection altogether and yield
+	 * a {@link Spectrum#silent(int, double, boolean, boolean, double) silent} spectrum instead. Live providers
+	 * keep one gate state per parameter set , static providers evaluate their data as a single chunk.
+	 * Note that live filters do not see the rejected chunks , so they may ring briefly when the gate opens.
+	 * 
+	 * @param gate gate to use , <code>null</code> to analyse all data
+	 */
+	public final void setSilenceGate(SilenceGate gate) 
+	{
+		final SilenceGate previous = this.silenceGate;
+		this.silenceGate = gate;
+		if ( previous == null ? gate != null : ! previous.equals( gate ) ) {
+			invalidateCache();
+		}
+	}
+
+	public final SilenceGate getSilenceGate() {
+		return silenceGate;
+	}
+
+	/**
+	 * Switches to (or from) targeted mode.
+	 * 
+	 * In targeted mode , filtered and decimated sample data is windowed as a whole and only the bank's 
+	 * target frequencies get evaluated. Neither FFT nor pitch detection is performed , results carry the
+	 * {@link Spectrum#getTargetedBins() targeted bins} and an empty power spectrum.
+	 * 
+	 * @param bank target frequencies , <code>null</code> to calculate full spectra
+	 * @see GoertzelBank#forKeys(de.codesourcery.fft.TuningHelper.Key...)
+	 */
+	public final void setTargetedBins(GoertzelBank bank) 
+	{
+		if ( this.targetedBins != bank ) 
+		{
+			this.targetedBins = bank;
+			invalidateCache();
+		}
+	}
+
+	public final GoertzelBank getTargetedBins() {
+		return targetedBins;
+	}
+
+	private SilenceGate.Detector getSilenceDetector(Parameters parameters,SilenceGate gate) 
+	{
+		if ( isStatic() ) {
+			return gate.createDetector();
+		}
+		SilenceGate.Detector result = liveGates.get( parameters );
+		if ( result == null || result.getGate() != gate ) 
+		{
+			result = gate.createDetector();
+			liveGates.put( parameters , result );
+		}
+		return result;
+	}
+
+	// amplitude corresponding to 0 dBFS , the DC offset of unsigned samples gets removed by the gate
+	private double getFullScale() {
+		return 1 << ( audioFormat.getSampleSizeInBits() - 1 );
+	}
+
+	private PitchTracker getPitchTracker(Parameters parameters) 
+	{
+		PitchTracker result = liveTrackers.get( parameters );
+		if ( result == null ) 
+		{
+			result = new PitchTracker();
+			liveTrackers.put( parameters , result );
+		}
+		return result;
+	}
+
+	private Decimator getDecimator(Parameters parameters,int factor) 
+	{
+		if ( isStatic() ) {
+			return new Decimator( factor );
+		}
+		Decimator result = liveDecimators.get( parameters );
+		if ( result == null || result.getFactor() != factor ) 
+		{
+			result = new Decimator( factor );
+			liveDecimators.put( parameters , result );
+		}
+		return result;
+	}
+
 	@Override
 	public final void calcSpectrum(final ICallback callback,final int fftSize,final boolean applyWindowingFunction,boolean applyFilters) 
 	{
-		Spectrum tmp = null;
-		synchronized(LOCK) 
+		final Parameters parameters = new Parameters(fftSize,applyWindowingFunction,applyFilters);
+		final Spectrum cached = isStatic() ? cache.get().get( parameters ) : null;
+		if ( cached != null ) {
+			callback.calculationFinished( this , cached );
+			return;
+		}
+
+		if ( ! pendingRequests.add( callback ) ) {
+			System.out.println("Calculation still pending");
+			return;
+		}
+
+		if ( ! isStatic() ) 
 		{
-			if ( ! isStatic() || spectrum == null || spectrum.getFFTSize() != fftSize || 
-					spectrum.isWindowFunctionApplied() != applyWindowingFunction || spectrum.isFiltersApplied() != applyFilters )
+			final PendingCalculation calculation = new PendingCalculation( parameters , -1 );
+			calculation.addCallback( callback );
+			runInBackground( calculation );
+			return;
+		}
+
+		while ( true ) 
+		{
+			final long generation = cache.get().generation;
+			final PendingCalculation existing = inFlight.get( parameters );
+			if ( existing != null && existing.generation == generation && existing.addCallback( callback ) ) {
+				return;
+			}
+			final PendingCalculation calculation = new PendingCalculation( parameters , generation );
+			calculation.addCallback( callback );
+			final boolean registered = existing == null ? inFlight.putIfAbsent( parameters , calculation ) == null : inFlight.replace( parameters , existing , calculation );
+			if ( registered ) 
 			{
-				if ( ! pendingRequests.containsKey( callback ) )
+				runInBackground( calculation );
+				return;
+			}
+		}
+	}
+	
+	@Override
+	public final ISubscription subscribe(ICallback subscriber,int fftSize,boolean applyWindowingFunction,boolean applyFilters) 
+	{
+		final Subscription result = new Subscription(subscriber,new Parameters(fftSize,applyWindowingFunction,applyFilters));
+		if ( isStatic() ) 
+		{
+			final Spectrum cached = cache.get().get( result.parameters );
+			if ( cached != null ) 
+			{
+				result.stale.set( false );
+				result.offer( cached );
+			}
+		}
+		subscriptions.add( result );
+		schedulePublisher();
+		return result;
+	}
+
+	private void schedulePublisher() 
+	{
+		if ( closed || subscriptions.isEmpty() ) {
+			return;
+		}
+		if ( publisherScheduled.compareAndSet( false , true ) ) 
+		{
+			try {
+				worker.execute( publisher );
+			} 
+			catch(RejectedExecutionException e) {
+				publisherScheduled.set( false );
+			}
+		}
+	}
+
+	private boolean hasStaleSubscriptions() 
+	{
+		for ( Subscription s : subscriptions ) {
+			if ( s.stale.get() ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Calculates one spectrum for each distinct parameter set requested by the current 
+	 * subscribers and pushes it to them.
+	 * 
+	 * Live providers serve all subscribers from the same chunk of sample data, static
+	 * providers only serve subscribers that have not seen the current data yet and calculate
+	 * different parameter sets in parallel.
+	 */
+	private void publishToSubscribers() 
+	{
+		final Map<Parameters,List<Subscription>> groups = new LinkedHashMap<>();
+		for ( Subscription s : subscriptions ) 
+		{
+			if ( ! isStatic() || s.stale.compareAndSet( true , false ) ) 
+			{
+				List<Subscription> group = groups.get( s.parameters );
+				if ( group == null ) {
+					group = new ArrayList<>();
+					groups.put( s.parameters , group );
+				}
+				group.add( s );
+			}
+		}
+		if ( groups.isEmpty() ) {
+			return;
+		}
+
+		if ( isStatic() ) 
+		{
+			final long generation = cache.get().generation;
+			final Iterator<Map.Entry<Parameters,List<Subscription>>> it = groups.entrySet().iterator();
+			while ( it.hasNext() ) 
+			{
+				final Map.Entry<Parameters,List<Subscription>> entry = it.next();
+				final Runnable task = new Runnable() {
+
+					@Override
+					public void run() {
+						publish( generation , null , entry.getKey() , entry.getValue() );
+					}
+				};
+				if ( ! it.hasNext() ) {
+					task.run();
+				} 
+				else 
 				{
-					runInBackground(callback, fftSize, applyWindowingFunction,applyFilters);
+					try {
+						worker.execute( task );
+					} 
+					catch(RejectedExecutionException e) {
+						task.run();
+					}
+				}
+			}
+			return;
+		}
+
+		final SampleData sampleData = getData();
+		final Iterator<Map.Entry<Parameters,List<Subscription>>> it = groups.entrySet().iterator();
+		while ( it.hasNext() ) 
+		{
+			final Map.Entry<Parameters,List<Subscription>> entry = it.next();
+			// windowing function and filters modify the sample data in-place
+			publish( -1 , it.hasNext() ? sampleData.copy() : sampleData , entry.getKey() , entry.getValue() );
+		}
+	}
+
+	private void publish(long generation,SampleData sampleData,Parameters parameters,List<Subscription> group) 
+	{
+		Spectrum result = null;
+		try {
+			result = sampleData != null ? calculateSpectrum( sampleData , parameters ) : calculateSpectrum( parameters );
+		} 
+		finally 
+		{
+			if ( result != null && isStatic() && ! storeInCache( generation , parameters , result ) ) {
+				// input data changed while we were busy , subscribers will get the up-to-date spectrum soon
+				return;
+			}
+			for ( Subscription s : group ) 
+			{
+				if ( result != null ) {
+					s.offer( result );
 				} else {
-					System.out.println("Calculation still pending");
+					s.fail();
 				}
-			} else {
-				tmp = spectrum;
 			}
-		} // end synchronized
+		}
+	}
 
-		if ( tmp != null ) {
-			callback.calculationFinished( this , tmp );
+	/**
+	 * Adds a spectrum to the cache unless the input data has been invalidated
+	 * after the calculation started.
+	 * 
+	 * @return <code>false</code> if the spectrum is outdated
+	 */
+	private boolean storeInCache(long generation,Parameters parameters,Spectrum spectrum) 
+	{
+		while ( true ) 
+		{
+			final SpectrumCache current = cache.get();
+			if ( current.generation != generation ) {
+				return false;
+			}
+			if ( cache.compareAndSet( current , current.with( parameters , spectrum ) ) ) {
+				return true;
+			}
 		}
 	}
-	
-	private void runInBackground(final ICallback callback, final int fftSize, final boolean applyWindowingFunction,final boolean applyFilters)
+
+	protected final class Subscription implements ISubscription, Runnable 
 	{
-		final Runnable runnable = new Runnable() {
+		private final ICallback subscriber;
+		private final Parameters parameters;
+
+		// whether the subscriber has not seen a spectrum for the current data yet (static providers only) 
+		private final AtomicBoolean stale = new AtomicBoolean(true);
+
+		// latest spectrum not yet delivered , older ones get overwritten
+		private final AtomicReference<Spectrum> latest = new AtomicReference<>();
+		private final AtomicBoolean deliveryScheduled = new AtomicBoolean(false);
+
+		private volatile boolean cancelled;
+
+		public Subscription(ICallback subscriber, Parameters parameters) 
+		{
+			this.subscriber = subscriber;
+			this.parameters = parameters;
+		}
+
+		public void offer(Spectrum spectrum) 
+		{
+			latest.set( spectrum );
+			scheduleDelivery();
+		}
 
-			@Override
-			public void run()
+		private void scheduleDelivery() 
+		{
+			if ( ! cancelled && deliveryScheduled.compareAndSet( false , true ) ) 
 			{
-				Spectrum result=null;
 				try {
-					result = calculateSpectrum(fftSize,applyWindowingFunction,applyFilters);
+					DELIVERY_POOL.execute( this );
 				} 
-				finally 
-				{
-					synchronized(LOCK) 
-					{
-						if ( result != null ) {
-							spectrum = result;
-						}
-						pendingRequests.remove( callback );
+				catch(RejectedExecutionException e) {
+					deliveryScheduled.set( false );
+				}
+			}
+		}
+
+		public void fail() 
+		{
+			if ( ! cancelled ) 
+			{
+				DELIVERY_POOL.execute( new Runnable() {
+
+					@Override
+					public void run() {
+						subscriber.calculationFailed( AbstractSpectrumProvider.this );
 					}
+				});
+			}
+		}
 
-					if ( result != null ) {
-						callback.calculationFinished( AbstractSpectrumProvider.this , result );
-					} else {
-						callback.calculationFailed( AbstractSpectrumProvider.this );
+		@Override
+		public void run() 
+		{
+			while ( true ) 
+			{
+				final Spectrum s = latest.getAndSet( null );
+				if ( s == null ) 
+				{
+					deliveryScheduled.set( false );
+					// offer() might have raced with us
+					if ( latest.get() != null && deliveryScheduled.compareAndSet( false , true ) ) {
+						continue;
 					}
+					return;
+				}
+				if ( cancelled ) {
+					continue;
+				}
+				try {
+					subscriber.calculationFinished( AbstractSpectrumProvider.this , s );
+				} 
+				catch(Exception e) {
+					e.printStackTrace();
+				}
+			}
+		}
+
+		@Override
+		public void cancel() 
+		{
+			cancelled = true;
+			subscriptions.remove( this );
+		}
+	}
+
+	/**
+	 * A calculation requested through {@link #calcSpectrum(ICallback, int, boolean, boolean)} 
+	 * along with all callbacks waiting for it.
+	 */
+	private final class PendingCalculation implements Runnable 
+	{
+		public final Parameters parameters;
+		public final long generation;
+
+		// @GuardedBy( this )
+		private final List<ICallback> callbacks = new ArrayList<>(1);
+		// @GuardedBy( this )
+		private boolean done;
+
+		public PendingCalculation(Parameters parameters, long generation) 
+		{
+			this.parameters = parameters;
+			this.generation = generation;
+		}
+
+		/**
+		 * @return <code>false</code> if the calculation has already finished 
+		 */
+		public synchronized boolean addCallback(ICallback callback) 
+		{
+			if ( done ) {
+				return false;
+			}
+			callbacks.add( callback );
+			return true;
+		}
+
+		@Override
+		public void run() 
+		{
+			Spectrum result=null;
+			try {
+				result = calculateSpectrum( parameters );
+			} 
+			finally {
+				finish( result );
+			}
+		}
+
+		public void finish(Spectrum result) 
+		{
+			if ( isStatic() ) 
+			{
+				inFlight.remove( parameters , this );
+				if ( result != null ) {
+					storeInCache( generation , parameters , result );
+				}
+			}
+
+			final List<ICallback> toNotify;
+			synchronized( this ) 
+			{
+				done = true;
+				toNotify = callbacks;
+			}
+			for ( ICallback callback : toNotify ) 
+			{
+				pendingRequests.remove( callback );
+				if ( result != null ) {
+					callback.calculationFinished( AbstractSpectrumProvider.this , result );
+				} else {
+					callback.calculationFailed( AbstractSpectrumProvider.this );
 				}
 			}
-		};
+		}
+	}
 
+	private void runInBackground(PendingCalculation calculation)
+	{
 		try 
 		{
-			// calling method has already aquired LOCK 
-			pendingRequests.put( callback , DUMMY );
-			threadPool.submit( runnable );
+			worker.execute( calculation );
 		} 
-		catch(Exception e) {
-			pendingRequests.remove( callback );
+		catch(RejectedExecutionException e) {
+			calculation.finish( null );
 		}
 	}	
 
 	public void close() 
 	{
-		System.out.println("Terminating worker pool");
-		threadPool.shutdownNow();
+		closed = true;
+		for ( Subscription s : subscriptions ) {
+			s.cancel();
+		}
+		System.out.println("Detaching from analysis pool");
+		worker.close();
 
 		if ( waveWriter != null ) {
 			try {
@@ -184,10 +907,17 @@ public abstract class AbstractSpectrumProvider implements ISpectrumProvider
 
 	protected final void invalidateCache() 
 	{
-		synchronized(LOCK) 
+		while ( true ) 
 		{
-			this.spectrum = null;
+			final SpectrumCache current = cache.get();
+			if ( cache.compareAndSet( current , current.nextGeneration() ) ) {
+				break;
+			}
 		}
+		for ( Subscription s : subscriptions ) {
+			s.stale.set( true );
+		}
+		schedulePublisher();
 	}
 
 	protected static final class SampleData 
@@ -201,24 +931,65 @@ public abstract class AbstractSpectrumProvider implements ISpectrumProvider
 			this.minSample = minSample;
 			this.maxSample = maxSample;
 		}
+
+		public SampleData copy() {
+			return new SampleData( data.clone() , minSample , maxSample );
+		}
 	}
 
 	protected abstract SampleData getData();
 
-	protected final synchronized Spectrum calculateSpectrum(final int fftSize,final boolean applyWindowingFunction , boolean applyFilters )
+	/**
+	 * Calculates a spectrum from the current sample data.
+	 * 
+	 * Static providers may run any number of calculations in parallel , live providers
+	 * must only be invoked from their (serial) worker lane.
+	 */
+	protected final Spectrum calculateSpectrum(Parameters parameters)
+	{
+		return calculateSpectrum( getData() , parameters );
+	}
+
+	protected final Spectrum calculateSpectrum(SampleData sampleData,Parameters parameters)
 	{
-		// aquire sample data
+		final int fftSize = parameters.fftSize;
+		final boolean applyWindowingFunction = parameters.applyWindowingFunction;
+		final boolean applyFilters = parameters.applyFilters;
+		final int decimationFactor = this.decimationFactor;
+		final BiQuadCoefficients[] filterDesign = filterChain.get().getDesign( audioFormat.getSampleRate() );
+		final boolean filter = applyFilters && filterDesign.length > 0;
+		final GoertzelBank bank = this.targetedBins;
+		// targeted bins are evaluated on the samples , so they always need the time-domain filter pass
+		final double[] binGains = filter && spectralFiltering && bank == null ? SpectralGainTable.getPowerGains( filterDesign , fftSize , decimationFactor ) : null;
+		final SilenceGate gate = this.silenceGate;
+
+		// cheap check before doing any real work
+		if ( gate != null && ! getSilenceDetector( parameters , gate ).process( sampleData.data , getFullScale() ) ) 
+		{
+			if ( ! isStatic() ) {
+				// whatever we were tracking is gone
+				liveTrackers.remove( parameters );
+			}
+			return Spectrum.silent( fftSize , getAudioFormat().getSampleRate() / decimationFactor , applyWindowingFunction , 
+					applyFilters , calcVolume( sampleData.minSample, sampleData.maxSample ) );
+		}
+
 		long startTime = System.currentTimeMillis();
 
-		final SampleData sampleData = getData();
 		double[] jointStereo = sampleData.data;
 
 		long dataAquisitionTime = System.currentTimeMillis();
 
 		// apply filters
-		if ( applyFilters ) 
+		if ( filter && binGains == null ) 
 		{ 
-			jointStereo = filter.filter( jointStereo );
+			if ( parallelFiltering && isStatic() && jointStereo.length > 2*ParallelBiQuadFilter.DEFAULT_CHUNK_SIZE ) 
+			{
+				final ParallelBiQuadFilter parallel = new ParallelBiQuadFilter( filterDesign , ParallelBiQuadFilter.DEFAULT_CHUNK_SIZE , PARALLEL_FILTER_TOLERANCE );
+				jointStereo = parallel.filter( jointStereo , worker );
+			} else {
+				jointStereo = getFilter( parameters , filterDesign ).filter( jointStereo );
+			}
 		}
 		long filterTime = System.currentTimeMillis();
 
@@ -226,20 +997,41 @@ public abstract class AbstractSpectrumProvider implements ISpectrumProvider
 		if ( waveWriter != null ) 
 		{
 			try {
-				waveWriter.write( jointStereo, 0 , jointStereo.length );
+				synchronized( waveWriter ) {
+					waveWriter.write( jointStereo, 0 , jointStereo.length );
+				}
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
 		}
 		long wavWriteTime = System.currentTimeMillis();
 
-		// optionally, apply a windowing function to the sample data        
-		if ( applyWindowingFunction ) {
-			applyWindowingFunction( jointStereo , fftSize );
-		}        
+		if ( decimationFactor > 1 ) {
+			jointStereo = getDecimator( parameters , decimationFactor ).decimate( jointStereo );
+		}
+
+		if ( bank != null ) 
+		{
+			if ( applyWindowingFunction ) 
+			{
+				// resolution only depends on the length of the data , so window all of it at once
+				// (not cached , static data may be arbitrarily long)
+				final int len = jointStereo.length;
+				for ( int n = 0 ; n < len ; n++ ) {
+					jointStereo[n] *= 0.5 - 0.5*Math.cos( (2*Math.PI*n) / ( len-1 ) );
+				}
+			}
+			final double sampleRate = getAudioFormat().getSampleRate() / decimationFactor;
+			return Spectrum.targeted( fftSize , sampleRate , applyWindowingFunction , applyFilters , 
+					calcVolume( sampleData.minSample, sampleData.maxSample ) , bank.evaluate( jointStereo , sampleRate ) );
+		}
+
+		// optionally, apply a windowing function to each frame , frames overlap so this happens on a copy of each frame
+		final double[] window = applyWindowingFunction ? getWindow( fftSize ) : null;
 		long windowFuncTime = System.currentTimeMillis();        
 
 		final double[] fftData = new double[ fftSize * 2 ]; // need to allocate twice the FFT size , array needs to hold real and imaginary components
+		final double[] frame = new double[ fftSize ];
 		final double[] spectrum = new double[ fftSize ]; 
 
 		// loop over samples , performing FFT on each window 
@@ -247,62 +1039,65 @@ public abstract class AbstractSpectrumProvider implements ISpectrumProvider
 		final DoubleFFT_1D fft = new DoubleFFT_1D(fftSize);
 
 		final double[] compensation = new double[fftSize]; // Kahan summation compensation for each FFT bin
-		final double step = fftSize*0.33;
+		// constant hop size , the phase vocoder relies on it
+		final int step = Math.max( 1 , (int) ( fftSize*0.33 ) );
+		final InstantaneousFrequency.Accumulator phases = new InstantaneousFrequency.Accumulator( fftSize , step );
 		for ( int offset = 0 ; offset < jointStereo.length-fftSize ; offset += step ) 
 		{
-			// copy sample data to an array
+			System.arraycopy( jointStereo , offset , frame , 0 , fftSize );
+			if ( window != null ) {
+				KERNELS.multiply( frame , 0 , window , fftSize );
+			}
+
+			// copy frame to an array
 			// where element(k) = real part (k) and element(k+1) = imaginary part (k)
 			int ptr = 0;
 			for ( int i = 0 ; i < fftSize ; i++, ptr+=2 ) {
-				fftData[ptr]=jointStereo[offset+i];
+				fftData[ptr]= frame[i];
 				fftData[ptr+1]=0;
 			}
 
 			// do the actual FFT
 			fft.complexForward( fftData );
 
-			// convert FFT result to spectrum (magnitude)
-			ptr = 0;
-			for ( int bin = 0 ; bin < fftSize ; bin++ , ptr+=2) 
-			{
-				final double magnitude;
-				if ( bin != 0 ) {
-					magnitude = Math.sqrt( fftData[ptr] * fftData[ptr] + fftData[ptr+1]*fftData[ptr+1] );
-				} else {
-					// special case since FFT(0) and FFT(N/2) do not have a complex component,
-					// JTransform stores these as element(0) and element(1)
-					magnitude = fftData[ptr];
-				}
-
-				double input = magnitude*magnitude;
-
-				// average using Kahan summation to minimize rounding errors
-				double y = input - compensation[bin];
-				double t = spectrum[bin] + y;
-				compensation[bin] = ( t - spectrum[bin] ) - y;
-				spectrum[bin] = t;
-			}
+			// convert FFT result to power spectrum and sum up using Kahan summation to minimize rounding errors
+			KERNELS.accumulatePower( fftData , binGains , spectrum , compensation , fftSize );
+			phases.add( fftData );
 			windowCount++;
 		}
 		long fftTime = System.currentTimeMillis(); 
 
-		// find min/max values
-		double max = -Double.MAX_VALUE;
-		double min = Double.MAX_VALUE;
+		// average and find min/max values
+		final double[] minMax = new double[2];
+		KERNELS.divideMinMax( spectrum , 1 , fftSize , windowCount , minMax );
+		final double min = minMax[0];
+		final double max = minMax[1];
+
+		long calcAverageTime = System.currentTimeMillis();
 
-		for ( int i = 1 ; i < fftSize ; i++ ) 
+		final double sampleRate = getAudioFormat().getSampleRate() / decimationFactor;
+		final double[] autoCorrelation;
+		final double fundamentalFrequency;
+		final InstantaneousFrequency instantaneousFrequency = phases.finish( sampleRate );
+		final PitchDetection pitchDetection = this.pitchDetection;
+		if ( pitchDetection == PitchDetection.TRACKING && ! isStatic() ) 
 		{
-			final double tmp = spectrum[i] / windowCount;
-			spectrum[i] = tmp;
-			min = Math.min( min , tmp );
-			max = Math.max( max , tmp );            
+			autoCorrelation = null;
+			fundamentalFrequency = getPitchTracker( parameters ).track( spectrum , fftSize , sampleRate );
+		}
+		else if ( pitchDetection == PitchDetection.HARMONIC_PRODUCT_SPECTRUM || pitchDetection == PitchDetection.TRACKING ) 
+		{
+			autoCorrelation = null;
+			fundamentalFrequency = HPS.detectPitch( spectrum , fftSize , sampleRate );
+		} else {
+			autoCorrelation = getAutoCorrelation( spectrum , fftSize );
+			fundamentalFrequency = Double.NaN;
 		}
 
-		long calcAverageTime = System.currentTimeMillis();
-
-		final Spectrum result = new Spectrum( spectrum , getAutoCorrelation( spectrum , fftSize ) , 
-				fftSize , getAudioFormat().getSampleRate() , applyWindowingFunction , min , max , applyFilters,
-				calcVolume( sampleData.minSample, sampleData.maxSample ) );		
+		final Spectrum result = new Spectrum( spectrum , autoCorrelation , 
+				fftSize , sampleRate , applyWindowingFunction , min , max , applyFilters,
+				calcVolume( sampleData.minSample, sampleData.maxSample ) , 
+				refine( fundamentalFrequency , instantaneousFrequency ) , instantaneousFrequency );		
 		try 
 		{
 			return result;
@@ -334,6 +1129,15 @@ public abstract class AbstractSpectrumProvider implements ISpectrumProvider
 
 	private volatile long performanceCounter; 
 
+	// bin-level pitch estimates only get within half a bin , the phase vocoder gets much closer
+	private static double refine(double fundamentalFrequency,InstantaneousFrequency instantaneousFrequency) 
+	{
+		if ( Double.isNaN( fundamentalFrequency ) || instantaneousFrequency == null ) {
+			return fundamentalFrequency;
+		}
+		return instantaneousFrequency.refineFundamental( fundamentalFrequency , HPS.getHarmonics() );
+	}
+
 	public double[] getAutoCorrelation(double[] data,int fftSize) 
 	{
 
@@ -413,17 +1217,24 @@ public abstract class AbstractSpectrumProvider implements ISpectrumProvider
 	//            throw e;
 	//        }
 	//    }    
-	protected final void applyWindowingFunction(double[] data,int windowSize) 
+	private static double[] getWindow(int windowSize) 
 	{
-		final int len = data.length;
-		for ( int ptr = 0 ; ptr < len ; ptr++ ) // data[k] = Re(k) , data[k+1=Img(k)
+		double[] result = WINDOWS.get( windowSize );
+		if ( result == null ) 
 		{
-			final double n = ptr % windowSize;
-			double coeff = 0.5 - 0.5*Math.cos( (2f*Math.PI*n) / ( windowSize-1 ) ); // Hann window               
-			//          double coeff = 1-( (n-((windowSize-1)/2 ) ) / ((windowSize+1)/2) ); // Welch window         
-			data[ptr] = data[ptr] * coeff;
+			result = new double[ windowSize ];
+			for ( int n = 0 ; n < windowSize ; n++ ) 
+			{
+				result[n] = 0.5 - 0.5*Math.cos( (2f*Math.PI*n) / ( windowSize-1 ) ); // Hann window               
+				//          double coeff = 1-( (n-((windowSize-1)/2 ) ) / ((windowSize+1)/2) ); // Welch window         
+			}
+			final double[] existing = WINDOWS.putIfAbsent( windowSize , result );
+			if ( existing != null ) {
+				result = existing;
+			}
 		}
-	}     
+		return result;
+	}
 
 	/**
 	 * Returns the volume in percent (0...1).
@@ -0,0 +1,277 @@
+package de.codesourcery.fft;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Fixed-size thread pool shared by any number of spectrum providers.
+ *
+ * Each provider attaches to the pool and gets its own {@link Lane}. Each lane has a limit on
+ * how many of its tasks may run at the same time ; lanes of live sources use a limit of one
+ * (the {@link RingBuffer} used by live sources assumes exactly ONE reader) while static sources
+ * may compute several spectra in parallel. Tasks of different lanes always run in parallel.
+ *
+ * Lanes with pending work are served round-robin , one task at a time, with lanes of live sources
+ * taking precedence over static ones. To prevent starvation a static lane is served
+ * after at most {@link #LIVE_BURST} consecutive live tasks.
+ */
+public final class AnalysisPool
+{
+	private static final int MAX_PENDING_TASKS_PER_LANE = 10;
+
+	private static final int LIVE_BURST = 4;
+
+	private final Object LOCK = new Object();
+
+	// @GuardedBy( LOCK )
+	private final ArrayDeque<Lane> readyLive = new ArrayDeque<>();
+	// @GuardedBy( LOCK )
+	private final ArrayDeque<Lane> readyStatic = new ArrayDeque<>();
+	// @GuardedBy( LOCK )
+	private int liveStreak;
+	// @GuardedBy( LOCK )
+	private boolean shutdown;
+
+	private final Thread[] workers;
+
+	private static final class DefaultHolder
+	{
+		public static final AnalysisPool INSTANCE = new AnalysisPool( Runtime.getRuntime().availableProcessors() );
+	}
+
+	/**
+	 * Returns the JVM-wide pool, sized to the number of available cores.
+	 *
+	 * @return
+	 */
+	public static AnalysisPool getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	public AnalysisPool(int threadCount)
+	{
+		if ( threadCount < 1 ) {
+			throw new IllegalArgumentException("Thread count must be >= 1");
+		}
+		workers = new Thread[ threadCount ];
+		for ( int i = 0 ; i < threadCount ; i++ )
+		{
+			workers[i] = new Thread( "analysis-worker-"+i )
+			{
+				@Override
+				public void run() {
+					workerLoop();
+				}
+			};
+			workers[i].setDaemon( true );
+			workers[i].start();
+		}
+	}
+
+	public int getThreadCount() {
+		return workers.length;
+	}
+
+	/**
+	 * Attaches a new serial task source to this pool.
+	 *
+	 * @param name name used for debug output
+	 * @param live whether tasks are processing a live source and should be preferred over static ones
+	 * @return
+	 */
+	public Lane attach(String name,boolean live)
+	{
+		return attach(name,live,1);
+	}
+
+	/**
+	 * Attaches a new task source to this pool.
+	 *
+	 * @param name name used for debug output
+	 * @param live whether tasks are processing a live source and should be preferred over static ones
+	 * @param maxConcurrency max. number of tasks from this lane that may run at the same time
+	 * @return
+	 */
+	public Lane attach(String name,boolean live,int maxConcurrency)
+	{
+		if ( maxConcurrency < 1 ) {
+			throw new IllegalArgumentException("Max. concurrency must be >= 1");
+		}
+		synchronized(LOCK)
+		{
+			if ( shutdown ) {
+				throw new IllegalStateException("Pool has been shut down");
+			}
+		}
+		return new Lane(name,live,maxConcurrency);
+	}
+
+	/**
+	 * Stops all worker threads, pending tasks are discarded.
+	 */
+	public void shutdown()
+	{
+		synchronized(LOCK)
+		{
+			shutdown = true;
+			readyLive.clear();
+			readyStatic.clear();
+			LOCK.notifyAll();
+		}
+		for ( Thread t : workers ) {
+			t.interrupt();
+		}
+	}
+
+	/**
+	 * The task queue of one provider.
+	 */
+	public final class Lane implements Executor
+	{
+		private final String name;
+		private final boolean live;
+		private final int maxConcurrency;
+
+		// @GuardedBy( LOCK )
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+		// @GuardedBy( LOCK )
+		private boolean queued;
+		// @GuardedBy( LOCK )
+		private final List<Thread> runners = new ArrayList<>(1);
+		// @GuardedBy( LOCK )
+		private boolean closed;
+
+		protected Lane(String name,boolean live,int maxConcurrency)
+		{
+			this.name = name;
+			this.live = live;
+			this.maxConcurrency = maxConcurrency;
+		}
+
+		public boolean isLive() {
+			return live;
+		}
+
+		/**
+		 * Queues a task for execution.
+		 *
+		 * @throws RejectedExecutionException if the lane has been closed or too many tasks are pending
+		 */
+		@Override
+		public void execute(Runnable task) throws RejectedExecutionException
+		{
+			synchronized(LOCK)
+			{
+				if ( closed || shutdown ) {
+					throw new RejectedExecutionException("Lane "+name+" is closed");
+				}
+				if ( tasks.size() >= MAX_PENDING_TASKS_PER_LANE ) {
+					throw new RejectedExecutionException("Lane "+name+" has too many pending tasks");
+				}
+				tasks.add( task );
+				makeReady( this );
+			}
+		}
+
+		/**
+		 * Discards all pending tasks and interrupts the tasks that are currently running (if any).
+		 */
+		public void close()
+		{
+			synchronized(LOCK)
+			{
+				closed = true;
+				tasks.clear();
+				if ( queued )
+				{
+					queued = false;
+					(live ? readyLive : readyStatic).remove( this );
+				}
+				for ( Thread runner : runners ) {
+					runner.interrupt();
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "Lane[ "+name+" , live="+live+" ]";
+		}
+	}
+
+	// @GuardedBy( LOCK )
+	private void makeReady(Lane lane)
+	{
+		if ( lane.runners.size() < lane.maxConcurrency && ! lane.queued && ! lane.tasks.isEmpty() )
+		{
+			lane.queued = true;
+			(lane.live ? readyLive : readyStatic).add( lane );
+			LOCK.notify();
+		}
+	}
+
+	// @GuardedBy( LOCK )
+	private Lane pickLane()
+	{
+		if ( ! readyLive.isEmpty() && ( readyStatic.isEmpty() || liveStreak < LIVE_BURST ) )
+		{
+			liveStreak++;
+			return readyLive.poll();
+		}
+		liveStreak = 0;
+		return readyStatic.poll();
+	}
+
+	private void workerLoop()
+	{
+		final Thread current = Thread.currentThread();
+		while ( true )
+		{
+			final Lane lane;
+			final Runnable task;
+			synchronized(LOCK)
+			{
+				Lane picked = null;
+				while ( ! shutdown && ( picked = pickLane() ) == null )
+				{
+					try {
+						LOCK.wait();
+					}
+					catch (InterruptedException e) {
+						// check for shutdown
+					}
+				}
+				if ( shutdown ) {
+					return;
+				}
+				lane = picked;
+				lane.queued = false;
+				lane.runners.add( current );
+				task = lane.tasks.poll();
+				// lane might still be allowed to run more tasks in parallel
+				makeReady( lane );
+			}
+
+			try {
+				task.run();
+			}
+			catch(Throwable t) {
+				t.printStackTrace();
+			}
+			finally
+			{
+				synchronized(LOCK)
+				{
+					lane.runners.remove( current );
+					// clear interrupt that might've been caused by Lane#close()
+					Thread.interrupted();
+					// re-queue at the tail so other lanes get their turn first
+					makeReady( lane );
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package de.codesourcery.fft;
+
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single timer thread that drives all animations (and the {@link FrameScheduler}) at a fixed tick rate.
+ *
+ * All animations of a tick get the same timestamp from a global time base , so animations
+ * advance by elapsed time instead of by number of ticks and stay in sync with each other.
+ *
+ * Animations run until they report that they are done ; once no animation is left , the timer stops
+ * completely until the next animation gets started.
+ */
+public final class AnimationScheduler
+{
+	public static final int DEFAULT_TICKS_PER_SECOND = 30;
+
+	// global time base
+	private static final long EPOCH = System.nanoTime();
+
+	private static final AnimationScheduler INSTANCE = new AnimationScheduler( DEFAULT_TICKS_PER_SECOND );
+
+	/**
+	 * An animation.
+	 *
+	 * Implementations are invoked on the scheduler's thread and must not block.
+	 */
+	public interface IAnimation
+	{
+		/**
+		 * Advances the animation.
+		 *
+		 * @param time current time in nanoseconds , see {@link AnimationScheduler#getTime()}
+		 * @return <code>true</code> if the animation needs more ticks , <code>false</code> if it is done
+		 */
+		public boolean animate(long time);
+	}
+
+	private final long tickIntervalNanos;
+
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor( new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			final Thread t = new Thread( r , "animation-scheduler" );
+			t.setDaemon( true );
+			return t;
+		}
+	});
+
+	private final Object lock = new Object();
+	// @GuardedBy( lock )
+	private final Set<IAnimation> animations = new LinkedHashSet<>();
+	// animations (re-)started while the current tick is running , these must not be removed when they report being done
+	// @GuardedBy( lock )
+	private final Set<IAnimation> started = new HashSet<>();
+	// @GuardedBy( lock )
+	private ScheduledFuture<?> tickTask;
+
+	private final Runnable tick = new Runnable() {
+
+		@Override
+		public void run()
+		{
+			final IAnimation[] current;
+			synchronized( lock )
+			{
+				current = animations.toArray( new IAnimation[ animations.size() ] );
+				started.clear();
+			}
+
+			final long now = getTime();
+			for ( IAnimation animation : current )
+			{
+				boolean running;
+				try {
+					running = animation.animate( now );
+				}
+				catch(Exception e)
+				{
+					e.printStackTrace();
+					running = false;
+				}
+				if ( ! running )
+				{
+					synchronized( lock )
+					{
+						if ( ! started.contains( animation ) ) {
+							animations.remove( animation );
+						}
+					}
+				}
+			}
+
+			synchronized( lock )
+			{
+				if ( animations.isEmpty() )
+				{
+					tickTask.cancel( false );
+					tickTask = null;
+				}
+			}
+		}
+	};
+
+	/**
+	 * Create instance.
+	 *
+	 * @param ticksPerSecond
+	 * @see #getInstance()
+	 */
+	public AnimationScheduler(int ticksPerSecond)
+	{
+		if ( ticksPerSecond < 1 ) {
+			throw new IllegalArgumentException("Tick rate must be >= 1 , was: "+ticksPerSecond);
+		}
+		this.tickIntervalNanos = TimeUnit.SECONDS.toNanos( 1 ) / ticksPerSecond;
+	}
+
+	/**
+	 * Returns the scheduler shared by all components.
+	 *
+	 * @return
+	 */
+	public static AnimationScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the current time.
+	 *
+	 * @return nanoseconds since an arbitrary (but fixed) point in time , the same for all schedulers
+	 */
+	public static long getTime() {
+		return System.nanoTime() - EPOCH;
+	}
+
+	/**
+	 * Starts an animation , starting an animation that is already running is a no-op.
+	 *
+	 * The animation gets invoked on the next tick.
+	 *
+	 * @param animation
+	 */
+	public void start(IAnimation animation)
+	{
+		synchronized( lock )
+		{
+			animations.add( animation );
+			started.add( animation );
+			if ( tickTask == null ) {
+				tickTask = timer.scheduleAtFixedRate( tick , 0 , tickIntervalNanos , TimeUnit.NANOSECONDS );
+			}
+		}
+	}
+
+	/**
+	 * Stops an animation.
+	 *
+	 * @param animation
+	 */
+	public void stop(IAnimation animation)
+	{
+		synchronized( lock )
+		{
+			animations.remove( animation );
+			started.remove( animation );
+		}
+	}
+
+	/**
+	 * Returns whether an animation is currently running.
+	 *
+	 * @param animation
+	 * @return
+	 */
+	public boolean isRunning(IAnimation animation)
+	{
+		synchronized( lock ) {
+			return animations.contains( animation );
+		}
+	}
+
+	/**
+	 * Returns whether the timer is currently running.
+	 *
+	 * @return
+	 */
+	public boolean isRunning()
+	{
+		synchronized( lock ) {
+			return tickTask != null;
+		}
+	}
+
+	public long getTickIntervalNanos() {
+		return tickIntervalNanos;
+	}
+}
@@ -51,19 +51,10 @@ public class AudioFileSpectrumProvider extends AbstractSpectrumProvider
             }
         }
 
-        double minSample = 0;
-        double maxSample = 0;
-        for ( int j = 0 ; j < totalSampleCount ; j++ ) 
-        {
-        	double val = jointStereo[j] / channels;
-        	jointStereo[j]=val;
-            if ( val < minSample ) {
-            	minSample = val;
-            }
-            if ( val > maxSample ) {
-            	maxSample = val;
-            }
-        } 
+        final double[] minMax = new double[2];
+        KERNELS.divideMinMax( jointStereo , 0 , totalSampleCount , channels , minMax );
+        final double minSample = Math.min( 0 , minMax[0] );
+        final double maxSample = Math.max( 0 , minMax[1] );
         return new SampleData(jointStereo,minSample , maxSample );
     }
 
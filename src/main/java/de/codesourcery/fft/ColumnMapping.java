@@ -0,0 +1,317 @@
+package de.codesourcery.fft;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps FFT bins to the pixel columns of a plot.
+ *
+ * Each column covers a range of bins , so plotting costs one aggregation pass over
+ * the data plus one draw operation per column , no matter how many bins there are.
+ *
+ * On a logarithmic axis , low frequencies get spread across many more columns than there are bins ;
+ * such columns don't cover a bin of their own but interpolate between the two nearest bins instead.
+ *
+ * Instances are immutable.
+ */
+public final class ColumnMapping
+{
+	public static final double DEFAULT_MIN_FREQUENCY = 20;
+
+	// logarithmic mappings by ( fftSize , sampleRate , minFrequency , width )
+	private static final ConcurrentHashMap<LogKey,ColumnMapping> LOG_MAPPINGS = new ConcurrentHashMap<>();
+	private static final int MAX_CACHED_MAPPINGS = 32;
+
+	private final int bands;
+	private final int width;
+
+	// bins covered by each column , firstBin[x] inclusive ... endBin[x] exclusive , may be empty
+	private final int[] firstBin;
+	private final int[] endBin;
+
+	// fractional bin to interpolate at for columns that cover no bin , NaN for columns that show nothing ;
+	// null for linear mappings
+	private final double[] interpolatedBin;
+
+	// bins (fractional) at the left edge of the first column and the right edge of the last column ,
+	// lowBin is 0 for linear mappings
+	private final double lowBin;
+	private final double highBin;
+	private final boolean logarithmic;
+
+	private static final class LogKey
+	{
+		private final int fftSize;
+		private final double sampleRate;
+		private final double minFrequency;
+		private final int width;
+
+		public LogKey(int fftSize, double sampleRate, double minFrequency, int width)
+		{
+			this.fftSize = fftSize;
+			this.sampleRate = sampleRate;
+			this.minFrequency = minFrequency;
+			this.width = width;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if ( obj instanceof LogKey )
+			{
+				final LogKey o = (LogKey) obj;
+				return fftSize == o.fftSize && width == o.width &&
+						Double.compare( sampleRate , o.sampleRate ) == 0 &&
+						Double.compare( minFrequency , o.minFrequency ) == 0;
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			int result = 31 * fftSize + width;
+			result = 31 * result + Double.valueOf( sampleRate ).hashCode();
+			return 31 * result + Double.valueOf( minFrequency ).hashCode();
+		}
+	}
+
+	/**
+	 * Aggregated values per column.
+	 *
+	 * @see ColumnMapping#aggregate(double[], double, Aggregate)
+	 */
+	public static final class Aggregate
+	{
+		public final double[] min;
+		public final double[] max;
+		public final double[] mean;
+		// whether a column contains at least one value above the threshold
+		public final boolean[] valid;
+
+		public Aggregate(int width)
+		{
+			this.min = new double[ width ];
+			this.max = new double[ width ];
+			this.mean = new double[ width ];
+			this.valid = new boolean[ width ];
+		}
+
+		public int getWidth() {
+			return min.length;
+		}
+	}
+
+	private ColumnMapping(int bands,int width,int[] firstBin,int[] endBin,double[] interpolatedBin,double lowBin,double highBin,boolean logarithmic)
+	{
+		this.bands = bands;
+		this.width = width;
+		this.firstBin = firstBin;
+		this.endBin = endBin;
+		this.interpolatedBin = interpolatedBin;
+		this.lowBin = lowBin;
+		this.highBin = highBin;
+		this.logarithmic = logarithmic;
+	}
+
+	/**
+	 * Creates a mapping that spreads bins 0 ... bands-1 evenly across the columns.
+	 *
+	 * DC is left out , so a column that would only show DC stays empty.
+	 *
+	 * @param bands
+	 * @param width number of pixel columns
+	 * @return
+	 */
+	public static ColumnMapping linear(int bands,int width)
+	{
+		if ( bands < 2 || width < 1 ) {
+			throw new IllegalArgumentException("Invalid bands/width: "+bands+" / "+width);
+		}
+		final int[] first = new int[ width ];
+		final int[] end = new int[ width ];
+		for ( int x = 0 ; x < width ; x++ )
+		{
+			final int from = (int) ( (long) x * bands / width );
+			final int to = Math.min( bands , Math.max( from+1 , (int) ( (long) (x+1) * bands / width ) ) );
+			first[x] = Math.max( 1 , from );
+			end[x] = Math.max( first[x] , to );
+		}
+		return new ColumnMapping( bands , width , first , end , null , 0 , bands , false );
+	}
+
+	/**
+	 * Returns a mapping that spreads the bins of a power spectrum across the columns on a logarithmic frequency axis ,
+	 * from <code>minFrequency</code> up to the Nyquist frequency.
+	 *
+	 * Mappings are cached , so asking for the same mapping again is cheap.
+	 *
+	 * @param fftSize FFT size the spectrum was calculated with , the spectrum has <code>fftSize/2</code> bins
+	 * @param sampleRate sample rate the spectrum was calculated with
+	 * @param minFrequency frequency at the left edge of the first column , values below the first bin get clamped
+	 * @param width number of pixel columns
+	 * @return
+	 * @see #DEFAULT_MIN_FREQUENCY
+	 */
+	public static ColumnMapping logarithmic(int fftSize,double sampleRate,double minFrequency,int width)
+	{
+		final LogKey key = new LogKey( fftSize , sampleRate , minFrequency , width );
+		ColumnMapping result = LOG_MAPPINGS.get( key );
+		if ( result == null )
+		{
+			result = createLogarithmic( fftSize , sampleRate , minFrequency , width );
+			if ( LOG_MAPPINGS.size() >= MAX_CACHED_MAPPINGS ) {
+				// resizing a window creates lots of mappings that are never needed again
+				LOG_MAPPINGS.clear();
+			}
+			final ColumnMapping existing = LOG_MAPPINGS.putIfAbsent( key , result );
+			if ( existing != null ) {
+				result = existing;
+			}
+		}
+		return result;
+	}
+
+	private static ColumnMapping createLogarithmic(int fftSize,double sampleRate,double minFrequency,int width)
+	{
+		final int bands = fftSize / 2;
+		if ( bands < 2 || width < 1 || sampleRate <= 0 || minFrequency <= 0 ) {
+			throw new IllegalArgumentException("Invalid FFT size/sample rate/min. frequency/width: "+fftSize+" / "+sampleRate+" / "+minFrequency+" / "+width);
+		}
+		// DC has no place on a logarithmic axis
+		final double lowBin = Math.max( 1 , minFrequency * fftSize / sampleRate );
+		final double highBin = bands;
+		if ( lowBin >= highBin ) {
+			throw new IllegalArgumentException("Min. frequency "+minFrequency+" Hz is above the Nyquist frequency");
+		}
+		final double ratio = highBin / lowBin;
+
+		final int[] first = new int[ width ];
+		final int[] end = new int[ width ];
+		final double[] interpolated = new double[ width ];
+		for ( int x = 0 ; x < width ; x++ )
+		{
+			final double from = lowBin * Math.pow( ratio , x / (double) width );
+			final double to = lowBin * Math.pow( ratio , (x+1) / (double) width );
+			first[x] = (int) Math.ceil( from );
+			end[x] = Math.max( first[x] , Math.min( bands , (int) Math.ceil( to ) ) );
+			// interpolate at the (geometric) center of columns that are narrower than a bin
+			interpolated[x] = first[x] < end[x] ? Double.NaN : Math.min( bands-1 , Math.sqrt( from * to ) );
+		}
+		return new ColumnMapping( bands , width , first , end , interpolated , lowBin , highBin , true );
+	}
+
+	/**
+	 * Aggregates data over the bins of each column.
+	 *
+	 * @param data values by bin (at least {@link #getBands()} elements)
+	 * @param threshold only values above this threshold are considered , use <code>Double.NEGATIVE_INFINITY</code> to consider all values
+	 * @param result aggregate to store the result in , must have {@link #getWidth()} columns
+	 * @return the result
+	 */
+	public Aggregate aggregate(double[] data,double threshold,Aggregate result)
+	{
+		if ( result.getWidth() != width ) {
+			throw new IllegalArgumentException("Expected "+width+" columns , got "+result.getWidth());
+		}
+		for ( int x = 0 ; x < width ; x++ )
+		{
+			double min = Double.POSITIVE_INFINITY;
+			double max = Double.NEGATIVE_INFINITY;
+			double sum = 0;
+			int count = 0;
+			for ( int bin = firstBin[x] , end = endBin[x] ; bin < end ; bin++ )
+			{
+				final double value = data[bin];
+				if ( value > threshold )
+				{
+					min = Math.min( min , value );
+					max = Math.max( max , value );
+					sum += value;
+					count++;
+				}
+			}
+			if ( count == 0 && interpolatedBin != null && ! Double.isNaN( interpolatedBin[x] ) )
+			{
+				final double position = interpolatedBin[x];
+				final int bin = Math.min( bands-2 , (int) position );
+				final double fraction = position - bin;
+				final double value = data[bin] + ( data[bin+1] - data[bin] ) * fraction;
+				if ( value > threshold )
+				{
+					min = max = sum = value;
+					count = 1;
+				}
+			}
+			result.valid[x] = count > 0;
+			result.min[x] = min;
+			result.max[x] = max;
+			result.mean[x] = count > 0 ? sum / count : Double.NaN;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the first bin covered by a column.
+	 *
+	 * @param x
+	 * @return
+	 */
+	public int getFirstBin(int x) {
+		return firstBin[x];
+	}
+
+	/**
+	 * Returns the bin after the last one covered by a column.
+	 *
+	 * @param x
+	 * @return
+	 */
+	public int getEndBin(int x) {
+		return endBin[x];
+	}
+
+	/**
+	 * Returns the (fractional) bin at the center of a column.
+	 *
+	 * @param x
+	 * @return
+	 */
+	public double getCenterBin(int x)
+	{
+		if ( logarithmic ) {
+			return lowBin * Math.pow( highBin / lowBin , (x+0.5) / width );
+		}
+		return (x+0.5) * bands / width;
+	}
+
+	/**
+	 * Returns the column a (fractional) bin is shown in.
+	 *
+	 * @param bin
+	 * @return column or -1 if the bin is not shown
+	 */
+	public int getColumn(double bin)
+	{
+		if ( bin < lowBin || bin >= highBin ) {
+			return -1;
+		}
+		if ( ! logarithmic ) {
+			// last column whose first bin is not beyond this bin
+			return Math.min( width-1 , (int) Math.ceil( ( Math.floor( bin ) + 1 ) * width / bands ) - 1 );
+		}
+		final double position = Math.log( bin / lowBin ) / Math.log( highBin / lowBin );
+		return Math.min( width-1 , (int) ( position * width ) );
+	}
+
+	public boolean isLogarithmic() {
+		return logarithmic;
+	}
+
+	public int getBands() {
+		return bands;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+}
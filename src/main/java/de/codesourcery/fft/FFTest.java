@@ -20,6 +20,8 @@ import javax.swing.JTextField;
 
 import org.apache.commons.lang.StringUtils;
 
+import de.codesourcery.fft.AbstractSpectrumProvider.PitchDetection;
+
 public class FFTest
 {
     private static final JTextField currentFile = new JTextField("classpath:/guitar_e2.wav") 
@@ -41,6 +43,9 @@ public class FFTest
 //      final File processedOut = new File("/home/tgierke/tmp/processed.wav");
         final File processedOut = null;
         
+        // filtering in the frequency domain is much cheaper but the debug WAV file would contain unfiltered data
+        final boolean spectralFiltering = processedOut == null;
+        
         // setup FFT spectrum panel
         final int bands;
         final int fftSize;
@@ -49,15 +54,24 @@ public class FFTest
         {
             AudioFormat format = new AudioFormat(44100, 16, 1, true , false);
             provider = new MicrophoneSpectrumProvider(format,16384,processedOut,recordedIn);
+            ((MicrophoneSpectrumProvider) provider).setSpectralFiltering( spectralFiltering );
+            // tuning only needs the range up to ~2.7 kHz , analyse at 5.5 kHz with an 8x smaller FFT
+            ((MicrophoneSpectrumProvider) provider).setDecimationFactor( 8 );
+            ((MicrophoneSpectrumProvider) provider).setPitchDetection( PitchDetection.TRACKING );
+            // don't waste CPU cycles while nobody is playing
+            ((MicrophoneSpectrumProvider) provider).setSilenceGate( SilenceGate.DEFAULT.withMaxFlatness( SilenceGate.DEFAULT_MAX_FLATNESS ) );
             ((MicrophoneSpectrumProvider) provider).start();
-            bands = 4096;
-            fftSize = 4096;
+            bands = 512;
+            fftSize = 512;
         } 
         else 
         {
             AudioFile file = AudioFile.fromClassPath( currentFile.getText() );
             System.out.println( file );
         	provider = new AudioFileSpectrumProvider( file , processedOut );
+        	// spectral filtering skips the time-domain pass , only filter on multiple threads when writing the debug WAV file
+        	((AudioFileSpectrumProvider) provider).setSpectralFiltering( spectralFiltering );
+        	((AudioFileSpectrumProvider) provider).setParallelFiltering( ! spectralFiltering );
         	bands = 4096;
         	fftSize = 4096;
         }
@@ -106,6 +120,7 @@ public class FFTest
                         currentFile.setText( fc.getSelectedFile().getAbsolutePath() );
                         
                         AudioFileSpectrumProvider provider = new AudioFileSpectrumProvider( file , null );
+                        provider.setSpectralFiltering( true );
                         panel.setSpectrumProvider( provider );
                     } 
                     catch (IOException | UnsupportedAudioFileException ex) 
@@ -149,6 +164,20 @@ public class FFTest
         
         combined.add( panel ,cnstrs );
         
+        // add waterfall below spectrum
+        final WaterfallPanel waterfall = new WaterfallPanel();
+        panel.setWaterfall( waterfall );
+        
+        cnstrs = new GridBagConstraints();
+        cnstrs.fill = GridBagConstraints.BOTH;
+        cnstrs.gridwidth=3;
+        cnstrs.gridx=0;
+        cnstrs.gridy=2;
+        cnstrs.weightx=1;
+        cnstrs.weighty=0.5;
+        
+        combined.add( waterfall ,cnstrs );
+        
         // add to frame's content panel
         frame.getContentPane().setLayout( new GridBagLayout() );
         
@@ -0,0 +1,193 @@
+package de.codesourcery.fft;
+
+import java.awt.Component;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.swing.SwingUtilities;
+
+import de.codesourcery.fft.AnimationScheduler.IAnimation;
+
+/**
+ * Limits UI updates to a fixed frame rate.
+ *
+ * Components and update tasks only get marked as dirty (from any thread) , once per frame all pending
+ * updates are run and all pending components are repainted in one single pass on the EDT. Marking something
+ * as dirty again before the next frame is a no-op , so producers never queue more work than the
+ * EDT can handle.
+ *
+ * If the EDT has not finished the previous pass when the next frame is due , the frame is skipped
+ * instead of queuing another pass.
+ *
+ * Frames are driven by an {@link AnimationScheduler} , which only runs while there are pending updates (or other animations).
+ */
+public final class FrameScheduler
+{
+	private static final FrameScheduler INSTANCE = new FrameScheduler( AnimationScheduler.getInstance() );
+
+	private final AnimationScheduler scheduler;
+
+	private final Object lock = new Object();
+	// @GuardedBy( lock )
+	private Set<Runnable> pendingUpdates = new LinkedHashSet<>();
+	// @GuardedBy( lock )
+	private Set<Component> pendingRepaints = new LinkedHashSet<>();
+
+	// whether a pass has been posted to the EDT but not run yet
+	private final AtomicBoolean passPending = new AtomicBoolean(false);
+
+	private volatile long frameCount;
+	private volatile long skippedFrameCount;
+
+	private final IAnimation tick = new IAnimation() {
+
+		@Override
+		public boolean animate(long time)
+		{
+			synchronized( lock )
+			{
+				if ( pendingUpdates.isEmpty() && pendingRepaints.isEmpty() ) {
+					// idle , restarted by the next request
+					return false;
+				}
+			}
+			if ( ! passPending.compareAndSet( false , true ) )
+			{
+				// EDT is behind , updates stay pending until the next frame
+				skippedFrameCount++;
+				return true;
+			}
+			SwingUtilities.invokeLater( pass );
+			return true;
+		}
+	};
+
+	private final Runnable pass = new Runnable() {
+
+		@Override
+		public void run()
+		{
+			final Set<Runnable> updates;
+			final Set<Component> repaints;
+			synchronized( lock )
+			{
+				updates = pendingUpdates;
+				repaints = pendingRepaints;
+				pendingUpdates = new LinkedHashSet<>();
+				pendingRepaints = new LinkedHashSet<>();
+			}
+			try
+			{
+				for ( Runnable r : updates )
+				{
+					try {
+						r.run();
+					}
+					catch(Exception e) {
+						e.printStackTrace();
+					}
+				}
+				for ( Component c : repaints ) {
+					c.repaint();
+				}
+			}
+			finally
+			{
+				frameCount++;
+				passPending.set( false );
+			}
+		}
+	};
+
+	/**
+	 * Create instance with its own timer.
+	 *
+	 * @param framesPerSecond target frame rate
+	 * @see #getInstance()
+	 */
+	public FrameScheduler(int framesPerSecond)
+	{
+		this( new AnimationScheduler( framesPerSecond ) );
+	}
+
+	/**
+	 * Create instance.
+	 *
+	 * @param scheduler scheduler whose ticks drive the frames
+	 */
+	public FrameScheduler(AnimationScheduler scheduler)
+	{
+		this.scheduler = scheduler;
+	}
+
+	/**
+	 * Returns the scheduler shared by all panels.
+	 *
+	 * @return
+	 */
+	public static FrameScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Requests an update task to be run on the EDT during the next frame.
+	 *
+	 * Requesting the same task (as per <code>equals()</code>) multiple times before the next frame runs it only once.
+	 *
+	 * @param update
+	 */
+	public void requestUpdate(Runnable update)
+	{
+		synchronized( lock )
+		{
+			pendingUpdates.add( update );
+		}
+		scheduler.start( tick );
+	}
+
+	/**
+	 * Requests a component to be repainted during the next frame.
+	 *
+	 * @param component
+	 */
+	public void requestRepaint(Component component)
+	{
+		synchronized( lock )
+		{
+			pendingRepaints.add( component );
+		}
+		scheduler.start( tick );
+	}
+
+	/**
+	 * Returns the number of passes that have been run on the EDT.
+	 *
+	 * @return
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Returns the number of frames that were skipped because the EDT was still busy with the previous pass.
+	 *
+	 * @return
+	 */
+	public long getSkippedFrameCount() {
+		return skippedFrameCount;
+	}
+
+	/**
+	 * Returns whether frames are currently being scheduled.
+	 *
+	 * @return
+	 */
+	public boolean isRunning() {
+		return scheduler.isRunning( tick );
+	}
+
+	public long getFrameIntervalNanos() {
+		return scheduler.getTickIntervalNanos();
+	}
+}
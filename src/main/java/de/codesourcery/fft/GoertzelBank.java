@@ -0,0 +1,180 @@
+package de.codesourcery.fft;
+
+import de.codesourcery.fft.TuningHelper.Key;
+
+/**
+ * Immutable set of target frequencies that get evaluated individually using the Goertzel algorithm
+ * instead of calculating a full FFT.
+ *
+ * Targets are laid out as a grid: for each base frequency , a range of offsets (in cents) around it and
+ * for each offset the first few harmonics. Since every target costs one multiply-add per sample , a tuner that
+ * only cares about a handful of strings gets fine frequency resolution for a fraction of the cost of
+ * a FFT large enough to resolve the same differences.
+ *
+ * @see TargetedBins
+ */
+public final class GoertzelBank
+{
+	public static final int DEFAULT_HARMONICS = 3;
+	public static final double DEFAULT_SPAN_CENTS = 50;
+	public static final double DEFAULT_STEP_CENTS = 10;
+
+	private final double[] baseFrequencies;
+	private final int harmonics;
+	private final int offsets;
+	private final double spanCents;
+	private final double stepCents;
+
+	// target frequencies , index = ( base * offsets + offset ) * harmonics + harmonic-1
+	private final double[] frequencies;
+
+	/**
+	 * Create instance.
+	 *
+	 * @param baseFrequencies fundamental frequencies to look at
+	 * @param harmonics number of harmonics (including the fundamental) to evaluate for each base frequency
+	 * @param spanCents targets cover <code>+/- spanCents</code> around each base frequency
+	 * @param stepCents distance between neighbouring targets
+	 */
+	public GoertzelBank(double[] baseFrequencies,int harmonics,double spanCents,double stepCents)
+	{
+		if ( baseFrequencies.length == 0 ) {
+			throw new IllegalArgumentException("Need at least one base frequency");
+		}
+		if ( harmonics < 1 ) {
+			throw new IllegalArgumentException("Need at least one harmonic");
+		}
+		if ( spanCents < 0 || stepCents <= 0 ) {
+			throw new IllegalArgumentException("Invalid span/step: "+spanCents+" / "+stepCents);
+		}
+		for ( double f : baseFrequencies ) {
+			if ( f <= 0 ) {
+				throw new IllegalArgumentException("Base frequencies must be > 0 , was: "+f);
+			}
+		}
+		this.baseFrequencies = baseFrequencies.clone();
+		this.harmonics = harmonics;
+		this.spanCents = spanCents;
+		this.stepCents = stepCents;
+		this.offsets = 1 + 2 * (int) Math.floor( spanCents / stepCents );
+
+		this.frequencies = new double[ baseFrequencies.length * offsets * harmonics ];
+		int ptr = 0;
+		for ( double base : baseFrequencies )
+		{
+			for ( int offset = 0 ; offset < offsets ; offset++ )
+			{
+				final double f0 = base * Math.pow( 2 , getCents( offset ) / 1200 );
+				for ( int h = 1 ; h <= harmonics ; h++ ) {
+					frequencies[ptr++] = f0 * h;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates a bank with default settings for some keys , using the current reference pitch.
+	 *
+	 * @param keys
+	 * @return
+	 * @see TuningHelper#GUITAR_KEYS
+	 */
+	public static GoertzelBank forKeys(Key... keys)
+	{
+		final double[] result = new double[ keys.length ];
+		for ( int i = 0 ; i < keys.length ; i++ ) {
+			result[i] = TuningHelper.keyToFrequency( keys[i].getKeyIndex() );
+		}
+		return new GoertzelBank( result , DEFAULT_HARMONICS , DEFAULT_SPAN_CENTS , DEFAULT_STEP_CENTS );
+	}
+
+	/**
+	 * Evaluates all targets.
+	 *
+	 * @param samples sample data (already windowed , if desired)
+	 * @param sampleRate
+	 * @return power of each target , scaled like the FFT power spectrum ; targets above the Nyquist frequency yield 0
+	 */
+	public TargetedBins evaluate(double[] samples,double sampleRate)
+	{
+		final int len = samples.length;
+		final double[] power = new double[ frequencies.length ];
+		for ( int i = 0 ; i < frequencies.length ; i++ )
+		{
+			if ( frequencies[i] >= sampleRate / 2 ) {
+				continue;
+			}
+			final double coeff = 2 * Math.cos( 2 * Math.PI * frequencies[i] / sampleRate );
+			double s1 = 0;
+			double s2 = 0;
+			for ( int n = 0 ; n < len ; n++ )
+			{
+				final double s0 = samples[n] + coeff * s1 - s2;
+				s2 = s1;
+				s1 = s0;
+			}
+			power[i] = Math.max( 0 , s1*s1 + s2*s2 - coeff*s1*s2 );
+		}
+		return new TargetedBins( this , power , sampleRate );
+	}
+
+	/**
+	 * Returns all target frequencies.
+	 *
+	 * @return frequencies , index = <code>( base * getOffsetCount() + offset ) * getHarmonics() + harmonic-1</code>
+	 */
+	public double[] getFrequencies() {
+		return frequencies.clone();
+	}
+
+	public int size() {
+		return frequencies.length;
+	}
+
+	double getFrequency(int index) {
+		return frequencies[index];
+	}
+
+	public double[] getBaseFrequencies() {
+		return baseFrequencies.clone();
+	}
+
+	double getBaseFrequency(int base) {
+		return baseFrequencies[base];
+	}
+
+	public int getBaseCount() {
+		return baseFrequencies.length;
+	}
+
+	public int getHarmonics() {
+		return harmonics;
+	}
+
+	/**
+	 * Returns the number of offsets evaluated around each base frequency.
+	 *
+	 * @return
+	 */
+	public int getOffsetCount() {
+		return offsets;
+	}
+
+	/**
+	 * Returns the deviation from the base frequency of an offset index.
+	 *
+	 * @param offset
+	 * @return
+	 */
+	public double getCents(double offset) {
+		return ( offset - ( offsets - 1 ) / 2 ) * stepCents;
+	}
+
+	public double getSpanCents() {
+		return spanCents;
+	}
+
+	public double getStepCents() {
+		return stepCents;
+	}
+}
@@ -0,0 +1,153 @@
+package de.codesourcery.fft;
+
+/**
+ * Pitch detection using the Harmonic Product Spectrum (HPS).
+ *
+ * The power spectrum is multiplied with copies of itself that have been downsampled by
+ * factors 2...H , so energy at the fundamental frequency and its harmonics adds up in the
+ * fundamental's bin. Unlike autocorrelation this works directly on the averaged power spectrum
+ * and does not need another (inverse) FFT.
+ *
+ * The product is calculated as a sum of logarithms to stay clear of overflows , the
+ * peak bin gets refined using parabolic interpolation.
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class HarmonicProductSpectrum
+{
+	public static final int DEFAULT_HARMONICS = 5;
+
+	// A0
+	public static final double DEFAULT_MIN_FREQUENCY = 27.5;
+
+	// keeps log() finite for empty bins
+	private static final double EPSILON = 1e-12;
+
+	private final int harmonics;
+	private final double minFrequency;
+
+	public HarmonicProductSpectrum() {
+		this( DEFAULT_HARMONICS , DEFAULT_MIN_FREQUENCY );
+	}
+
+	/**
+	 * Create instance.
+	 *
+	 * @param harmonics number of harmonics (including the fundamental) to multiply
+	 * @param minFrequency lowest fundamental frequency to look for
+	 */
+	public HarmonicProductSpectrum(int harmonics,double minFrequency)
+	{
+		if ( harmonics < 2 ) {
+			throw new IllegalArgumentException("Need at least 2 harmonics");
+		}
+		this.harmonics = harmonics;
+		this.minFrequency = minFrequency;
+	}
+
+	public int getHarmonics() {
+		return harmonics;
+	}
+
+	/**
+	 * Detects the fundamental frequency of a power spectrum.
+	 *
+	 * @param powerSpectrum power spectrum as calculated by {@link AbstractSpectrumProvider} , bin <code>k</code>
+	 * corresponds to <code>k*sampleRate/fftSize</code> Hz
+	 * @param fftSize
+	 * @param sampleRate
+	 * @return fundamental frequency in Hz or <code>Double.NaN</code> if the spectrum is empty or too coarse
+	 */
+	public double detectPitch(double[] powerSpectrum,int fftSize,double sampleRate)
+	{
+		final int bands = fftSize / 2;
+		// highest candidate bin whose harmonics (and right neighbour) are still below Nyquist
+		final int maxBin = (bands-1) / harmonics - 1;
+		final int minBin = Math.max( 2 , (int) Math.ceil( minFrequency * fftSize / sampleRate ) );
+		if ( minBin >= maxBin ) {
+			return Double.NaN;
+		}
+
+		final int lastBin = (maxBin+1) * harmonics;
+		final double[] logPower = new double[ lastBin + 1 ];
+		boolean allEmpty = true;
+		for ( int i = minBin-1 ; i <= lastBin ; i++ )
+		{
+			final double p = powerSpectrum[i];
+			if ( p > EPSILON ) {
+				allEmpty = false;
+			}
+			logPower[i] = Math.log( Math.max( p , 0 ) + EPSILON );
+		}
+		if ( allEmpty ) {
+			return Double.NaN;
+		}
+
+		// single pass over all candidates , including both neighbours of the search range for interpolation
+		final double[] hps = new double[ maxBin + 2 ];
+		int best = minBin;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for ( int k = minBin-1 ; k <= maxBin+1 ; k++ )
+		{
+			double sum = 0;
+			for ( int h = 1 , bin = k ; h <= harmonics ; h++ , bin += k ) {
+				sum += logPower[bin];
+			}
+			hps[k] = sum;
+			if ( k >= minBin && k <= maxBin && sum > bestValue ) 
+			{
+				best = k;
+				bestValue = sum;
+			}
+		}
+
+		final double delta = PeakFinder.parabolicOffset( hps[best-1] , hps[best] , hps[best+1] );
+		return ( best + delta ) * sampleRate / fftSize;
+	}
+
+	/**
+	 * Detects the fundamental frequency , considering only candidates within a range of bins.
+	 *
+	 * Logarithms are only taken for the harmonics of the candidates , so the cost depends on the
+	 * width of the range rather than on the FFT size.
+	 *
+	 * @param powerSpectrum
+	 * @param fftSize
+	 * @param sampleRate
+	 * @param fromBin first candidate bin (inclusive)
+	 * @param toBin last candidate bin (inclusive)
+	 * @return fundamental frequency in Hz or <code>Double.NaN</code> if the range is empty or exceeds the usable range
+	 */
+	public double detectPitch(double[] powerSpectrum,int fftSize,double sampleRate,int fromBin,int toBin)
+	{
+		final int bands = fftSize / 2;
+		final int minBin = Math.max( 2 , fromBin );
+		final int maxBin = Math.min( (bands-1) / harmonics - 1 , toBin );
+		if ( minBin > maxBin ) {
+			return Double.NaN;
+		}
+
+		final double[] hps = new double[ maxBin - minBin + 3 ];
+		int best = -1;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for ( int k = minBin-1 , i = 0 ; k <= maxBin+1 ; k++ , i++ )
+		{
+			double sum = 0;
+			for ( int h = 1 , bin = k ; h <= harmonics ; h++ , bin += k ) {
+				sum += Math.log( Math.max( powerSpectrum[bin] , 0 ) + EPSILON );
+			}
+			hps[i] = sum;
+			if ( k >= minBin && k <= maxBin && sum > bestValue ) 
+			{
+				best = i;
+				bestValue = sum;
+			}
+		}
+		if ( bestValue <= harmonics * Math.log( 2*EPSILON ) ) {
+			// nothing but empty bins
+			return Double.NaN;
+		}
+		final double delta = PeakFinder.parabolicOffset( hps[best-1] , hps[best] , hps[best+1] );
+		return ( minBin - 1 + best + delta ) * sampleRate / fftSize;
+	}
+}
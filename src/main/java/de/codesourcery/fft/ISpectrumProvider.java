@@ -11,11 +11,42 @@ public interface ISpectrumProvider
         public void calculationFinished(ISpectrumProvider provider,Spectrum spectrum);
     }
     
+    /**
+     * Handle for a spectrum subscription.
+     * 
+     * @see ISpectrumProvider#subscribe(ICallback, int, boolean, boolean)
+     */
+    public interface ISubscription 
+    {
+        /**
+         * Stops delivery of further spectra to the subscriber.
+         * 
+         * A spectrum that is currently being delivered will not be interrupted.
+         */
+        public void cancel();
+    }
+    
     public void close();
     
     public AudioFormat getAudioFormat(); 
     
     public void calcSpectrum(ICallback callback,int fftSize,boolean applyWindowingFunction,boolean applyFilters);
     
+    /**
+     * Registers a subscriber that gets pushed a new spectrum as soon as one is ready.
+     * 
+     * Static providers push a spectrum once (and again whenever the underlying data changes),
+     * live providers push continuously until the subscription is cancelled.
+     * Subscribers that are slower than the provider never see a backlog,
+     * they only get the most recent spectrum once they are done with the previous one.
+     * 
+     * @param subscriber
+     * @param fftSize
+     * @param applyWindowingFunction
+     * @param applyFilters
+     * @return subscription handle, never <code>null</code>
+     */
+    public ISubscription subscribe(ICallback subscriber,int fftSize,boolean applyWindowingFunction,boolean applyFilters);
+    
     public boolean isStatic();
 }
@@ -0,0 +1,199 @@
+package de.codesourcery.fft;
+
+/**
+ * Phase-vocoder frequency estimates , derived from the phase advance of each FFT bin between
+ * consecutive overlapping frames.
+ *
+ * A sinusoid whose frequency lies between two bin centers advances its phase by a little more or less than
+ * the bin center frequency would between two frames that are <code>hopSize</code> samples apart. The
+ * deviation reveals the true frequency with an accuracy that does not depend on the FFT size , as long as
+ * the frequency is within <code>fftSize / (2*hopSize)</code> bins of the bin center.
+ *
+ * Instead of keeping phases per frame , the cross-spectrum <code>X[t] * conj( X[t-1] )</code> is summed over all
+ * frame pairs , which averages the phase advance weighted by power and needs only one <code>atan2()</code>
+ * per bin that actually gets looked at.
+ *
+ * Instances are immutable.
+ */
+public final class InstantaneousFrequency
+{
+	private final double[] crossSpectrum;
+	private final int fftSize;
+	private final int hopSize;
+	private final double sampleRate;
+
+	/**
+	 * Sums up the cross-spectra of consecutive frames.
+	 *
+	 * Not thread-safe.
+	 */
+	public static final class Accumulator
+	{
+		private final int fftSize;
+		private final int hopSize;
+		private final double[] previous;
+		private final double[] crossSpectrum;
+		private int frames;
+
+		/**
+		 * Create instance.
+		 *
+		 * @param fftSize
+		 * @param hopSize distance between the first samples of consecutive frames , must be constant
+		 */
+		public Accumulator(int fftSize,int hopSize)
+		{
+			if ( hopSize < 1 ) {
+				throw new IllegalArgumentException("Hop size must be >= 1 , was: "+hopSize);
+			}
+			this.fftSize = fftSize;
+			this.hopSize = hopSize;
+			this.previous = new double[ fftSize ]; // interleaved re/im of bins 0 ... fftSize/2 - 1
+			this.crossSpectrum = new double[ fftSize ];
+		}
+
+		/**
+		 * Adds the next frame.
+		 *
+		 * @param fftData output of <code>DoubleFFT_1D#complexForward()</code> , interleaved real/imaginary parts
+		 */
+		public void add(double[] fftData)
+		{
+			final int len = crossSpectrum.length;
+			if ( frames > 0 )
+			{
+				for ( int i = 0 ; i < len ; i += 2 )
+				{
+					final double re = fftData[i];
+					final double im = fftData[i+1];
+					final double prevRe = previous[i];
+					final double prevIm = previous[i+1];
+					crossSpectrum[i] += re*prevRe + im*prevIm;
+					crossSpectrum[i+1] += im*prevRe - re*prevIm;
+				}
+			}
+			System.arraycopy( fftData , 0 , previous , 0 , len );
+			frames++;
+		}
+
+		/**
+		 * Returns the estimates.
+		 *
+		 * @param sampleRate
+		 * @return estimates or <code>null</code> if less than two frames have been added
+		 */
+		public InstantaneousFrequency finish(double sampleRate) {
+			return frames < 2 ? null : new InstantaneousFrequency( crossSpectrum.clone() , fftSize , hopSize , sampleRate );
+		}
+	}
+
+	private InstantaneousFrequency(double[] crossSpectrum,int fftSize,int hopSize,double sampleRate)
+	{
+		this.crossSpectrum = crossSpectrum;
+		this.fftSize = fftSize;
+		this.hopSize = hopSize;
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Returns the instantaneous frequency of a bin.
+	 *
+	 * @param bin bin index between 0 and <code>fftSize/2 - 1</code>
+	 * @return frequency in Hz , the bin's center frequency if the bin is empty
+	 */
+	public double getFrequency(int bin)
+	{
+		final double re = crossSpectrum[2*bin];
+		final double im = crossSpectrum[2*bin+1];
+		if ( re == 0 && im == 0 ) {
+			return bin * sampleRate / fftSize;
+		}
+		final double expected = 2 * Math.PI * bin * hopSize / fftSize;
+		double deviation = Math.atan2( im , re ) - expected;
+		// wrap to -PI ... PI
+		deviation -= 2 * Math.PI * Math.rint( deviation / ( 2 * Math.PI ) );
+		return ( bin + deviation * fftSize / ( 2 * Math.PI * hopSize ) ) * sampleRate / fftSize;
+	}
+
+	/**
+	 * Refines a frequency using the instantaneous frequency of the strongest nearby bin.
+	 *
+	 * @param frequency
+	 * @return refined frequency , the input frequency if it is out of range or the neighbourhood is empty
+	 */
+	public double refine(double frequency)
+	{
+		final int bin = strongestBin( frequency );
+		return bin < 0 ? frequency : getFrequency( bin );
+	}
+
+	/**
+	 * Refines a fundamental frequency using the instantaneous frequencies of its harmonics.
+	 *
+	 * Each harmonic found within the unambiguous range of the phase vocoder contributes its
+	 * instantaneous frequency divided by the harmonic number , weighted by its strength.
+	 *
+	 * @param fundamental fundamental frequency (with bin-level accuracy)
+	 * @param harmonics number of harmonics (including the fundamental) to consider
+	 * @return refined frequency , the input frequency if none of the harmonics could be found
+	 */
+	public double refineFundamental(double fundamental,int harmonics)
+	{
+		final double binWidth = sampleRate / fftSize;
+		// phase deviations beyond +/- PI alias , limit to the unambiguous range
+		final double maxDeviation = binWidth * fftSize / ( 2.0 * hopSize );
+
+		double sum = 0;
+		double weights = 0;
+		for ( int h = 1 ; h <= harmonics ; h++ )
+		{
+			final int bin = strongestBin( h * fundamental );
+			if ( bin < 0 ) {
+				continue;
+			}
+			final double frequency = getFrequency( bin );
+			if ( Math.abs( frequency - h * fundamental ) <= maxDeviation )
+			{
+				final double weight = Math.hypot( crossSpectrum[2*bin] , crossSpectrum[2*bin+1] );
+				sum += weight * frequency / h;
+				weights += weight;
+			}
+		}
+		return weights > 0 ? sum / weights : fundamental;
+	}
+
+	/*
+	 * Returns the strongest bin adjacent to a frequency or -1.
+	 */
+	private int strongestBin(double frequency)
+	{
+		final int bands = fftSize / 2;
+		final int center = (int) Math.round( frequency * fftSize / sampleRate );
+		int best = -1;
+		double bestMagnitude = 0;
+		for ( int bin = Math.max( 1 , center-1 ) ; bin <= center+1 && bin < bands ; bin++ )
+		{
+			final double re = crossSpectrum[2*bin];
+			final double im = crossSpectrum[2*bin+1];
+			final double magnitude = re*re + im*im;
+			if ( magnitude > bestMagnitude )
+			{
+				best = bin;
+				bestMagnitude = magnitude;
+			}
+		}
+		return best;
+	}
+
+	public int getHopSize() {
+		return hopSize;
+	}
+
+	public int getFFTSize() {
+		return fftSize;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+}
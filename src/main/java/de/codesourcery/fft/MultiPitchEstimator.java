@@ -0,0 +1,247 @@
+package de.codesourcery.fft;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.codesourcery.fft.PitchSet.Pitch;
+
+/**
+ * Polyphonic pitch estimation by iterative harmonic sieving and cancellation.
+ *
+ * Works on the magnitude of an existing power spectrum. Each iteration scores every candidate
+ * fundamental (one per piano key in the configured range) by the weighted sum of the strongest
+ * magnitudes found within half a semitone of its harmonics , picks the best candidate and removes
+ * its harmonics from the residual spectrum. Harmonics are only partially removed (down to a smoothed
+ * harmonic envelope) so that partials shared with other notes survive. Estimation stops when the
+ * maximum polyphony is reached or the best remaining candidate gets too weak compared to the first one.
+ *
+ * Cost per spectrum is bounded by <code>maxPolyphony * candidates * harmonics * window width</code> and
+ * does not depend on the signal.
+ *
+ * Based on A. Klapuri , "Multiple fundamental frequency estimation based on harmonicity and spectral smoothness" (2003).
+ *
+ * Instances are immutable and thread-safe.
+ */
+public final class MultiPitchEstimator
+{
+	public static final int DEFAULT_MAX_POLYPHONY = 6;
+	public static final int DEFAULT_HARMONICS = 10;
+
+	// E2 ... C6
+	public static final double DEFAULT_MIN_FREQUENCY = 80;
+	public static final double DEFAULT_MAX_FREQUENCY = 1050;
+
+	// candidates weaker than this (relative to the first pick) are ignored
+	public static final double DEFAULT_MIN_RELATIVE_SALIENCE = 0.25;
+
+	// harmonic weighting parameters from Klapuri's paper (Hz)
+	private static final double ALPHA = 27;
+	private static final double BETA = 320;
+
+	// relative width of the search window around each harmonic , half a semitone
+	private static final double WINDOW = Math.pow( 2 , 1/24.0 ) - 1;
+
+	// bins around a harmonic peak that get attenuated , main lobe of a Hann window
+	private static final int CANCEL_RADIUS = 2;
+
+	private final int maxPolyphony;
+	private final int harmonics;
+	private final double minFrequency;
+	private final double maxFrequency;
+	private final double minRelativeSalience;
+
+	public MultiPitchEstimator() {
+		this( DEFAULT_MAX_POLYPHONY , DEFAULT_HARMONICS , DEFAULT_MIN_FREQUENCY , DEFAULT_MAX_FREQUENCY , DEFAULT_MIN_RELATIVE_SALIENCE );
+	}
+
+	/**
+	 * Create instance.
+	 *
+	 * @param maxPolyphony max. number of notes to report
+	 * @param harmonics number of harmonics (including the fundamental) to look at
+	 * @param minFrequency lowest fundamental frequency to consider
+	 * @param maxFrequency highest fundamental frequency to consider
+	 * @param minRelativeSalience stop once the best remaining candidate's salience drops below this fraction of the first note's salience
+	 */
+	public MultiPitchEstimator(int maxPolyphony,int harmonics,double minFrequency,double maxFrequency,double minRelativeSalience)
+	{
+		if ( maxPolyphony < 1 ) {
+			throw new IllegalArgumentException("Max. polyphony must be >= 1");
+		}
+		if ( harmonics < 1 ) {
+			throw new IllegalArgumentException("Need at least one harmonic");
+		}
+		if ( minFrequency <= 0 || maxFrequency < minFrequency ) {
+			throw new IllegalArgumentException("Invalid frequency range "+minFrequency+" ... "+maxFrequency);
+		}
+		this.maxPolyphony = maxPolyphony;
+		this.harmonics = harmonics;
+		this.minFrequency = minFrequency;
+		this.maxFrequency = maxFrequency;
+		this.minRelativeSalience = minRelativeSalience;
+	}
+
+	public PitchSet estimate(Spectrum spectrum) {
+		return estimate( spectrum.getData() , spectrum.getFFTSize() , spectrum.getSampleRate() );
+	}
+
+	/**
+	 * Estimates the notes in a power spectrum.
+	 *
+	 * @param powerSpectrum power spectrum , bin <code>k</code> corresponds to <code>k*sampleRate/fftSize</code> Hz
+	 * @param fftSize
+	 * @param sampleRate
+	 * @return detected notes , never <code>null</code>
+	 */
+	public PitchSet estimate(double[] powerSpectrum,int fftSize,double sampleRate)
+	{
+		final int bands = fftSize / 2;
+		final double binWidth = sampleRate / fftSize;
+
+		int firstKey = TuningHelper.frequencyToKeyIndex( minFrequency );
+		int lastKey = TuningHelper.frequencyToKeyIndex( maxFrequency );
+		firstKey = firstKey < 1 ? TuningHelper.FIRST_KEY : firstKey;
+		lastKey = lastKey < 1 ? TuningHelper.LAST_KEY : lastKey;
+
+		final double[] residual = new double[ bands ];
+		for ( int i = 1 ; i < bands ; i++ ) {
+			residual[i] = Math.sqrt( Math.max( 0 , powerSpectrum[i] ) );
+		}
+
+		final int[] peakBins = new int[ harmonics ];
+		final double[] amplitudes = new double[ harmonics ];
+
+		final List<Pitch> result = new ArrayList<>();
+		double firstSalience = 0;
+		for ( int iteration = 0 ; iteration < maxPolyphony ; iteration++ )
+		{
+			int bestKey = -1;
+			double bestSalience = 0;
+			for ( int key = firstKey ; key <= lastKey ; key++ )
+			{
+				final double salience = sieve( residual , TuningHelper.keyToFrequency( key ) , binWidth , null , null );
+				if ( salience > bestSalience )
+				{
+					bestSalience = salience;
+					bestKey = key;
+				}
+			}
+			if ( bestKey == -1 || bestSalience < firstSalience * minRelativeSalience ) {
+				break;
+			}
+			if ( iteration == 0 ) {
+				firstSalience = bestSalience;
+			}
+
+			final int found = sieveHarmonics( residual , TuningHelper.keyToFrequency( bestKey ) , binWidth , peakBins , amplitudes );
+			final double f0 = refineFundamental( residual , peakBins , amplitudes , found , binWidth );
+			cancel( residual , peakBins , amplitudes , found );
+
+			final int keyIndex = TuningHelper.frequencyToKeyIndex( f0 );
+			final Pitch pitch = new Pitch( f0 , bestSalience , keyIndex > 0 ? keyIndex : bestKey );
+			boolean duplicate = false;
+			for ( Pitch existing : result ) {
+				duplicate |= existing.keyIndex == pitch.keyIndex;
+			}
+			if ( ! duplicate ) {
+				result.add( pitch );
+			}
+		}
+		return result.isEmpty() ? PitchSet.EMPTY : new PitchSet( result );
+	}
+
+	private int sieveHarmonics(double[] residual,double f0,double binWidth,int[] peakBins,double[] amplitudes)
+	{
+		sieve( residual , f0 , binWidth , peakBins , amplitudes );
+		int found = 0;
+		while ( found < harmonics && peakBins[found] > 0 ) {
+			found++;
+		}
+		return found;
+	}
+
+	/*
+	 * Returns the weighted sum of the strongest residual magnitude near each harmonic ,
+	 * optionally recording peak bins (0 = beyond Nyquist) and magnitudes.
+	 */
+	private double sieve(double[] residual,double f0,double binWidth,int[] peakBins,double[] amplitudes)
+	{
+		final int bands = residual.length;
+		double salience = 0;
+		for ( int h = 1 ; h <= harmonics ; h++ )
+		{
+			final double center = h * f0 / binWidth;
+			final int lo = Math.max( 1 , (int) Math.floor( center * ( 1 - WINDOW ) ) );
+			final int hi = Math.min( bands-1 , (int) Math.ceil( center * ( 1 + WINDOW ) ) );
+			if ( lo > hi )
+			{
+				if ( peakBins != null ) {
+					peakBins[h-1] = 0;
+				}
+				continue;
+			}
+			int maxBin = lo;
+			for ( int bin = lo+1 ; bin <= hi ; bin++ )
+			{
+				if ( residual[bin] > residual[maxBin] ) {
+					maxBin = bin;
+				}
+			}
+			salience += residual[maxBin] * ( f0 + ALPHA ) / ( h*f0 + BETA );
+			if ( peakBins != null )
+			{
+				peakBins[h-1] = maxBin;
+				amplitudes[h-1] = residual[maxBin];
+			}
+		}
+		return salience;
+	}
+
+	/*
+	 * Amplitude-weighted average of the interpolated harmonic positions divided by their harmonic number.
+	 */
+	private static double refineFundamental(double[] residual,int[] peakBins,double[] amplitudes,int found,double binWidth)
+	{
+		double sum = 0;
+		double weights = 0;
+		for ( int i = 0 ; i < found ; i++ )
+		{
+			final int bin = peakBins[i];
+			if ( amplitudes[i] <= 0 || bin+1 >= residual.length ) {
+				continue;
+			}
+			final double position = bin + PeakFinder.parabolicOffset( residual[bin-1] , residual[bin] , residual[bin+1] );
+			sum += amplitudes[i] * position / ( i+1 );
+			weights += amplitudes[i];
+		}
+		return weights > 0 ? sum / weights * binWidth : peakBins[0] * binWidth;
+	}
+
+	/*
+	 * Attenuates each harmonic down to the part that exceeds the smoothed harmonic envelope.
+	 */
+	private static void cancel(double[] residual,int[] peakBins,double[] amplitudes,int found)
+	{
+		for ( int i = 0 ; i < found ; i++ )
+		{
+			final double amplitude = amplitudes[i];
+			if ( amplitude <= 0 ) {
+				continue;
+			}
+			double smoothed = 0;
+			int count = 0;
+			for ( int j = Math.max( 0 , i-1 ) ; j <= Math.min( found-1 , i+1 ) ; j++ )
+			{
+				smoothed += amplitudes[j];
+				count++;
+			}
+			smoothed /= count;
+			final double factor = 1 - Math.min( amplitude , smoothed ) / amplitude;
+
+			final int center = peakBins[i];
+			for ( int bin = Math.max( 1 , center - CANCEL_RADIUS ) ; bin <= Math.min( residual.length-1 , center + CANCEL_RADIUS ) ; bin++ ) {
+				residual[bin] *= factor;
+			}
+		}
+	}
+}
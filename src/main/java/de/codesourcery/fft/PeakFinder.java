@@ -0,0 +1,266 @@
+package de.codesourcery.fft;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the strongest local maxima of an array in linear time.
+ *
+ * An element is a peak if it is strictly larger than all elements up to <code>radius</code>
+ * positions to its left and up to <code>radius-1</code> positions to its right. Both neighbourhoods
+ * are tracked with monotonic sliding-window-maximum queues so each element is looked at a constant
+ * number of times, the strongest peaks are collected in a bounded min-heap.
+ *
+ * Peak positions can be refined to sub-bin accuracy by fitting a parabola (or a Gaussian , i.e.
+ * a parabola through the logarithms) through the peak and its two direct neighbours.
+ *
+ * Instances are not thread-safe since they re-use their work arrays.
+ */
+public final class PeakFinder
+{
+	public static enum Interpolation
+	{
+		NONE,
+		PARABOLIC,
+		/**
+		 * Better fit for peaks of windowed power spectra , requires positive values.
+		 */
+		GAUSSIAN;
+	}
+
+	/**
+	 * A peak.
+	 */
+	public static final class Peak
+	{
+		/**
+		 * Index of the peak element.
+		 */
+		public final int index;
+		/**
+		 * Interpolated peak position , in range <code>index-0.5 ... index+0.5</code>.
+		 */
+		public final double position;
+		/**
+		 * Value of the peak element.
+		 */
+		public final double value;
+
+		public Peak(int index, double position, double value)
+		{
+			this.index = index;
+			this.position = position;
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			return "Peak[ "+index+" ("+position+") = "+value+" ]";
+		}
+	}
+
+	private final Interpolation interpolation;
+
+	// work arrays , sliding window queues hold indices of elements with decreasing values
+	private int[] leftQueue = new int[0];
+	private int[] rightQueue = new int[0];
+
+	public PeakFinder(Interpolation interpolation) {
+		this.interpolation = interpolation;
+	}
+
+	/**
+	 * Finds the strongest peaks.
+	 *
+	 * @param data
+	 * @param from index of first candidate
+	 * @param to index of last candidate (exclusive)
+	 * @param radius neighbourhood size , must be >= 1
+	 * @param count max. number of peaks to return
+	 * @return peaks , strongest first
+	 */
+	public List<Peak> findPeaks(double[] data,int from,int to,int radius,int count)
+	{
+		if ( radius < 1 ) {
+			throw new IllegalArgumentException("Radius must be >= 1");
+		}
+		if ( count < 1 || from >= to ) {
+			return Collections.emptyList();
+		}
+
+		if ( leftQueue.length < radius+1 ) {
+			leftQueue = new int[ radius+1 ];
+			rightQueue = new int[ radius+1 ];
+		}
+		final int[] left = leftQueue;
+		final int[] right = rightQueue;
+		// circular queues
+		int leftHead = 0, leftSize = 0;
+		int rightHead = 0, rightSize = 0;
+		final int capacity = radius+1;
+
+		// bounded min-heap of (value,index)
+		final double[] heapValues = new double[ count ];
+		final int[] heapIndices = new int[ count ];
+		int heapSize = 0;
+
+		int nextRight = Math.max( 0 , from+1 ); // next element to enter the right-hand window
+		int nextLeft = Math.max( 0 , from-radius ); // next element to enter the left-hand window
+
+		for ( int i = from ; i < to ; i++ )
+		{
+			// left window: [i-radius,i-1]
+			for ( ; nextLeft < i ; nextLeft++ )
+			{
+				final double v = data[nextLeft];
+				while ( leftSize > 0 && data[ left[ (leftHead+leftSize-1) % capacity ] ] <= v ) {
+					leftSize--;
+				}
+				left[ (leftHead+leftSize) % capacity ] = nextLeft;
+				leftSize++;
+			}
+			while ( leftSize > 0 && left[leftHead] < i-radius )
+			{
+				leftHead = (leftHead+1) % capacity;
+				leftSize--;
+			}
+
+			// right window: [i+1,i+radius-1]
+			final int rightEnd = Math.min( data.length , i+radius );
+			for ( ; nextRight < rightEnd ; nextRight++ )
+			{
+				final double v = data[nextRight];
+				while ( rightSize > 0 && data[ right[ (rightHead+rightSize-1) % capacity ] ] <= v ) {
+					rightSize--;
+				}
+				right[ (rightHead+rightSize) % capacity ] = nextRight;
+				rightSize++;
+			}
+			while ( rightSize > 0 && right[rightHead] <= i )
+			{
+				rightHead = (rightHead+1) % capacity;
+				rightSize--;
+			}
+
+			final double value = data[i];
+			if ( leftSize > 0 && data[ left[leftHead] ] >= value ) {
+				continue;
+			}
+			if ( rightSize > 0 && data[ right[rightHead] ] >= value ) {
+				continue;
+			}
+
+			// peak found
+			if ( heapSize < count )
+			{
+				heapValues[heapSize] = value;
+				heapIndices[heapSize] = i;
+				siftUp( heapValues , heapIndices , heapSize );
+				heapSize++;
+			}
+			else if ( value > heapValues[0] )
+			{
+				heapValues[0] = value;
+				heapIndices[0] = i;
+				siftDown( heapValues , heapIndices , heapSize );
+			}
+		}
+
+		// drain heap , weakest first
+		final Peak[] result = new Peak[ heapSize ];
+		for ( int i = heapSize-1 ; i >= 0 ; i-- )
+		{
+			final int index = heapIndices[0];
+			result[i] = new Peak( index , interpolate( data , index ) , heapValues[0] );
+			heapValues[0] = heapValues[i];
+			heapIndices[0] = heapIndices[i];
+			siftDown( heapValues , heapIndices , i );
+		}
+		final List<Peak> list = new ArrayList<>( heapSize );
+		Collections.addAll( list , result );
+		return list;
+	}
+
+	private static void siftUp(double[] values,int[] indices,int pos)
+	{
+		while ( pos > 0 )
+		{
+			final int parent = (pos-1) >> 1;
+			if ( values[parent] <= values[pos] ) {
+				break;
+			}
+			swap( values , indices , parent , pos );
+			pos = parent;
+		}
+	}
+
+	private static void siftDown(double[] values,int[] indices,int size)
+	{
+		int pos = 0;
+		while ( true )
+		{
+			final int leftChild = 2*pos+1;
+			if ( leftChild >= size ) {
+				break;
+			}
+			int smallest = leftChild;
+			if ( leftChild+1 < size && values[leftChild+1] < values[leftChild] ) {
+				smallest = leftChild+1;
+			}
+			if ( values[pos] <= values[smallest] ) {
+				break;
+			}
+			swap( values , indices , pos , smallest );
+			pos = smallest;
+		}
+	}
+
+	private static void swap(double[] values,int[] indices,int i,int j)
+	{
+		final double tmpValue = values[i];
+		values[i] = values[j];
+		values[j] = tmpValue;
+		final int tmpIndex = indices[i];
+		indices[i] = indices[j];
+		indices[j] = tmpIndex;
+	}
+
+	private double interpolate(double[] data,int index)
+	{
+		if ( interpolation == Interpolation.NONE || index < 1 || index >= data.length-1 ) {
+			return index;
+		}
+		double a = data[index-1];
+		double b = data[index];
+		double c = data[index+1];
+		if ( interpolation == Interpolation.GAUSSIAN )
+		{
+			if ( a <= 0 || b <= 0 || c <= 0 ) {
+				return index;
+			}
+			a = Math.log( a );
+			b = Math.log( b );
+			c = Math.log( c );
+		}
+		return index + parabolicOffset( a , b , c );
+	}
+
+	/**
+	 * Returns the offset of a parabola's vertex through <code>(-1,a) , (0,b) , (1,c)</code>.
+	 *
+	 * @param a
+	 * @param b
+	 * @param c
+	 * @return offset in range -0.5...0.5 , 0 if <code>b</code> is not a maximum
+	 */
+	public static double parabolicOffset(double a,double b,double c)
+	{
+		final double denominator = a - 2*b + c;
+		if ( denominator >= 0 ) {
+			return 0;
+		}
+		final double offset = 0.5 * ( a - c ) / denominator;
+		return Math.max( -0.5 , Math.min( 0.5 , offset ) );
+	}
+}
@@ -0,0 +1,104 @@
+package de.codesourcery.fft;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.codesourcery.fft.TuningHelper.Key;
+
+/**
+ * Result of a polyphonic pitch estimation , the notes detected in one spectrum.
+ *
+ * @see MultiPitchEstimator
+ */
+public final class PitchSet
+{
+	public static final PitchSet EMPTY = new PitchSet( Collections.<Pitch>emptyList() );
+
+	private final List<Pitch> pitches;
+
+	/**
+	 * One detected note.
+	 */
+	public static final class Pitch
+	{
+		/**
+		 * Estimated fundamental frequency in Hz.
+		 */
+		public final double frequency;
+		/**
+		 * Weighted harmonic amplitude sum at the time the note was picked ,
+		 * only comparable to other pitches of the same spectrum.
+		 */
+		public final double salience;
+		/**
+		 * Index of the closest piano key (see {@link TuningHelper}).
+		 */
+		public final int keyIndex;
+
+		public Pitch(double frequency, double salience, int keyIndex)
+		{
+			this.frequency = frequency;
+			this.salience = salience;
+			this.keyIndex = keyIndex;
+		}
+
+		public Key getKey() {
+			return TuningHelper.getKey( keyIndex );
+		}
+
+		@Override
+		public String toString()
+		{
+			final Key key = getKey();
+			return ( key != null ? key.getName() : "?" )+" ("+AudioFile.hertzToString( frequency )+" , salience "+salience+")";
+		}
+	}
+
+	/**
+	 * Create instance.
+	 *
+	 * @param pitches pitches , strongest first
+	 */
+	public PitchSet(List<Pitch> pitches) {
+		this.pitches = Collections.unmodifiableList( new ArrayList<>( pitches ) );
+	}
+
+	/**
+	 * Returns the detected pitches.
+	 *
+	 * @return pitches in order of decreasing salience
+	 */
+	public List<Pitch> getPitches() {
+		return pitches;
+	}
+
+	public boolean isEmpty() {
+		return pitches.isEmpty();
+	}
+
+	public int size() {
+		return pitches.size();
+	}
+
+	/**
+	 * Returns whether a key is part of this set.
+	 *
+	 * @param keyIndex
+	 * @return
+	 */
+	public boolean containsKey(int keyIndex)
+	{
+		for ( Pitch p : pitches ) {
+			if ( p.keyIndex == keyIndex ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "PitchSet "+pitches;
+	}
+}
@@ -0,0 +1,173 @@
+package de.codesourcery.fft;
+
+/**
+ * Stateful pitch detection for a continuous stream of spectra.
+ *
+ * The first spectrum (and every spectrum after the lock has been lost) gets searched over the full
+ * range using a {@link HarmonicProductSpectrum}. Once a pitch has been found with enough confidence , following
+ * spectra only evaluate candidates within half a semitone of the previous pitch. The lock gets dropped
+ * when the best candidate sits at the edge of the narrow window (pitch moved away) or when the confidence ,
+ * the fraction of the total power found at the pitch's harmonics , falls below {@link #getMinConfidence()}.
+ * A full search is also forced every {@link #getRefreshInterval()} spectra so that new notes get picked up
+ * even while the previous one is still ringing.
+ *
+ * Instances are not thread-safe , use one tracker per stream.
+ */
+public final class PitchTracker
+{
+	public static final double DEFAULT_MIN_CONFIDENCE = 0.2;
+	public static final int DEFAULT_REFRESH_INTERVAL = 16;
+
+	// half-width of the narrow search window , relative to the previous pitch
+	private static final double WINDOW = Math.pow( 2 , 1/24.0 ) - 1;
+	private static final int MIN_WINDOW_BINS = 2;
+
+	private final HarmonicProductSpectrum hps;
+	private final double minConfidence;
+	private final int refreshInterval;
+
+	// previous pitch in bins , NaN if not locked
+	private double lockedBin = Double.NaN;
+	private int framesSinceFullSearch;
+	private int fftSize;
+	private double sampleRate;
+
+	private double confidence;
+	private long fullSearches;
+
+	public PitchTracker() {
+		this( new HarmonicProductSpectrum() , DEFAULT_MIN_CONFIDENCE , DEFAULT_REFRESH_INTERVAL );
+	}
+
+	/**
+	 * Create instance.
+	 *
+	 * @param hps pitch detector to use
+	 * @param minConfidence min. fraction (0...1) of the total power that needs to be found at the harmonics of a locked pitch
+	 * @param refreshInterval max. number of spectra between full searches
+	 */
+	public PitchTracker(HarmonicProductSpectrum hps,double minConfidence,int refreshInterval)
+	{
+		if ( hps == null ) {
+			throw new IllegalArgumentException("HPS must not be NULL");
+		}
+		if ( refreshInterval < 1 ) {
+			throw new IllegalArgumentException("Refresh interval must be >= 1 , was: "+refreshInterval);
+		}
+		this.hps = hps;
+		this.minConfidence = minConfidence;
+		this.refreshInterval = refreshInterval;
+	}
+
+	/**
+	 * Detects the fundamental frequency of the next spectrum in the stream.
+	 *
+	 * @param powerSpectrum power spectrum , bin <code>k</code> corresponds to <code>k*sampleRate/fftSize</code> Hz
+	 * @param fftSize
+	 * @param sampleRate
+	 * @return fundamental frequency in Hz or <code>Double.NaN</code> if no pitch could be detected with enough confidence
+	 */
+	public double track(double[] powerSpectrum,int fftSize,double sampleRate)
+	{
+		if ( fftSize != this.fftSize || sampleRate != this.sampleRate )
+		{
+			reset();
+			this.fftSize = fftSize;
+			this.sampleRate = sampleRate;
+		}
+
+		final double binWidth = sampleRate / fftSize;
+		if ( isLocked() && framesSinceFullSearch < refreshInterval )
+		{
+			framesSinceFullSearch++;
+			final int radius = Math.max( MIN_WINDOW_BINS , (int) Math.ceil( lockedBin * WINDOW ) );
+			final int fromBin = (int) Math.round( lockedBin ) - radius;
+			final int toBin = (int) Math.round( lockedBin ) + radius;
+			final double frequency = hps.detectPitch( powerSpectrum , fftSize , sampleRate , fromBin , toBin );
+			final double bin = frequency / binWidth;
+			// candidates at the window edges are probably just the slope towards a peak outside of it
+			if ( ! Double.isNaN( frequency ) && bin > fromBin + 0.5 && bin < toBin - 0.5 && updateConfidence( powerSpectrum , bin ) )
+			{
+				lockedBin = bin;
+				return frequency;
+			}
+		}
+
+		fullSearches++;
+		framesSinceFullSearch = 0;
+		final double frequency = hps.detectPitch( powerSpectrum , fftSize , sampleRate );
+		if ( ! Double.isNaN( frequency ) && updateConfidence( powerSpectrum , frequency / binWidth ) )
+		{
+			lockedBin = frequency / binWidth;
+			return frequency;
+		}
+		lockedBin = Double.NaN;
+		return Double.NaN;
+	}
+
+	/*
+	 * Updates the confidence for a pitch and returns whether it is acceptable.
+	 */
+	private boolean updateConfidence(double[] powerSpectrum,double bin)
+	{
+		final int bands = fftSize / 2;
+		double total = 0;
+		for ( int i = 1 ; i < bands ; i++ ) {
+			total += powerSpectrum[i];
+		}
+		double harmonicPower = 0;
+		int previousBin = 0;
+		for ( int h = 1 ; h <= hps.getHarmonics() ; h++ )
+		{
+			final int center = (int) Math.round( h * bin );
+			// main lobe of a Hann window spans +/- 2 bins , don't count bins twice for very low pitches
+			for ( int i = Math.max( previousBin+1 , center-2 ) ; i <= center+2 && i < bands ; i++ )
+			{
+				harmonicPower += powerSpectrum[i];
+				previousBin = i;
+			}
+		}
+		confidence = total > 0 ? harmonicPower / total : 0;
+		return confidence >= minConfidence;
+	}
+
+	/**
+	 * Drops the lock , the next spectrum gets searched over the full range.
+	 */
+	public void reset()
+	{
+		lockedBin = Double.NaN;
+		framesSinceFullSearch = 0;
+		confidence = 0;
+	}
+
+	public boolean isLocked() {
+		return ! Double.isNaN( lockedBin );
+	}
+
+	/**
+	 * Returns the confidence of the most recent pitch candidate.
+	 *
+	 * @return fraction (0...1) of the total power found at the harmonics of the candidate
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Returns the number of full-range searches performed so far.
+	 *
+	 * @return
+	 */
+	public long getFullSearchCount() {
+		return fullSearches;
+	}
+
+	public double getMinConfidence() {
+		return minConfidence;
+	}
+
+	public int getRefreshInterval() {
+		return refreshInterval;
+	}
+}
@@ -0,0 +1,254 @@
+package de.codesourcery.fft;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+/**
+ * Immutable settings of a noise gate that decides whether a chunk of sample data is worth analysing.
+ *
+ * The gate opens once the RMS level (DC removed) of a chunk reaches {@link #getOpenLevel()} and closes again
+ * only after the level stayed below {@link #getCloseLevel()} for {@link #getHoldChunks()} consecutive chunks , so
+ * decaying notes do not flicker in and out. Optionally , the gate refuses to open on noise-like chunks whose
+ * spectral flatness (measured on a short FFT) exceeds {@link #getMaxFlatness()}.
+ *
+ * Gate state lives in {@link Detector} instances , one per continuous stream of sample data.
+ */
+public final class SilenceGate
+{
+	public static final double DEFAULT_OPEN_LEVEL = -45; // dBFS
+	public static final double DEFAULT_CLOSE_LEVEL = -51; // dBFS
+	public static final int DEFAULT_HOLD_CHUNKS = 3;
+
+	/**
+	 * Suggested max. spectral flatness , white noise yields ~0.56 while tonal signals stay well below 0.1 .
+	 */
+	public static final double DEFAULT_MAX_FLATNESS = 0.35;
+
+	// size of the FFT used to measure spectral flatness
+	private static final int FLATNESS_FFT_SIZE = 256;
+
+	/**
+	 * RMS-only gate with default levels.
+	 */
+	public static final SilenceGate DEFAULT = new SilenceGate( DEFAULT_OPEN_LEVEL , DEFAULT_CLOSE_LEVEL , DEFAULT_HOLD_CHUNKS , Double.NaN );
+
+	private final double openLevel;
+	private final double closeLevel;
+	private final int holdChunks;
+	private final double maxFlatness;
+
+	// levels as RMS relative to full scale
+	private final double openRms;
+	private final double closeRms;
+
+	/**
+	 * Create instance.
+	 *
+	 * @param openLevel RMS level in dBFS at which the gate opens
+	 * @param closeLevel RMS level in dBFS below which the gate closes , must not exceed <code>openLevel</code>
+	 * @param holdChunks number of consecutive quiet chunks before the gate closes (at least 1)
+	 * @param maxFlatness max. spectral flatness (0...1) of a chunk opening the gate , <code>Double.NaN</code> disables the check
+	 */
+	public SilenceGate(double openLevel,double closeLevel,int holdChunks,double maxFlatness)
+	{
+		if ( closeLevel > openLevel ) {
+			throw new IllegalArgumentException("Close level "+closeLevel+" dB must not exceed open level "+openLevel+" dB");
+		}
+		if ( holdChunks < 1 ) {
+			throw new IllegalArgumentException("Hold count must be >= 1 , was: "+holdChunks);
+		}
+		if ( ! Double.isNaN( maxFlatness ) && ( maxFlatness <= 0 || maxFlatness > 1 ) ) {
+			throw new IllegalArgumentException("Max. flatness must be in (0,1] , was: "+maxFlatness);
+		}
+		this.openLevel = openLevel;
+		this.closeLevel = closeLevel;
+		this.holdChunks = holdChunks;
+		this.maxFlatness = maxFlatness;
+		this.openRms = Math.pow( 10 , openLevel / 20 );
+		this.closeRms = Math.pow( 10 , closeLevel / 20 );
+	}
+
+	/**
+	 * Returns a copy of this gate that additionally checks the spectral flatness before opening.
+	 *
+	 * @param maxFlatness
+	 * @return
+	 * @see #DEFAULT_MAX_FLATNESS
+	 */
+	public SilenceGate withMaxFlatness(double maxFlatness) {
+		return new SilenceGate( openLevel , closeLevel , holdChunks , maxFlatness );
+	}
+
+	public double getOpenLevel() {
+		return openLevel;
+	}
+
+	public double getCloseLevel() {
+		return closeLevel;
+	}
+
+	public int getHoldChunks() {
+		return holdChunks;
+	}
+
+	public double getMaxFlatness() {
+		return maxFlatness;
+	}
+
+	public boolean isFlatnessCheckEnabled() {
+		return ! Double.isNaN( maxFlatness );
+	}
+
+	public Detector createDetector() {
+		return new Detector();
+	}
+
+	/**
+	 * Gate state for one stream of sample data , not thread-safe.
+	 */
+	public final class Detector
+	{
+		private boolean open;
+		private int quietChunks;
+
+		// lazily allocated buffers for the flatness check
+		private DoubleFFT_1D fft;
+		private double[] fftData;
+
+		private Detector() {
+		}
+
+		/**
+		 * Feeds the next chunk of sample data to the gate.
+		 *
+		 * @param samples
+		 * @param fullScale amplitude corresponding to 0 dBFS
+		 * @return <code>true</code> if the chunk should be analysed
+		 */
+		public boolean process(double[] samples,double fullScale)
+		{
+			final double rms = rms( samples ) / fullScale;
+			if ( open )
+			{
+				if ( rms >= closeRms ) {
+					quietChunks = 0;
+				} else if ( ++quietChunks >= holdChunks ) {
+					open = false;
+				}
+			}
+			else if ( rms >= openRms && ( ! isFlatnessCheckEnabled() || flatness( samples ) <= maxFlatness ) )
+			{
+				open = true;
+				quietChunks = 0;
+			}
+			return open;
+		}
+
+		public boolean isOpen() {
+			return open;
+		}
+
+		public SilenceGate getGate() {
+			return SilenceGate.this;
+		}
+
+		private double flatness(double[] samples)
+		{
+			if ( samples.length < FLATNESS_FFT_SIZE ) {
+				return 0;
+			}
+			if ( fft == null )
+			{
+				fft = new DoubleFFT_1D( FLATNESS_FFT_SIZE );
+				fftData = new double[ FLATNESS_FFT_SIZE * 2 ];
+			}
+			return spectralFlatness( samples , ( samples.length - FLATNESS_FFT_SIZE ) / 2 , fft , fftData );
+		}
+	}
+
+	/**
+	 * Returns the RMS of sample data after removing its DC offset.
+	 *
+	 * @param samples
+	 * @return
+	 */
+	public static double rms(double[] samples)
+	{
+		final int len = samples.length;
+		if ( len == 0 ) {
+			return 0;
+		}
+		double sum = 0;
+		double sumOfSquares = 0;
+		for ( int i = 0 ; i < len ; i++ )
+		{
+			final double value = samples[i];
+			sum += value;
+			sumOfSquares += value*value;
+		}
+		final double mean = sum / len;
+		return Math.sqrt( Math.max( 0 , sumOfSquares / len - mean*mean ) );
+	}
+
+	/**
+	 * Returns the spectral flatness (geometric mean / arithmetic mean of the power spectrum, DC excluded)
+	 * of a Hann-windowed block of sample data.
+	 *
+	 * @param samples
+	 * @param offset start of the block
+	 * @param fft FFT whose size determines the block size
+	 * @param fftData scratch buffer with twice the FFT size
+	 * @return flatness between 0 (pure tone) and 1 (perfectly flat) , 1 for a block without any energy
+	 */
+	private static double spectralFlatness(double[] samples,int offset,DoubleFFT_1D fft,double[] fftData)
+	{
+		final int size = fftData.length / 2;
+		for ( int i = 0 , ptr = 0 ; i < size ; i++ , ptr += 2 )
+		{
+			final double window = 0.5 - 0.5*Math.cos( 2*Math.PI*i / ( size-1 ) );
+			fftData[ptr] = samples[offset+i] * window;
+			fftData[ptr+1] = 0;
+		}
+		fft.complexForward( fftData );
+
+		double logSum = 0;
+		double sum = 0;
+		final int bands = size / 2;
+		for ( int bin = 1 ; bin < bands ; bin++ )
+		{
+			final double re = fftData[2*bin];
+			final double im = fftData[2*bin+1];
+			// tiny offset keeps log() finite for empty bins
+			final double power = re*re + im*im + 1e-30;
+			logSum += Math.log( power );
+			sum += power;
+		}
+		final double arithmeticMean = sum / ( bands - 1 );
+		return Math.min( 1 , Math.exp( logSum / ( bands - 1 ) ) / arithmeticMean );
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if ( obj instanceof SilenceGate )
+		{
+			final SilenceGate o = (SilenceGate) obj;
+			return o.openLevel == openLevel && o.closeLevel == closeLevel && o.holdChunks == holdChunks &&
+					Double.compare( o.maxFlatness , maxFlatness ) == 0;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int result = Double.valueOf( openLevel ).hashCode();
+		result = 31 * result + Double.valueOf( closeLevel ).hashCode();
+		result = 31 * result + holdChunks;
+		return 31 * result + Double.valueOf( maxFlatness ).hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "SilenceGate [ open="+openLevel+" dBFS , close="+closeLevel+" dBFS , hold="+holdChunks+" , maxFlatness="+maxFlatness+" ]";
+	}
+}
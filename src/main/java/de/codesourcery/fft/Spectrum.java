@@ -4,10 +4,36 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
+import de.codesourcery.fft.PeakFinder.Interpolation;
+import de.codesourcery.fft.PeakFinder.Peak;
 
+
+/**
+ * Result of a spectrum calculation.
+ * 
+ * Derived values (peaks , log-scaled data , centroid etc.) are calculated on first access 
+ * and cached ; instances may be shared freely between threads. Arrays returned by this 
+ * class must not be modified.
+ */
 public final class Spectrum
 {
+    public static final int DEFAULT_PEAK_COUNT = 8;
+    public static final int DEFAULT_PEAK_RADIUS = 3;
+    
+    /**
+     * Center frequencies of the octave bands returned by {@link #getOctaveBandEnergies()}.
+     */
+    public static final double[] OCTAVE_BAND_CENTERS = { 31.5 , 63 , 125 , 250 , 500 , 1000 , 2000 , 4000 , 8000 , 16000 };
+    
+    // lower bound for log-scaled values of empty bins
+    private static final double MIN_DECIBELS = -200;
+    
+    // all-zero power spectra shared by silent and targeted results , by FFT size
+    private static final ConcurrentHashMap<Integer,double[]> EMPTY_DATA = new ConcurrentHashMap<>();
+    
+
     private final double[] powerSpectrum;
     private final int fftSize;
     private final boolean windowFunctionApplied;
@@ -24,7 +50,24 @@ public final class Spectrum
     
     private final boolean filtersApplied;
     
-    private final List<FrequencyAndSlot> topAutoCorrelated;
+    private final double fundamentalFrequency;
+    
+    private final boolean silent;
+    
+    private final TargetedBins targetedBins;
+    
+    private final InstantaneousFrequency instantaneousFrequency;
+    
+    // derived values , calculated on first access. Calculations are idempotent and results are
+    // never modified after publication , so concurrent first accesses just do redundant work
+    private volatile List<FrequencyAndSlot> topAutoCorrelated;
+    private volatile List<Peak> powerPeaks;
+    private volatile double[] decibels;
+    private volatile double[] logScaled;
+    private volatile double[] octaveBandEnergies;
+    private volatile Double spectralCentroid;
+    private volatile Double noiseFloor;
+    private volatile PitchSet pitchSet;
     
     public Spectrum(double[] powerSpectrum, 
     		double[] autoCorrelation,
@@ -35,6 +78,65 @@ public final class Spectrum
     		double maxValue,
     		boolean filtersApplied,
     		double volumeInPercent)
+    {
+        this(powerSpectrum,autoCorrelation,fftSize,sampleRate,windowFunctionApplied,minValue,maxValue,filtersApplied,volumeInPercent,Double.NaN);
+    }
+    
+    /**
+     * Create instance.
+     * 
+     * @param autoCorrelation auto-correlation , may be <code>null</code> if pitch detection did not use it
+     * @param fundamentalFrequency fundamental frequency detected from the power spectrum or <code>Double.NaN</code>
+     */
+    public Spectrum(double[] powerSpectrum, 
+            double[] autoCorrelation,
+            int fftSize,
+            double sampleRate,
+            boolean windowFunctionApplied,
+            double minValue,
+            double maxValue,
+            boolean filtersApplied,
+            double volumeInPercent,
+            double fundamentalFrequency)
+    {
+        this(powerSpectrum,autoCorrelation,fftSize,sampleRate,windowFunctionApplied,minValue,maxValue,filtersApplied,volumeInPercent,fundamentalFrequency,null);
+    }
+    
+    /**
+     * Create instance.
+     * 
+     * @param autoCorrelation auto-correlation , may be <code>null</code> if pitch detection did not use it
+     * @param fundamentalFrequency fundamental frequency detected from the power spectrum or <code>Double.NaN</code>
+     * @param instantaneousFrequency phase-vocoder estimates , may be <code>null</code> if less than two frames were analysed
+     */
+    public Spectrum(double[] powerSpectrum, 
+            double[] autoCorrelation,
+            int fftSize,
+            double sampleRate,
+            boolean windowFunctionApplied,
+            double minValue,
+            double maxValue,
+            boolean filtersApplied,
+            double volumeInPercent,
+            double fundamentalFrequency,
+            InstantaneousFrequency instantaneousFrequency)
+    {
+        this(powerSpectrum,autoCorrelation,fftSize,sampleRate,windowFunctionApplied,minValue,maxValue,filtersApplied,volumeInPercent,fundamentalFrequency,false,null,instantaneousFrequency);
+    }
+    
+    private Spectrum(double[] powerSpectrum, 
+            double[] autoCorrelation,
+            int fftSize,
+            double sampleRate,
+            boolean windowFunctionApplied,
+            double minValue,
+            double maxValue,
+            boolean filtersApplied,
+            double volumeInPercent,
+            double fundamentalFrequency,
+            boolean silent,
+            TargetedBins targetedBins,
+            InstantaneousFrequency instantaneousFrequency)
     {
         this.powerSpectrum = powerSpectrum;
         if ( ( fftSize >> 1 ) << 1 != fftSize ) {
@@ -49,7 +151,111 @@ public final class Spectrum
         this.minPower = minValue;
         this.maxPower = maxValue;
         this.volumeInPercent = volumeInPercent;
-        this.topAutoCorrelated = calcTopAutoCorrelationFrequencies(4);
+        this.fundamentalFrequency = fundamentalFrequency;
+        this.silent = silent;
+        this.targetedBins = targetedBins;
+        this.instantaneousFrequency = instantaneousFrequency;
+    }
+    
+    /**
+     * Returns a placeholder for sample data that has been rejected by a {@link SilenceGate} .
+     * 
+     * Silent spectra share an all-zero power spectrum and carry neither auto-correlation nor fundamental frequency.
+     * 
+     * @param fftSize
+     * @param sampleRate
+     * @param windowFunctionApplied
+     * @param filtersApplied
+     * @param volumeInPercent
+     * @return
+     * @see #isSilent()
+     */
+    public static Spectrum silent(int fftSize,double sampleRate,boolean windowFunctionApplied,boolean filtersApplied,double volumeInPercent) 
+    {
+        return new Spectrum( getEmptyData( fftSize ) , null , fftSize , sampleRate , windowFunctionApplied , 0 , 0 , filtersApplied , volumeInPercent , Double.NaN , true , null , null );
+    }
+    
+    /**
+     * Returns a spectrum that only carries the power at some target frequencies , calculated without a FFT.
+     * 
+     * The power spectrum of such results is empty , the fundamental frequency is the one reported by
+     * {@link TargetedBins#getFundamentalFrequency()}.
+     * 
+     * @param fftSize
+     * @param sampleRate
+     * @param windowFunctionApplied
+     * @param filtersApplied
+     * @param volumeInPercent
+     * @param bins
+     * @return
+     * @see #getTargetedBins()
+     */
+    public static Spectrum targeted(int fftSize,double sampleRate,boolean windowFunctionApplied,boolean filtersApplied,double volumeInPercent,TargetedBins bins) 
+    {
+        return new Spectrum( getEmptyData( fftSize ) , null , fftSize , sampleRate , windowFunctionApplied , 0 , 0 , filtersApplied , volumeInPercent , 
+                bins.getFundamentalFrequency() , false , bins , null );
+    }
+    
+    private static double[] getEmptyData(int fftSize) 
+    {
+        double[] data = EMPTY_DATA.get( fftSize );
+        if ( data == null ) 
+        {
+            data = new double[ fftSize ];
+            final double[] existing = EMPTY_DATA.putIfAbsent( fftSize , data );
+            if ( existing != null ) {
+                data = existing;
+            }
+        }
+        return data;
+    }
+    
+    /**
+     * Returns whether the sample data was too quiet to be analysed.
+     * 
+     * @return
+     * @see #silent(int, double, boolean, boolean, double)
+     */
+    public boolean isSilent() {
+        return silent;
+    }
+    
+    /**
+     * Returns the power at the target frequencies , if this spectrum was calculated in targeted mode.
+     * 
+     * @return bins or <code>null</code>
+     * @see AbstractSpectrumProvider#setTargetedBins(GoertzelBank)
+     */
+    public TargetedBins getTargetedBins() {
+        return targetedBins;
+    }
+    
+    /**
+     * Returns the phase-vocoder frequency estimates for this spectrum's bins.
+     * 
+     * @return estimates or <code>null</code> if the spectrum was calculated from a single frame (or without FFT)
+     */
+    public InstantaneousFrequency getInstantaneousFrequency() {
+        return instantaneousFrequency;
+    }
+    
+    /**
+     * Returns whether this spectrum carries a detected fundamental frequency.
+     * 
+     * @return
+     * @see #getFundamentalFrequency()
+     */
+    public boolean hasFundamentalFrequency() {
+        return ! Double.isNaN( fundamentalFrequency );
+    }
+    
+    /**
+     * Returns the fundamental frequency detected by the {@link HarmonicProductSpectrum} .
+     * 
+     * @return frequency in Hz or <code>Double.NaN</code>
+     */
+    public double getFundamentalFrequency() {
+        return fundamentalFrequency;
     }
     
     public double getVolumeInPercent() {
@@ -60,8 +266,175 @@ public final class Spectrum
 		return filtersApplied;
 	}
     
-    public List<FrequencyAndSlot> getTopAutoCorrelated() {
-    	return topAutoCorrelated;
+    /**
+     * Returns the (up to) four strongest peaks of the auto-correlation.
+     * 
+     * @return peaks , strongest first ; empty list if no auto-correlation was calculated
+     */
+    public List<FrequencyAndSlot> getTopAutoCorrelated() 
+    {
+        List<FrequencyAndSlot> result = topAutoCorrelated;
+        if ( result == null ) 
+        {
+            if ( autoCorrelation != null ) {
+                result = Collections.unmodifiableList( calcTopAutoCorrelationFrequencies(4) );
+            } else {
+                result = Collections.emptyList();
+            }
+            topAutoCorrelated = result;
+        }
+    	return result;
+    }
+    
+    /**
+     * Returns the {@link #DEFAULT_PEAK_COUNT} strongest peaks of the power spectrum.
+     * 
+     * @return peaks , strongest first
+     * @see #findPowerPeaks(int, int)
+     */
+    public List<Peak> getPowerPeaks() 
+    {
+        List<Peak> result = powerPeaks;
+        if ( result == null ) {
+            result = Collections.unmodifiableList( findPowerPeaks( DEFAULT_PEAK_COUNT , DEFAULT_PEAK_RADIUS ) );
+            powerPeaks = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the power of each band in dB , relative to the strongest band.
+     * 
+     * @return array with {@link #getBands()} elements , empty bands are clamped to {@value #MIN_DECIBELS} dB
+     */
+    public double[] getDecibels() 
+    {
+        double[] result = decibels;
+        if ( result == null ) 
+        {
+            result = new double[ bands ];
+            for ( int i = 0 ; i < bands ; i++ ) 
+            {
+                final double ratio = powerSpectrum[i] / maxPower;
+                result[i] = ratio > 0 ? Math.max( MIN_DECIBELS , 10 * Math.log10( ratio ) ) : MIN_DECIBELS;
+            }
+            decibels = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns <code>log10( power - min. power )</code> for each band.
+     * 
+     * @return array with {@link #getBands()} elements , the weakest band(s) yield <code>-Infinity</code>
+     */
+    public double[] getLogScaledData() 
+    {
+        double[] result = logScaled;
+        if ( result == null ) 
+        {
+            final double offset = minPower > 0 ? -minPower : minPower;
+            result = new double[ bands ];
+            for ( int i = 0 ; i < bands ; i++ ) {
+                result[i] = Math.log10( powerSpectrum[i] + offset );
+            }
+            logScaled = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the spectral centroid (power-weighted mean frequency).
+     * 
+     * @return centroid in Hz , <code>Double.NaN</code> if the spectrum is empty
+     */
+    public double getSpectralCentroid() 
+    {
+        Double result = spectralCentroid;
+        if ( result == null ) 
+        {
+            double weightedSum = 0;
+            double totalPower = 0;
+            for ( int i = 1 ; i < bands ; i++ ) 
+            {
+                weightedSum += i * powerSpectrum[i];
+                totalPower += powerSpectrum[i];
+            }
+            result = totalPower > 0 ? getFrequencyForBin( weightedSum / totalPower ) : Double.NaN;
+            spectralCentroid = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the total power in each octave band.
+     * 
+     * @return array with one element per {@link #OCTAVE_BAND_CENTERS center frequency} , 
+     * bands above the Nyquist frequency yield zero
+     */
+    public double[] getOctaveBandEnergies() 
+    {
+        double[] result = octaveBandEnergies;
+        if ( result == null ) 
+        {
+            result = new double[ OCTAVE_BAND_CENTERS.length ];
+            final double binWidth = sampleRate / fftSize;
+            final double lowest = OCTAVE_BAND_CENTERS[0] / Math.sqrt(2);
+            for ( int i = 1 ; i < bands ; i++ ) 
+            {
+                final double frequency = i * binWidth;
+                if ( frequency < lowest ) {
+                    continue;
+                }
+                // bands are one octave wide , edges at center/sqrt(2) and center*sqrt(2)
+                final int band = (int) Math.floor( Math.log( frequency / lowest ) / Math.log( 2 ) );
+                if ( band >= result.length ) {
+                    break;
+                }
+                result[band] += powerSpectrum[i];
+            }
+            octaveBandEnergies = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns an estimate of the noise floor , the median power of all bands except DC.
+     * 
+     * @return
+     */
+    public double getNoiseFloor() 
+    {
+        Double result = noiseFloor;
+        if ( result == null ) 
+        {
+            if ( bands > 1 ) 
+            {
+                final double[] copy = Arrays.copyOfRange( powerSpectrum , 1 , bands );
+                Arrays.sort( copy );
+                result = copy[ copy.length / 2 ];
+            } else {
+                result = 0.0;
+            }
+            noiseFloor = result;
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the notes detected by a {@link MultiPitchEstimator} with default settings.
+     * 
+     * @return
+     */
+    public PitchSet getPitchSet() 
+    {
+        PitchSet result = pitchSet;
+        if ( result == null ) 
+        {
+            result = new MultiPitchEstimator().estimate( this );
+            pitchSet = result;
+        }
+        return result;
     }
     
     @Override
@@ -72,6 +445,11 @@ public final class Spectrum
 				+ maxPower + "data=" + Arrays.toString(powerSpectrum) + ", ]";
 	}
     
+    /**
+     * Returns the auto-correlation.
+     * 
+     * @return auto-correlation or <code>null</code> if pitch detection did not use it
+     */
     public double[] getAutoCorrelation()
     {
         return autoCorrelation;
@@ -115,11 +493,19 @@ public final class Spectrum
 	{
 	    public final double correlationFactor;
 	    public final int slot;
+	    // slot refined by interpolation
+	    public final double position;
 	    
         public FrequencyAndSlot(double correlationFactor, int slot)
+        {
+            this(correlationFactor,slot,slot);
+        }
+        
+        public FrequencyAndSlot(double correlationFactor, int slot,double position)
         {
             this.correlationFactor = correlationFactor;
             this.slot = slot;
+            this.position = position;
         }
         @Override
         public int compareTo(FrequencyAndSlot o)
@@ -130,7 +516,7 @@ public final class Spectrum
         public double getFrequency() 
         {
             final double windowDurationInSeconds = getBands() / sampleRate / 2;
-            final double percentage = slot / (double) getBands();
+            final double percentage = position / (double) getBands();
             
             final double currentTime = percentage * windowDurationInSeconds;
             return 1.0 / currentTime;
@@ -143,35 +529,37 @@ public final class Spectrum
         }
 	}
 	
+    /**
+     * Returns the strongest peaks of the power spectrum.
+     * 
+     * @param count max. number of peaks to return
+     * @param radius neighbourhood size , see {@link PeakFinder}
+     * @return peaks , strongest first ; positions are FFT bins refined using Gaussian interpolation
+     */
+    public List<Peak> findPowerPeaks(int count,int radius) 
+    {
+        return new PeakFinder( Interpolation.GAUSSIAN ).findPeaks( powerSpectrum , 1 , getBands() , radius , count );
+    }
+    
+    /**
+     * Returns the frequency of a (possibly fractional) FFT bin.
+     * 
+     * @param bin
+     * @return
+     */
+    public double getFrequencyForBin(double bin) {
+        return bin * sampleRate / fftSize;
+    }
+    
 	private List<FrequencyAndSlot> calcTopAutoCorrelationFrequencies(int count) 
 	{
-	    final List<FrequencyAndSlot> candidates = new ArrayList<>();
-	    
 	    final int peakHeight = (int) (1+(getBands()*0.1));
 	    
-outer:	    
-	    for ( int i = peakHeight ; i < getBands()-peakHeight ; i++ ) 
-	    {
-	        double val2 = getAutoCorrelation()[i];
-	        
-	        for ( int j = i-peakHeight ; j < i ; j++ ) {
-	            if ( getAutoCorrelation()[j] >= val2 ) {
-	                continue outer;
-	            }
-	        }
-	        
-            for ( int j = i+1 ; j < i+peakHeight ; j++ ) {
-                if ( getAutoCorrelation()[j] >= val2 ) {
-                    continue outer;
-                }
-            }	        
-            candidates.add( new FrequencyAndSlot( val2 , i ) );
-	    }
-	    Collections.sort( candidates );
-	    Collections.reverse( candidates );
-	    if ( candidates.size() > count ) {
-	        return candidates.subList( 0 , count );
+	    final List<Peak> peaks = new PeakFinder( Interpolation.PARABOLIC ).findPeaks( autoCorrelation , peakHeight , getBands()-peakHeight , peakHeight , count );
+	    final List<FrequencyAndSlot> result = new ArrayList<>( peaks.size() );
+	    for ( Peak p : peaks ) {
+	        result.add( new FrequencyAndSlot( p.value , p.index , p.position ) );
 	    }
-	    return candidates;
+	    return result;
 	}    
 }
\ No newline at end of file
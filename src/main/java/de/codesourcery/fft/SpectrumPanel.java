@@ -4,24 +4,23 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.event.KeyAdapter;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
 import java.text.DecimalFormat;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
 
 import javax.swing.JPanel;
-import javax.swing.SwingUtilities;
 
 import de.codesourcery.fft.ISpectrumProvider.ICallback;
+import de.codesourcery.fft.ISpectrumProvider.ISubscription;
 import de.codesourcery.fft.Spectrum.FrequencyAndSlot;
 
 public final class SpectrumPanel extends JPanel {
 
-	private final Object REFRESH_THREAD_LOCK = new Object();
-
 	private volatile int currentMarkerX = -1;
 
 	private volatile int width;
@@ -41,6 +40,9 @@ public final class SpectrumPanel extends JPanel {
 	// plot power spectrum using log scale
 	private volatile boolean useLogScale=true;
 
+	// plot power spectrum on a logarithmic frequency axis
+	private volatile boolean logFrequencyAxis;
+
 	private volatile boolean applyFilters;
 	private volatile boolean applyWindowFunction=true;
 	private volatile int bands;
@@ -48,121 +50,88 @@ public final class SpectrumPanel extends JPanel {
 	
 	private final TunerPanel tunerPanel;
 
-	private final RefreshThread refreshThread = new RefreshThread();
-	
+	private volatile WaterfallPanel waterfall;
+
 	private final VolumeMeter volumeMeter = new VolumeMeter( 100 );
 
-	protected final class RefreshThread extends Thread 
-	{
-		private volatile boolean terminateRefreshThread;
-		private final CountDownLatch latch = new CountDownLatch(1);
+	private volatile ISubscription subscription;
 
-		public RefreshThread()
-		{
-			setDaemon(true);
-			start();
-		}
+	private volatile Spectrum spectrum;
 
-		public void terminate() 
-		{
-			terminateRefreshThread = true;
+	private static final Color LIGHT_BLUE = new Color( 0x80 , 0x80 , 0xff );
+	private static final Color DARK_GREEN = new Color( 0x00 , 0x80 , 0x00 );
+
+	// plots are rendered off the EDT into the back buffer , the EDT only blits the front buffer
+	private final Object renderLock = new Object();
+	// @GuardedBy( renderLock )
+	private BufferedImage frontBuffer;
+	// @GuardedBy( renderLock )
+	private BufferedImage backBuffer;
+	// @GuardedBy( renderLock )
+	private Spectrum renderedSpectrum;
+	// linear mapping shared by both plots , power spectrum and auto-correlation both have fftSize/2 bands
+	// @GuardedBy( renderLock )
+	private ColumnMapping columnMapping;
+	// @GuardedBy( renderLock )
+	private ColumnMapping.Aggregate powerAggregate;
+	// @GuardedBy( renderLock )
+	private ColumnMapping.Aggregate autoCorrelationAggregate;
+
+	// runs on the EDT , at most once per frame with the latest spectrum
+	private final Runnable tunerUpdate = new Runnable() {
 
-			synchronized( REFRESH_THREAD_LOCK ) {
-				REFRESH_THREAD_LOCK.notifyAll();
+		@Override
+		public void run()
+		{
+			final Spectrum latest = SpectrumPanel.this.spectrum;
+			if ( latest.isSilent() ) 
+			{
+				// nothing to analyse
 			}
-
-			while(true) 
+			else if ( latest.getVolumeInPercent() >= 0.05 && latest.hasFundamentalFrequency() ) 
 			{
-				try {
-					latch.await();
-					break;
-				} catch (Exception e) {
-				}
+				tunerPanel.setPitch( latest.getFundamentalFrequency() );
 			}
-		}
-
-		public void run() 
-		{
-			try 
+			else if ( latest.getVolumeInPercent() >= 0.05 ) 
 			{
-				outer:				
-					while( ! terminateRefreshThread ) 
+				final List<FrequencyAndSlot> top = latest.getTopAutoCorrelated();
+				if ( top.size() >= 2 ) 
+				{
+					// I intentionally use at most an uneven (the top-3) number of frequencies here to
+					// avoid ambiguous pitch detection ( think of the case where we would have 4 frequencies
+					// with { f1 , f1*2 , f2 , f2*2 } ) 							
+					final int maxFrequencies = Math.min( top.size() , 3 );
+					
+					final double[] frequencies = new double[ maxFrequencies ];
+
+					for ( int i = 0 ; i < maxFrequencies  ; i++ ) 
 					{
-						synchronized(REFRESH_THREAD_LOCK) 
-						{
-							while ( spectrumProvider == null || spectrumProvider.isStatic() ) 
-							{
-								try {
-									REFRESH_THREAD_LOCK.wait();
-								} 
-								catch (InterruptedException e) 
-								{
-									Thread.currentThread().interrupt();
-								}
-								continue outer;
-							}
-						}
-
-						try {
-						    refresh();
-						} 
-						catch(Exception e) {
-						    e.printStackTrace();
-						}
-
-						try 
-						{
-							Thread.sleep( 100 );
-						} 
-						catch (InterruptedException e) {
-							Thread.currentThread().interrupt();
-						}
+						frequencies[i] = top.get(i).getFrequency();
 					}
-			} finally {
-				latch.countDown();
-				System.out.println("Refresh thread terminated");
+					tunerPanel.setFrequency( frequencies );
+				}
 			}
 		}
-	}; 
-
-	private volatile Spectrum spectrum;
+	};
 
 	private final ICallback repaintCallback = new ICallback() {
 
 		@Override
-		public void calculationFinished(ISpectrumProvider provider, final Spectrum spectrum)
+		public void calculationFinished(ISpectrumProvider provider, Spectrum spectrum)
 		{
 			SpectrumPanel.this.spectrum = spectrum;
 			
 			volumeMeter.setVolume( spectrum.getVolumeInPercent() );
-			
-			SwingUtilities.invokeLater( new Runnable()  {
+			render( spectrum );
 
-				@Override
-				public void run()
-				{
-					if ( spectrum.getVolumeInPercent() >= 0.05 ) 
-					{
-						final List<FrequencyAndSlot> top = spectrum.getTopAutoCorrelated();
-						if ( top.size() >= 2 ) 
-						{
-							// I intentionally use at most an uneven (the top-3) number of frequencies here to
-							// avoid ambiguous pitch detection ( think of the case where we would have 4 frequencies
-							// with { f1 , f1*2 , f2 , f2*2 } ) 							
-							final int maxFrequencies = Math.min( top.size() , 3 );
-							
-							final double[] frequencies = new double[ maxFrequencies ];
-
-							for ( int i = 0 ; i < maxFrequencies  ; i++ ) 
-							{
-								frequencies[i] = top.get(i).getFrequency();
-							}
-							tunerPanel.setFrequency( frequencies );
-						}
-					}
-					SpectrumPanel.this.repaint();
-				}
-			});
+			final WaterfallPanel waterfall = SpectrumPanel.this.waterfall;
+			if ( waterfall != null ) {
+				waterfall.append( spectrum );
+			}
+			
+			final FrameScheduler scheduler = FrameScheduler.getInstance();
+			scheduler.requestUpdate( tunerUpdate );
+			scheduler.requestRepaint( SpectrumPanel.this );
 		}
 		@Override
 		public void calculationFailed(ISpectrumProvider provider) { }
@@ -182,7 +151,7 @@ public final class SpectrumPanel extends JPanel {
 			{
 				applyMinValue = false;
 				System.out.println("Cleared min. value");
-				refresh();
+				rerender();
 			} 
 			else if ( e.getKeyChar()== 'm') {
 				Spectrum spectrum = getSpectrum();
@@ -192,6 +161,22 @@ public final class SpectrumPanel extends JPanel {
 					System.out.println("Applying min. value: "+minValue);
 				}
 			} 
+			else if ( e.getKeyChar()== 't' && spectrumProvider instanceof AbstractSpectrumProvider ) 
+			{
+				final AbstractSpectrumProvider provider = (AbstractSpectrumProvider) spectrumProvider;
+				provider.setTargetedBins( provider.getTargetedBins() == null ? GoertzelBank.forKeys( TuningHelper.GUITAR_KEYS ) : null );
+				System.out.println("Targeted bins: "+( provider.getTargetedBins() != null ) );
+			}
+			else if ( e.getKeyChar()== 'l') 
+			{
+				logFrequencyAxis = ! logFrequencyAxis;
+				final WaterfallPanel waterfall = SpectrumPanel.this.waterfall;
+				if ( waterfall != null ) {
+					waterfall.setLogFrequencyAxis( logFrequencyAxis );
+				}
+				System.out.println("Logarithmic frequency axis: "+logFrequencyAxis);
+				rerender();
+			}
 			else if ( e.getKeyChar()== 'w') {
 				applyWindowFunction = ! applyWindowFunction;
 				System.out.println("Apply window function: "+applyWindowFunction);
@@ -238,7 +223,9 @@ public final class SpectrumPanel extends JPanel {
 
 	public void dispose() 
 	{
-		refreshThread.terminate();
+		if ( subscription != null ) {
+			subscription.cancel();
+		}
 		spectrumProvider.close();
 	}
 
@@ -260,37 +247,38 @@ public final class SpectrumPanel extends JPanel {
 
 	public void setSpectrumProvider(ISpectrumProvider provider)
 	{
+		if ( this.subscription != null ) {
+			this.subscription.cancel();
+		}
 		if ( this.spectrumProvider != null ) {
 			this.spectrumProvider.close();
 		}
 		this.spectrumProvider = provider;
-		synchronized( REFRESH_THREAD_LOCK ) 
-		{
-			REFRESH_THREAD_LOCK.notifyAll();
+		if ( waterfall != null ) {
+			waterfall.clear();
 		}
 		refresh();
 	}
 
-	public void refresh() 
-	{
-		final long start = System.currentTimeMillis();
-
-		final ICallback callback = new ICallback() {
-
-			@Override
-			public void calculationFinished(ISpectrumProvider provider,
-					Spectrum spectrum) 
-			{
-				repaintCallback.calculationFinished( provider , spectrum);
-			}
-
-			@Override
-			public void calculationFailed(ISpectrumProvider provider) {
-				repaintCallback.calculationFailed(provider);
-			}
-		};
+	/**
+	 * Sets the waterfall view that gets a row for each spectrum displayed by this panel.
+	 *
+	 * @param waterfall waterfall or <code>null</code>
+	 */
+	public void setWaterfall(WaterfallPanel waterfall) {
+		this.waterfall = waterfall;
+	}
 
-		spectrumProvider.calcSpectrum( callback , this.bands*2 , this.applyWindowFunction , this.applyFilters );   
+	/**
+	 * (Re-)subscribes to the current spectrum provider using the current FFT settings.
+	 */
+	public synchronized void refresh() 
+	{
+		final ISubscription previous = this.subscription;
+		this.subscription = spectrumProvider.subscribe( repaintCallback , this.bands*2 , this.applyWindowFunction , this.applyFilters );
+		if ( previous != null ) {
+			previous.cancel();
+		}
 	}
 
 	private void resized(Spectrum s) 
@@ -313,18 +301,64 @@ public final class SpectrumPanel extends JPanel {
 
 	protected Spectrum getSpectrum() 
 	{
-		if ( spectrum == null ) {
-			refresh();
-			return null;
-		}
 		return spectrum;
 	}
 
 	private long renderCount = 0;
+
+	/*
+	 * Rasterises a spectrum into the back buffer and makes it the front buffer.
+	 * 
+	 * Invoked by the thread delivering spectra so the EDT only needs to blit the result , 
+	 * and on the EDT when the panel got resized.
+	 */
+	private void render(Spectrum s) 
+	{
+		final int w = getWidth();
+		final int h = getHeight();
+		if ( w <= 0 || h <= 0 ) {
+			return;
+		}
+		long time = -System.currentTimeMillis();
+		synchronized( renderLock ) 
+		{
+			if ( backBuffer == null || backBuffer.getWidth() != w || backBuffer.getHeight() != h ) {
+				backBuffer = new BufferedImage( w , h , BufferedImage.TYPE_INT_RGB );
+			}
+			final Graphics2D g = backBuffer.createGraphics();
+			try 
+			{
+				g.setColor( getBackground() );
+				g.fillRect( 0 , 0 , w , h );
+				g.setFont( getFont() );
+
+				resized(s);
+				if ( s.getTargetedBins() != null ) {
+					plotTargetedBins( g , s.getTargetedBins() );
+				} else if ( ! s.isSilent() ) {
+					plotPowerSpectrum( g , s );
+				}
+				if ( s.getAutoCorrelation() != null ) {
+					plotAutoCorrelation( g , s );
+				}
+			} 
+			finally {
+				g.dispose();
+			}
+			final BufferedImage tmp = frontBuffer;
+			frontBuffer = backBuffer;
+			backBuffer = tmp;
+			renderedSpectrum = s;
+		}
+		time += System.currentTimeMillis();
+		if ( ( renderCount++ % 50 ) == 0 ) {
+//			System.out.println("Rendering time: "+time);
+		}
+	}
+
 	@Override
 	public void paintComponent(Graphics g)
 	{
-		long time = -System.currentTimeMillis();
 		super.paintComponent(g);
 
 		currentMarkerX =  -1;
@@ -332,21 +366,65 @@ public final class SpectrumPanel extends JPanel {
 		Spectrum s = getSpectrum();
 		if ( s != null )
 		{   
-			resized(s);
-			plotPowerSpectrum( g , s );
-			if ( s.getAutoCorrelation() != null ) {
-				plotAutoCorrelation( g , s );
+			synchronized( renderLock ) 
+			{
+				if ( frontBuffer == null || frontBuffer.getWidth() != getWidth() || frontBuffer.getHeight() != getHeight() ) {
+					render( renderedSpectrum != null ? renderedSpectrum : s );
+				}
+				if ( frontBuffer != null ) {
+					g.drawImage( frontBuffer , 0 , 0 , null );
+				}
 			}
 			plotMarkerFrequency(g);
-			time += System.currentTimeMillis();
-			if ( ( renderCount++ % 50 ) == 0 ) {
-//				System.out.println("Rendering time: "+time);
-			}
 		} else {
 			System.out.println("No spectrum to paint");
 		}
 	}
 
+	/*
+	 * Returns the linear mapping of bands to pixel columns , reusing the current one if it still fits.
+	 */
+	private ColumnMapping getLinearMapping(int bands) 
+	{
+		final int columns = Math.max( 1 , width );
+		if ( columnMapping == null || columnMapping.getBands() != bands || columnMapping.getWidth() != columns ) {
+			columnMapping = ColumnMapping.linear( bands , columns );
+		}
+		return columnMapping;
+	}
+
+	/*
+	 * Returns the (cached) logarithmic mapping for a power spectrum.
+	 */
+	private ColumnMapping getLogMapping(Spectrum s) 
+	{
+		return ColumnMapping.logarithmic( s.getFFTSize() , s.getSampleRate() , ColumnMapping.DEFAULT_MIN_FREQUENCY , Math.max( 1 , width ) );
+	}
+
+	/*
+	 * Returns the mapping from power spectrum bins to pixel columns , along with the aggregate to use with it.
+	 */
+	private ColumnMapping getPowerMapping(Spectrum s) 
+	{
+		final ColumnMapping result = logFrequencyAxis ? getLogMapping( s ) : getLinearMapping( s.getBands() );
+		if ( powerAggregate == null || powerAggregate.getWidth() != result.getWidth() ) {
+			powerAggregate = new ColumnMapping.Aggregate( result.getWidth() );
+		}
+		return result;
+	}
+
+	/*
+	 * Returns the mapping from auto-correlation bands to pixel columns , along with the aggregate to use with it.
+	 */
+	private ColumnMapping getAutoCorrelationMapping(int bands) 
+	{
+		final ColumnMapping result = getLinearMapping( bands );
+		if ( autoCorrelationAggregate == null || autoCorrelationAggregate.getWidth() != result.getWidth() ) {
+			autoCorrelationAggregate = new ColumnMapping.Aggregate( result.getWidth() );
+		}
+		return result;
+	}
+
 	private void plotMarkerFrequency(Graphics g)
 	{
 		// clear old text
@@ -360,9 +438,16 @@ public final class SpectrumPanel extends JPanel {
 			final int lineHeight = g.getFontMetrics().getHeight();
 			g.clearRect( x , y-15 , 250 , lineHeight*5 );
 
-			final int band = (int) ( (currentMarkerX - x1Origin) / scaleX1 );
-
-			final String f1 = AudioFile.hertzToString( getFrequencyForBand(band) );
+			final Spectrum current = getSpectrum();
+			final String f1;
+			if ( logFrequencyAxis && current != null && current.getTargetedBins() == null && currentMarkerX - x1Origin < width ) 
+			{
+				final double bin = getLogMapping( current ).getCenterBin( currentMarkerX - x1Origin );
+				f1 = AudioFile.hertzToString( current.getFrequencyForBin( bin ) );
+			} else {
+				final int band = (int) ( (currentMarkerX - x1Origin) / scaleX1 );
+				f1 = AudioFile.hertzToString( getFrequencyForBand(band) );
+			}
 			g.setColor(Color.BLACK);
 			g.drawString(  f1 , x, y );
 
@@ -392,84 +477,109 @@ public final class SpectrumPanel extends JPanel {
 
 	private void plotAutoCorrelation(Graphics g,Spectrum s) 
 	{
-		g.setColor(Color.GREEN);
-
-		int barWidthInPixels = (int) Math.round(scaleX1);
-		if ( barWidthInPixels < 1 ) {
-			barWidthInPixels = 1;
-		}
-
 		final double[] autoCorr = s.getAutoCorrelation();
 		final int bands = autoCorr.length/2;
 
+		final ColumnMapping mapping = getAutoCorrelationMapping( bands );
+		final ColumnMapping.Aggregate columns = mapping.aggregate( autoCorr , Double.NEGATIVE_INFINITY , autoCorrelationAggregate );
+
 		double min = Double.MAX_VALUE;
 		double max = -Double.MAX_VALUE;
-
-		for ( int i = 1 ; i < bands ; i++ ) {
-			min = Math.min(min, autoCorr[i] );
-			max = Math.max(max, autoCorr[i] );
+		for ( int x = 0 ; x < mapping.getWidth() ; x++ ) 
+		{
+			min = Math.min(min, columns.min[x] );
+			max = Math.max(max, columns.max[x] );
 		}
 		final double scaleY = height / 4.0 / Math.abs( max - min);
-        final double offset = min < 0 ? -min*scaleY:0;		
-		for ( int band = 1 ; band < bands ; band++ ) 
+		final double offset = min < 0 ? -min*scaleY:0;		
+		for ( int x = 0 ; x < mapping.getWidth() ; x++ ) 
 		{
-			final int x = (int) Math.round( x2Origin + band*scaleX1);
-			double y = (autoCorr[band]+offset)*scaleY;
-			if ( y > height ) {
-			    y = height;
+			if ( ! columns.valid[x] ) {
+				continue;
 			}
-			g.fillRect( x , (int) Math.round( y2Origin - y ) , barWidthInPixels , (int) Math.round( y ) );
+			// strongest value per column , mean in a darker shade
+			final int peak = (int) Math.round( Math.min( height , (columns.max[x]+offset)*scaleY ) );
+			final int mean = (int) Math.round( Math.min( height , (columns.mean[x]+offset)*scaleY ) );
+			g.setColor( Color.GREEN );
+			g.fillRect( x2Origin + x , y2Origin - peak , 1 , peak );
+			g.setColor( DARK_GREEN );
+			g.fillRect( x2Origin + x , y2Origin - mean , 1 , mean );
 		}
 
 		final List<FrequencyAndSlot> top = s.getTopAutoCorrelated();
 
 		for ( FrequencyAndSlot a : top ) 
 		{
-			if ( TuningHelper.isValidKey( a ) ) {
-				final int corrX = (int) Math.round( x1Origin + ( a.slot * scaleX1 ) );
+			// same mapping as the bars
+			final int column = mapping.getColumn( a.slot );
+			if ( TuningHelper.isValidKey( a ) && column != -1 ) {
+				final int corrX = x2Origin + column;
 				g.setColor( Color.RED );
 				g.drawLine(corrX , y2Origin , corrX , y1Origin );
 			}
 		}        
 	}	
 
-	private void plotPowerSpectrum(Graphics g,Spectrum s) 
+	private void plotTargetedBins(Graphics g,TargetedBins bins) 
 	{
 		g.setColor(Color.BLUE);
 
-		final double yOffset = s.getMinValue() > 0 ? -s.getMinValue() : s.getMinValue();
+		final double[] power = bins.getPower();
+		double max = 0;
+		for ( double p : power ) {
+			max = Math.max( max , p );
+		}
+		if ( max <= 0 ) {
+			return;
+		}
 
-		int barWidthInPixels = (int) Math.round(scaleX1);
-		if ( barWidthInPixels < 1 ) {
-			barWidthInPixels = 1;
+		// one bar per target , grouped by base frequency
+		final GoertzelBank bank = bins.getBank();
+		final int perBase = bank.getOffsetCount() * bank.getHarmonics();
+		final double barWidth = width / (double) ( power.length + bank.getBaseCount() );
+		final int barWidthInPixels = Math.max( 1 , (int) Math.floor( barWidth ) );
+		for ( int i = 0 ; i < power.length ; i++ ) 
+		{
+			final int x = (int) Math.floor( x1Origin + ( i + i / perBase ) * barWidth );
+			final int y = (int) Math.round( height * power[i] / max );
+			g.fillRect( x , y1Origin - y , barWidthInPixels , y );
 		}
+	}
 
-		final double[] spectrum = s.getData();
+	private void plotPowerSpectrum(Graphics g,Spectrum s) 
+	{
+		final double yOffset = s.getMinValue() > 0 ? -s.getMinValue() : s.getMinValue();
 
 		final int bands = s.getBands();
-		for ( int band = 1 ; band < bands ; band++ ) 
-		{
-			final double frequency = getFrequencyForBand( band );
-			final int x = (int) Math.floor( x1Origin + band*scaleX1);
+		final ColumnMapping mapping = getPowerMapping( s );
+		final ColumnMapping.Aggregate columns = mapping.aggregate( s.getData() , applyMinValue ? minValue : Double.NEGATIVE_INFINITY , powerAggregate );
 
-			if ( ! applyMinValue || spectrum[band] > minValue ) 
+		// scale aggregated values instead of every single band
+		for ( int x = 0 ; x < mapping.getWidth() ; x++ ) 
+		{
+			if ( columns.valid[x] ) 
 			{
-				double value = spectrum[band]+yOffset;
-				double y;
-				if ( useLogScale ) 
-				{
-					value = 4*Math.log10( value*value );
-					y = (value*value*value)/2500.0d;
-				} else {
-					y = value*scaleY1;
-				}
-				g.fillRect( x , (int) Math.round( y1Origin - y ) , barWidthInPixels , (int) Math.round( y ) );
+				final int peak = toPixels( columns.max[x] , yOffset );
+				final int mean = toPixels( columns.mean[x] , yOffset );
+				g.setColor( LIGHT_BLUE );
+				g.fillRect( x1Origin + x , y1Origin - peak , 1 , peak );
+				g.setColor( Color.BLUE );
+				g.fillRect( x1Origin + x , y1Origin - mean , 1 , mean );
 			}
+		}
 
-			if ( bands < 32 ) 
+		if ( bands < 32 && ! mapping.isLogarithmic() ) 
+		{
+			g.setColor( Color.BLUE );
+			int barWidthInPixels = (int) Math.round(scaleX1);
+			if ( barWidthInPixels < 1 ) {
+				barWidthInPixels = 1;
+			}
+			for ( int band = 1 ; band < bands ; band++ ) 
 			{
 				// draw label
-				final String f = AudioFile.hertzToString( frequency );
+				final int x = (int) Math.floor( x1Origin + band*scaleX1);
+				final String f = AudioFile.hertzToString( getFrequencyForBand( band ) );
 				final Rectangle2D bounds = g.getFontMetrics().getStringBounds( f , g );
 
 				g.drawString( f , x + barWidthInPixels/2 - (int) Math.round(bounds.getWidth()/2) , y1Origin + g.getFontMetrics().getHeight() );
@@ -477,6 +587,36 @@ public final class SpectrumPanel extends JPanel {
 		}
 	}
 
+	/*
+	 * Converts a power value to a bar height.
+	 */
+	private int toPixels(double power,double offset) 
+	{
+		double y;
+		if ( useLogScale ) 
+		{
+			// 4*log10( value^2 ) , same offset as Spectrum#getLogScaledData()
+			final double value = 8*Math.log10( power + offset );
+			y = (value*value*value)/2500.0d;
+		} else {
+			y = (power+offset)*scaleY1;
+		}
+		// weakest band yields -Infinity
+		return y > 0 ? (int) Math.round( y ) : 0;
+	}
+
+	/*
+	 * Renders the current spectrum again after display settings changed.
+	 */
+	private void rerender() 
+	{
+		final Spectrum s = getSpectrum();
+		if ( s != null ) {
+			render( s );
+		}
+		repaint();
+	}
+
 	public void setApplyFilters(boolean yesNo) {
 	    this.applyFilters = yesNo;
 	}
@@ -488,6 +628,9 @@ public final class SpectrumPanel extends JPanel {
 
 	private double getBandwidth() 
 	{
-		return spectrumProvider.getAudioFormat().getSampleRate()/2.0/bands;
+		// spectra may have been calculated from decimated data
+		final Spectrum s = spectrum;
+		final double sampleRate = s != null ? s.getSampleRate() : spectrumProvider.getAudioFormat().getSampleRate();
+		return sampleRate/2.0/bands;
 	}    
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package de.codesourcery.fft;
+
+/**
+ * Result of evaluating a {@link GoertzelBank} , the power at each of the bank's target frequencies.
+ *
+ * Instances are immutable , arrays returned by this class must not be modified.
+ */
+public final class TargetedBins
+{
+	private final GoertzelBank bank;
+	private final double[] power;
+	private final double sampleRate;
+
+	// best (base,offset) by harmonic sum , calculated on first access
+	private volatile double[] fundamental;
+
+	public TargetedBins(GoertzelBank bank, double[] power, double sampleRate)
+	{
+		if ( power.length != bank.size() ) {
+			throw new IllegalArgumentException("Expected "+bank.size()+" values , got "+power.length);
+		}
+		this.bank = bank;
+		this.power = power;
+		this.sampleRate = sampleRate;
+	}
+
+	public GoertzelBank getBank() {
+		return bank;
+	}
+
+	/**
+	 * Returns the power of each target.
+	 *
+	 * @return
+	 * @see GoertzelBank#getFrequencies()
+	 */
+	public double[] getPower() {
+		return power;
+	}
+
+	public double getFrequency(int index) {
+		return bank.getFrequency( index );
+	}
+
+	public int size() {
+		return power.length;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Returns the fundamental frequency whose harmonics carry the most power.
+	 *
+	 * The power of all harmonics is summed up for every base frequency and offset , the
+	 * strongest sum gets refined by parabolic interpolation between neighbouring offsets.
+	 *
+	 * @return frequency in Hz or <code>Double.NaN</code> if all targets are empty
+	 */
+	public double getFundamentalFrequency() {
+		return getFundamental()[0];
+	}
+
+	/**
+	 * Returns the index of the base frequency closest to {@link #getFundamentalFrequency()}.
+	 *
+	 * @return index or -1 if all targets are empty
+	 */
+	public int getBaseIndex() {
+		return (int) getFundamental()[1];
+	}
+
+	private double[] getFundamental()
+	{
+		double[] result = fundamental;
+		if ( result == null )
+		{
+			final int offsets = bank.getOffsetCount();
+			final int harmonics = bank.getHarmonics();
+			final double[] sums = new double[ offsets ];
+
+			result = new double[] { Double.NaN , -1 };
+			double bestSum = 0;
+			for ( int base = 0 , ptr = 0 ; base < bank.getBaseCount() ; base++ )
+			{
+				for ( int offset = 0 ; offset < offsets ; offset++ )
+				{
+					double sum = 0;
+					for ( int h = 0 ; h < harmonics ; h++ ) {
+						sum += power[ptr++];
+					}
+					sums[offset] = sum;
+				}
+				for ( int offset = 0 ; offset < offsets ; offset++ )
+				{
+					if ( sums[offset] > bestSum )
+					{
+						bestSum = sums[offset];
+						double position = offset;
+						if ( offset > 0 && offset < offsets-1 ) {
+							position += PeakFinder.parabolicOffset( sums[offset-1] , sums[offset] , sums[offset+1] );
+						}
+						result[0] = bank.getBaseFrequency( base ) * Math.pow( 2 , bank.getCents( position ) / 1200 );
+						result[1] = base;
+					}
+				}
+			}
+			fundamental = result;
+		}
+		return result;
+	}
+}
@@ -6,13 +6,12 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
 import java.util.Arrays;
-import java.util.concurrent.CountDownLatch;
 
 import javax.swing.JPanel;
-import javax.swing.SwingUtilities;
 
 import org.apache.commons.lang.ArrayUtils;
 
+import de.codesourcery.fft.AnimationScheduler.IAnimation;
 import de.codesourcery.fft.TuningHelper.Key;
 
 public class TunerPanel extends JPanel {
@@ -20,33 +19,63 @@ public class TunerPanel extends JPanel {
 	private static final double DEG_TO_RAD = Math.PI/180.0d;
 	private static final double EPSILON = 1;
 	
-	private static final int REFRESH_INTERVAL_MILLIS = 200;
+	// the needle covers ~63% of the remaining distance to the target angle within this time
+	private static final double NEEDLE_TIME_CONSTANT_MILLIS = 400;
 	
 	private static final double ZERO_ANGLE = -90.0;
 	
 	private volatile double targetAngle=ZERO_ANGLE;
 	private volatile double currentAngle=ZERO_ANGLE;
 	
-	private final UpdateThread updateThread;
+	private final IAnimation needleAnimation = new IAnimation() {
+
+		// time of the previous step , -1 if the animation has just been started
+		private long lastTime = -1;
+
+		@Override
+		public boolean animate(long time) 
+		{
+			final double delta = targetAngle - currentAngle;
+			if ( Math.abs( delta ) <= EPSILON ) 
+			{
+				lastTime = -1;
+				return false;
+			}
+			final long elapsed = lastTime == -1 ? AnimationScheduler.getInstance().getTickIntervalNanos() : time - lastTime;
+			lastTime = time;
+
+			final double elapsedMillis = elapsed / 1000000.0;
+			currentAngle += delta * ( 1 - Math.exp( -elapsedMillis / NEEDLE_TIME_CONSTANT_MILLIS ) );
+			FrameScheduler.getInstance().requestRepaint( TunerPanel.this );
+			return true;
+		}
+	};
 	
 	private volatile String label = " -- ";
 	
 	public TunerPanel() 
 	{
-		updateThread = new UpdateThread();
-		updateThread.start();
 		setPreferredSize( new Dimension (80,80 ) );
 		setMinimumSize( new Dimension (80,80 ) );
 	}
 	
+	// frequency the key returned by getGuitarKey() was matched with
+	// @GuardedBy( this )
+	private double matchedFrequency;
+	
+	/*
+	 * Returns the (shared) key instance , the matched frequency is stored in matchedFrequency.
+	 */
 	private final Key getGuitarKey(double actualFrequency) {
 		
 		// find guitar key we're closest to
 		Key best = null;
 		double bestDelta = 0;
 		double translatedActualFrequency=actualFrequency;
-		for ( Key k : TuningHelper.GUITAR_KEYS ) 
+		for ( Key guitarKey : TuningHelper.GUITAR_KEYS ) 
 		{
+			// look up the key for the current reference pitch
+			final Key k = TuningHelper.getKey( guitarKey.getKeyIndex() );
 			// we'll check not only for the fundamental frequency
 			// but also for the 1st and 2nd harmonic
 			for ( int i = 0 ; i < 3 ; i++ ) 
@@ -71,22 +100,25 @@ public class TunerPanel extends JPanel {
 			}			
 		}
 		
-		best = best.withActualFrequency( translatedActualFrequency );
+		matchedFrequency = translatedActualFrequency;
 		
 		if ( best.equals( TuningHelper.E2 ) || best.equals( TuningHelper.E4 ) ) 
 		{
 			// E2 and E4 share the same harmonics so the above algorithm will always pick E2 because
 			// it's compared first ; see whether the measured frequency is closer to the fundamental frequency
 			// of E2 or E4
-			double delta1 = Math.abs( TuningHelper.E2.getTargetFrequency() - actualFrequency );
-			double delta2 = Math.abs( TuningHelper.E4.getTargetFrequency() - actualFrequency );
+			final Key e2 = TuningHelper.getKey( TuningHelper.E2.getKeyIndex() );
+			final Key e4 = TuningHelper.getKey( TuningHelper.E4.getKeyIndex() );
+			double delta1 = Math.abs( e2.getTargetFrequency() - actualFrequency );
+			double delta2 = Math.abs( e4.getTargetFrequency() - actualFrequency );
 			if ( delta1 < delta2 ) {
 				System.out.println("delta1: "+delta1+" / delta2: "+delta2+" => picking E2");
-				best = TuningHelper.E2.withActualFrequency( actualFrequency );
+				best = e2;
 			} else {
 				System.out.println("delta1: "+delta1+" / delta2: "+delta2+" => picking E4");
-				best = TuningHelper.E4.withActualFrequency( actualFrequency );
+				best = e4;
 			}
+			matchedFrequency = actualFrequency;
 		} 
 		return best;
 	}	
@@ -131,19 +163,29 @@ public class TunerPanel extends JPanel {
 	    }
 	    
 		System.out.println("Strongest frequencies: "+ArrayUtils.toString( top )+" (picked: "+frequency+")" );
-		
+		setPitch( frequency );
+	}
+	
+	/**
+	 * Shows the guitar key closest to a detected fundamental frequency.
+	 * 
+	 * @param frequency
+	 */
+	public synchronized void setPitch(double frequency) 
+	{
 		final Key key = getGuitarKey( frequency );
 		
 		this.label = key.getName();
+		FrameScheduler.getInstance().requestRepaint( this );
 		
 		final Key next = key.nextKey();
-		double delta = next.getTargetFrequency() - TuningHelper.getKey( key.getKeyIndex() ).getTargetFrequency();
+		double delta = next.getTargetFrequency() - key.getTargetFrequency();
 		// 100 cent = 1 half-tone
 		final double maxDeviation = delta*0.5; // 1/2 half-tone max. resolution
 		
-		System.out.println("freq = "+key.getActualFrequency()+" => "+key+" ( min: "+(key.getTargetFrequency() - maxDeviation)+" / max: "+(key.getTargetFrequency()+maxDeviation));
+		System.out.println("freq = "+matchedFrequency+" => "+key+" ( min: "+(key.getTargetFrequency() - maxDeviation)+" / max: "+(key.getTargetFrequency()+maxDeviation));
 		
-		setValue( key.getActualFrequency() , key.getTargetFrequency() , maxDeviation );
+		setValue( matchedFrequency , key.getTargetFrequency() , maxDeviation );
 	}
 	
 	public void setValue(double actual,double desired,double maxDeviation) 
@@ -163,12 +205,13 @@ public class TunerPanel extends JPanel {
 		} else {
 			targetAngle = ZERO_ANGLE-90*percentage;
 		}
+		AnimationScheduler.getInstance().start( needleAnimation );
 		System.out.println("actual: "+actual+" / desired: "+desired+"/ target angle: "+targetAngle+" / deviation: "+deviation+" ("+percentage+")");
 	}
 
 	public void terminate() 
 	{
-		updateThread.terminate();
+		AnimationScheduler.getInstance().stop( needleAnimation );
 	}
 	
 	@Override
@@ -211,67 +254,4 @@ public class TunerPanel extends JPanel {
 	    	g.drawRect( stringX-1 , yOrigin+2 , (int) Math.ceil( bounds.getWidth() + 2 ) , (int) Math.ceil( bounds.getHeight() +2 ) );
 	    }
 	}
-	
-	protected final class UpdateThread extends Thread 
-	{
-		private final CountDownLatch latch = new CountDownLatch(1);
-		private volatile boolean terminate = false;
-		
-		public UpdateThread() {
-			setDaemon(true);
-			setName("TunerPanel-UpdateThread");
-		}
-		
-		@Override
-		public void run() 
-		{
-			try 
-			{
-				final int ADJUSTMENT_TIME_MILLIS = 500;
-				
-				while ( ! terminate ) 
-				{
-					final double target = targetAngle;
-					final double delta = target-currentAngle;
-					if ( Math.abs(delta) > EPSILON ) 
-					{
-						final double steps = ADJUSTMENT_TIME_MILLIS / (double) REFRESH_INTERVAL_MILLIS;
-						final double angleIncrement = delta / steps;
-
-						currentAngle += angleIncrement;
-						try {
-							SwingUtilities.invokeAndWait( new Runnable() {
-
-								@Override
-								public void run() 
-								{
-									TunerPanel.this.repaint();
-								}
-							});
-						} 
-						catch (Exception e) 
-						{
-							e.printStackTrace();
-						}
-					}
-					
-					try {
-						Thread.sleep(REFRESH_INTERVAL_MILLIS);
-					} 
-					catch(Exception e) { }
-				}
-			} finally {
-				latch.countDown();
-			}
-		}
-		
-		public void terminate() {
-			this.terminate = true;
-			this.interrupt();
-			try {
-				latch.await();
-			} catch (InterruptedException e) {
-			}
-		}
-	};	
 }
@@ -2,6 +2,14 @@ package de.codesourcery.fft;
 
 import de.codesourcery.fft.Spectrum.FrequencyAndSlot;
 
+/**
+ * Maps frequencies to the 88 keys of a piano keyboard.
+ * 
+ * All lookups use a precomputed table of {@link Key} instances and the boundary frequencies 
+ * between adjacent keys , so they do not allocate and need at most one logarithm (for the cents
+ * deviation). The table depends on the reference pitch of A4 and gets rebuilt (once) 
+ * when {@link #setReferencePitch(double)} changes it.
+ */
 public final class TuningHelper {
 
 	private static final String[] keys = { "A" , "A#" , "H" , "C" , "C#" , "D" , "D#" , "E" , "F" , "F#" , "G" , "G#" };
@@ -9,11 +17,96 @@ public final class TuningHelper {
 	public static final int FIRST_KEY = 1;
 	public static final int LAST_KEY = 88;
 	
-	public static final double MIN_FREQUENCY = keyToFrequency( FIRST_KEY );
-	public static final double MAX_FREQUENCY = keyToFrequency( LAST_KEY );
+	public static final double DEFAULT_REFERENCE_PITCH = 440;
+	
+	/**
+	 * Immutable lookup table for one reference pitch.
+	 */
+	private static final class KeyTable 
+	{
+		public final double referencePitch;
+		// index 1...88 , element 0 is unused
+		public final Key[] keys = new Key[ LAST_KEY + 1 ];
+		// boundaries[n] is the lower bound of key n+1 (=upper bound of key n) , boundaries[0] the lower bound of key 1
+		public final double[] boundaries = new double[ LAST_KEY + 1 ];
+		
+		public KeyTable(double referencePitch) 
+		{
+			this.referencePitch = referencePitch;
+			for ( int n = FIRST_KEY ; n <= LAST_KEY ; n++ ) 
+			{
+				final double frequency = keyToFrequency( n , referencePitch );
+				keys[n] = new Key( n , keyName( n ) , frequency , frequency );
+			}
+			// keys are rounded in log space , so boundaries are half a semitone away from each key
+			for ( int n = 0 ; n <= LAST_KEY ; n++ ) {
+				boundaries[n] = keyToFrequency( n , referencePitch ) * Math.pow( 2 , 1/24.0 );
+			}
+		}
+		
+		/**
+		 * Binary search.
+		 * 
+		 * @return key index or -1
+		 */
+		public int findKeyIndex(double frequency) 
+		{
+			if ( !( frequency >= boundaries[0] && frequency < boundaries[LAST_KEY] ) ) { // also catches NaN
+				return -1;
+			}
+			int low = 0;
+			int high = LAST_KEY;
+			// invariant: boundaries[low] <= frequency < boundaries[high]
+			while ( high - low > 1 ) 
+			{
+				final int mid = (low + high) >>> 1;
+				if ( frequency < boundaries[mid] ) {
+					high = mid;
+				} else {
+					low = mid;
+				}
+			}
+			return high;
+		}
+	}
+	
+	private static volatile KeyTable table = new KeyTable( DEFAULT_REFERENCE_PITCH );
+	
+	/**
+	 * Lowest / highest key frequency for the default reference pitch.
+	 */
+	public static final double MIN_FREQUENCY = keyToFrequency( FIRST_KEY , DEFAULT_REFERENCE_PITCH );
+	public static final double MAX_FREQUENCY = keyToFrequency( LAST_KEY , DEFAULT_REFERENCE_PITCH );
+	
+	/**
+	 * Result of {@link TuningHelper#lookup(double, KeyMatch)}.
+	 * 
+	 * Mutable so callers can re-use a single instance.
+	 */
+	public static final class KeyMatch 
+	{
+		/**
+		 * Index of the closest key , -1 if the frequency is out of range.
+		 */
+		public int keyIndex = -1;
+		/**
+		 * Deviation from the closest key's frequency in cents (-50...50).
+		 */
+		public double cents;
+		
+		public Key getKey() {
+			return TuningHelper.getKey( keyIndex );
+		}
+		
+		@Override
+		public String toString() {
+			return "KeyMatch[ "+keyIndex+" , "+cents+" cents ]";
+		}
+	}
 	
 	/*
-	 * Guitar keys:
+	 * Guitar keys (frequencies for the default reference pitch , use getKey(int) to 
+	 * get the keys for the current reference pitch):
 	 * 
 	 * E2 - 82.4  (#20) 
      * A2 - 110   (#25)
@@ -89,50 +182,116 @@ public final class TuningHelper {
 		}
 	}
 	
+	/**
+	 * Sets the frequency of A4 (key #49) and rebuilds the lookup table if it changed.
+	 * 
+	 * @param a4 frequency in Hz
+	 */
+	public static synchronized void setReferencePitch(double a4) 
+	{
+		if ( !( a4 > 0 ) ) {
+			throw new IllegalArgumentException("Reference pitch must be > 0 , was: "+a4);
+		}
+		if ( table.referencePitch != a4 ) {
+			table = new KeyTable( a4 );
+		}
+	}
+	
+	public static double getReferencePitch() {
+		return table.referencePitch;
+	}
+	
 	public static boolean isValidKey( FrequencyAndSlot entry ) 
 	{
+		final KeyTable t = table;
 		double frequency = entry.getFrequency();
-		if ( frequency < MIN_FREQUENCY ) {
+		if ( frequency < t.keys[FIRST_KEY].getTargetFrequency() ) {
 			return false;
 		}
-		if ( frequency > MAX_FREQUENCY ) {
+		if ( frequency > t.keys[LAST_KEY].getTargetFrequency() ) {
 			return false;
 		}
 		return true;
 	}
 	
+	/**
+	 * Returns a key.
+	 * 
+	 * @param keyIndex
+	 * @return shared instance (actual frequency = target frequency) or <code>null</code> if the index is out of range
+	 */
 	public static Key getKey( int keyIndex ) 
 	{
 		if ( keyIndex < FIRST_KEY || keyIndex > LAST_KEY ) {
 			return null;
 		}
-		return getKey( keyToFrequency( keyIndex ) );
+		return table.keys[ keyIndex ];
 	}	
 	
+	/**
+	 * Returns the key closest to a frequency.
+	 * 
+	 * Allocates a new instance , use {@link #lookup(double, KeyMatch)} in performance-critical code.
+	 * 
+	 * @param actualFrequency
+	 * @return key or <code>null</code> if the frequency is out of range
+	 */
 	public static Key getKey( double actualFrequency ) 
 	{
-		int n = frequencyToKeyIndex(actualFrequency);
-		
-		if ( n < 1 || n > 88 ) {
+		final int n = frequencyToKeyIndex(actualFrequency);
+		if ( n < 1 ) {
 			return null;
 		}
-		final double targetFrequency = keyToFrequency( n );
-		return new Key(n , frequencyToKey( actualFrequency ) , targetFrequency , actualFrequency );
+		return getKey( n ).withActualFrequency( actualFrequency );
+	}
+	
+	/**
+	 * Finds the key closest to a frequency and its deviation in cents.
+	 * 
+	 * @param frequency
+	 * @param result receives the result
+	 * @return <code>true</code> if the frequency is within range
+	 */
+	public static boolean lookup(double frequency,KeyMatch result) 
+	{
+		final KeyTable t = table;
+		final int n = t.findKeyIndex( frequency );
+		result.keyIndex = n;
+		if ( n < 1 ) {
+			result.cents = 0;
+			return false;
+		}
+		result.cents = 1200 * Math.log( frequency / t.keys[n].getTargetFrequency() ) / LN_2;
+		return true;
 	}
 	
+	private static final double LN_2 = Math.log( 2 );
+	
+	/**
+	 * Returns the index of the key closest to a frequency.
+	 * 
+	 * @param frequency
+	 * @return key index or -1 if the frequency is out of range
+	 */
 	public static int frequencyToKeyIndex(double frequency) 
 	{
-		return (int) Math.round(12.0 * log2( frequency / 440 ) + 49);
+		return table.findKeyIndex( frequency );
 	}
 	
-	public static String frequencyToKey(double frequency) {
-		
-		int n = frequencyToKeyIndex(frequency);
-		
-		if ( n < 1 || n > 88 ) {
-			return null;
-		}
-		
+	/**
+	 * Returns the name of the key closest to a frequency.
+	 * 
+	 * @param frequency
+	 * @return name or <code>null</code> if the frequency is out of range
+	 */
+	public static String frequencyToKey(double frequency) 
+	{
+		final Key key = getKey( frequencyToKeyIndex( frequency ) );
+		return key != null ? key.getName() : null;
+	}
+	
+	private static String keyName(int n) 
+	{
 		int index = n-1;
 		
 		final int octave;
@@ -146,10 +305,22 @@ public final class TuningHelper {
 		return key+octave;
 	}
 	
+	/**
+	 * Returns the frequency of a key for the current reference pitch.
+	 * 
+	 * @param n key index
+	 * @return
+	 */
 	public static double keyToFrequency(int n) 
+	{
+		final Key key = getKey( n );
+		return key != null ? key.getTargetFrequency() : keyToFrequency( n , table.referencePitch );
+	}
+	
+	private static double keyToFrequency(int n,double referencePitch) 
 	{
 		final double a = (n-49.0)/12;
-		return Math.pow(2, a)*440.0; 
+		return Math.pow(2, a)*referencePitch; 
 	}
 	
 	public static double log2(double v) {
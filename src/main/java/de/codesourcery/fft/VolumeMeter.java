@@ -9,16 +9,70 @@ import java.awt.Paint;
 
 import javax.swing.JPanel;
 
+import de.codesourcery.fft.AnimationScheduler.IAnimation;
+
 public final class VolumeMeter extends JPanel {
 
+	// fraction of full scale the bar falls per second
+	private static final double DECAY_PER_SECOND = 1.5;
+
 	private volatile double volume;
 	
+	// displayed volume , rises immediately but decays slowly
+	// @GuardedBy( this )
+	private double level;
+
+	private final IAnimation decay = new IAnimation() {
+
+		// time of the previous step , -1 if the animation has just been started
+		private long lastTime = -1;
+
+		@Override
+		public boolean animate(long time) 
+		{
+			final long elapsed = lastTime == -1 ? AnimationScheduler.getInstance().getTickIntervalNanos() : time - lastTime;
+			lastTime = time;
+			final boolean running;
+			synchronized( VolumeMeter.this ) 
+			{
+				level = Math.max( volume , level - DECAY_PER_SECOND * elapsed / 1000000000.0 );
+				running = level > volume;
+			}
+			if ( ! running ) {
+				lastTime = -1;
+			}
+			FrameScheduler.getInstance().requestRepaint( VolumeMeter.this );
+			return running;
+		}
+	};
+	
 	public VolumeMeter(int height) {
 		setPreferredSize( new Dimension(30, (int) Math.round(height*1.1)));
 	}
 	
-	public void setVolume(double volume) {
-		this.volume = volume;
+	/**
+	 * Sets the volume.
+	 *
+	 * The meter jumps to louder volumes during the next frame and decays towards quieter ones.
+	 *
+	 * @param volume
+	 * @see FrameScheduler
+	 * @see AnimationScheduler
+	 */
+	public void setVolume(double volume) 
+	{
+		final double previous;
+		synchronized( this ) 
+		{
+			this.volume = volume;
+			previous = level;
+			level = Math.max( level , volume );
+		}
+		if ( volume > previous ) {
+			FrameScheduler.getInstance().requestRepaint( this );
+		} else if ( volume < previous ) {
+			AnimationScheduler.getInstance().start( decay );
+		}
 	}
 	
 	@Override
@@ -30,7 +84,11 @@ public final class VolumeMeter extends JPanel {
 		final int height = getHeight();
 		
 		final int totalBarHeight = (int) Math.round( height*0.7 );
-		final int actualBarHeight = (int) Math.round(totalBarHeight*volume);
+		final double level;
+		synchronized( this ) {
+			level = this.level;
+		}
+		final int actualBarHeight = (int) Math.round(totalBarHeight*level);
 		final int barWidth = getWidth() - 2 ;
 		
 		final int xOrigin = 1;
@@ -0,0 +1,201 @@
+package de.codesourcery.fft;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import javax.swing.JPanel;
+
+/**
+ * Scrolling spectrogram , newest spectrum at the top.
+ *
+ * Each spectrum becomes one row of pixels , coloured through a lookup table by its level relative to the
+ * spectrum's strongest band. Rows are stored in an image that is used as a ring buffer , so appending a
+ * spectrum only touches one row and the scrolling happens while blitting the image in two slices.
+ *
+ * Spectra may be appended from any thread.
+ */
+public final class WaterfallPanel extends JPanel {
+
+	public static final double DEFAULT_DYNAMIC_RANGE = 80; // dB
+
+	// black -> blue -> cyan -> yellow -> red -> white
+	private static final int[] GRADIENT = { 0x000000 , 0x0000ff , 0x00ffff , 0xffff00 , 0xff0000 , 0xffffff };
+	private static final int[] COLOURS = createColourTable( 256 );
+
+	private volatile double dynamicRange = DEFAULT_DYNAMIC_RANGE;
+	private volatile boolean logFrequencyAxis;
+
+	private final Object lock = new Object();
+	// ring buffer of rows , row 'newestRow' holds the most recent spectrum
+	// @GuardedBy( lock )
+	private BufferedImage image;
+	// @GuardedBy( lock )
+	private int[] pixels;
+	// @GuardedBy( lock )
+	private int newestRow;
+	// @GuardedBy( lock )
+	private ColumnMapping columnMapping;
+	// @GuardedBy( lock )
+	private ColumnMapping.Aggregate aggregate;
+
+	public WaterfallPanel() {
+		setPreferredSize( new Dimension( 600 , 200 ) );
+	}
+
+	private static int[] createColourTable(int size)
+	{
+		final int[] result = new int[ size ];
+		final int segments = GRADIENT.length - 1;
+		for ( int i = 0 ; i < size ; i++ )
+		{
+			final double position = i * segments / (double) ( size - 1 );
+			final int segment = Math.min( segments - 1 , (int) position );
+			final double fraction = position - segment;
+			final int from = GRADIENT[ segment ];
+			final int to = GRADIENT[ segment + 1 ];
+			int rgb = 0;
+			for ( int shift = 16 ; shift >= 0 ; shift -= 8 )
+			{
+				final int a = ( from >> shift ) & 0xff;
+				final int b = ( to >> shift ) & 0xff;
+				rgb |= ( (int) Math.round( a + ( b - a ) * fraction ) ) << shift;
+			}
+			result[i] = rgb;
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the range of levels (below the strongest band) that gets mapped to colours.
+	 *
+	 * @param decibels
+	 */
+	public void setDynamicRange(double decibels)
+	{
+		if ( decibels <= 0 ) {
+			throw new IllegalArgumentException("Dynamic range must be > 0 , was: "+decibels);
+		}
+		this.dynamicRange = decibels;
+	}
+
+	public double getDynamicRange() {
+		return dynamicRange;
+	}
+
+	/**
+	 * Switches between a linear and a logarithmic frequency axis , already existing rows are not converted.
+	 *
+	 * @param yesNo
+	 * @see ColumnMapping#logarithmic(int, double, double, int)
+	 */
+	public void setLogFrequencyAxis(boolean yesNo) {
+		this.logFrequencyAxis = yesNo;
+	}
+
+	public boolean isLogFrequencyAxis() {
+		return logFrequencyAxis;
+	}
+
+	/**
+	 * Adds a row for a spectrum.
+	 *
+	 * Silent spectra add an empty row , spectra without a power spectrum (targeted bins) are ignored.
+	 *
+	 * @param spectrum
+	 */
+	public void append(Spectrum spectrum)
+	{
+		if ( spectrum.getTargetedBins() != null ) {
+			return;
+		}
+		final int w = getWidth();
+		final int h = getHeight();
+		if ( w <= 0 || h <= 0 ) {
+			return;
+		}
+		synchronized( lock )
+		{
+			if ( image == null || image.getWidth() != w || image.getHeight() != h )
+			{
+				// history doesn't survive resizing
+				image = new BufferedImage( w , h , BufferedImage.TYPE_INT_RGB );
+				pixels = ( (DataBufferInt) image.getRaster().getDataBuffer() ).getData();
+				newestRow = 0;
+			}
+			newestRow = newestRow == 0 ? h - 1 : newestRow - 1;
+			final int offset = newestRow * w;
+
+			if ( spectrum.isSilent() || spectrum.getMaxValue() <= 0 )
+			{
+				for ( int x = 0 ; x < w ; x++ ) {
+					pixels[ offset + x ] = COLOURS[0];
+				}
+			}
+			else
+			{
+				if ( logFrequencyAxis ) {
+					columnMapping = ColumnMapping.logarithmic( spectrum.getFFTSize() , spectrum.getSampleRate() , ColumnMapping.DEFAULT_MIN_FREQUENCY , w );
+				} 
+				else if ( columnMapping == null || columnMapping.isLogarithmic() || columnMapping.getBands() != spectrum.getBands() || columnMapping.getWidth() != w ) 
+				{
+					columnMapping = ColumnMapping.linear( spectrum.getBands() , w );
+				}
+				if ( aggregate == null || aggregate.getWidth() != w ) {
+					aggregate = new ColumnMapping.Aggregate( w );
+				}
+				columnMapping.aggregate( spectrum.getData() , Double.NEGATIVE_INFINITY , aggregate );
+
+				// only one logarithm per column
+				final double range = dynamicRange;
+				final double maxPower = spectrum.getMaxValue();
+				final int maxIndex = COLOURS.length - 1;
+				for ( int x = 0 ; x < w ; x++ )
+				{
+					int index = 0;
+					if ( aggregate.valid[x] && aggregate.max[x] > 0 )
+					{
+						final double decibels = 10 * Math.log10( aggregate.max[x] / maxPower );
+						index = (int) Math.round( ( decibels + range ) / range * maxIndex );
+						index = Math.max( 0 , Math.min( maxIndex , index ) );
+					}
+					pixels[ offset + x ] = COLOURS[ index ];
+				}
+			}
+		}
+		FrameScheduler.getInstance().requestRepaint( this );
+	}
+
+	/**
+	 * Discards all rows.
+	 */
+	public void clear()
+	{
+		synchronized( lock ) {
+			image = null;
+			pixels = null;
+		}
+		repaint();
+	}
+
+	@Override
+	protected void paintComponent(Graphics g)
+	{
+		super.paintComponent(g);
+		synchronized( lock )
+		{
+			if ( image == null ) {
+				return;
+			}
+			final int w = image.getWidth();
+			final int h = image.getHeight();
+			// rows newestRow ... h-1 are the most recent ones
+			final int recent = h - newestRow;
+			g.drawImage( image , 0 , 0 , w , recent , 0 , newestRow , w , h , null );
+			if ( newestRow > 0 ) {
+				g.drawImage( image , 0 , recent , w , h , 0 , 0 , w , newestRow , null );
+			}
+		}
+	}
+}
@@ -0,0 +1,95 @@
+package de.codesourcery.fft.filter;
+
+/**
+ * Cascade of BiQuad sections applied to every channel of interleaved multi-channel data.
+ * 
+ * All channels share the same coefficients but have their own filter state, each call to
+ * {@link #process(double[], int, double[], int, int)} processes whole frames 
+ * (one sample per channel) in a single loop.
+ */
+public final class BiQuadBank extends Filter 
+{
+    private final int channels;
+    private final int sections;
+    
+    private final double[] a0;
+    private final double[] a1;
+    private final double[] a2;
+    private final double[] b1;
+    private final double[] b2;
+    
+    // state of section s for channel c is stored at index c*sections+s
+    private final double[] z1;
+    private final double[] z2;
+    
+    public BiQuadBank(int channels,BiQuadCoefficients... coefficients) 
+    {
+        if ( channels < 1 ) {
+            throw new IllegalArgumentException("Channel count must be >= 1");
+        }
+        this.channels = channels;
+        this.sections = coefficients.length;
+        this.a0 = new double[sections];
+        this.a1 = new double[sections];
+        this.a2 = new double[sections];
+        this.b1 = new double[sections];
+        this.b2 = new double[sections];
+        for ( int i = 0 ; i < sections ; i++ ) 
+        {
+            a0[i] = coefficients[i].a0;
+            a1[i] = coefficients[i].a1;
+            a2[i] = coefficients[i].a2;
+            b1[i] = coefficients[i].b1;
+            b2[i] = coefficients[i].b2;
+        }
+        this.z1 = new double[ channels * sections ];
+        this.z2 = new double[ channels * sections ];
+    }
+    
+    public int getChannels() {
+        return channels;
+    }
+    
+    /**
+     * Filters interleaved frames.
+     * 
+     * @param len number of samples (NOT frames) , must be a multiple of the channel count
+     */
+    @Override
+    public void process(double[] src, int srcOffset, double[] dst, int dstOffset, int len) 
+    {
+        if ( ( len % channels ) != 0 ) {
+            throw new IllegalArgumentException("Length "+len+" is not a multiple of the channel count ("+channels+")");
+        }
+        
+        final int frames = len / channels;
+        int srcPtr = srcOffset;
+        int dstPtr = dstOffset;
+        for ( int frame = 0 ; frame < frames ; frame++ ) 
+        {
+            int statePtr = 0;
+            for ( int channel = 0 ; channel < channels ; channel++ ) 
+            {
+                double x = src[srcPtr++];
+                for ( int s = 0 ; s < sections ; s++ , statePtr++ ) 
+                {
+                    final double out = x * a0[s] + z1[statePtr];
+                    z1[statePtr] = x * a1[s] + z2[statePtr] - b1[s] * out;
+                    z2[statePtr] = x * a2[s] - b2[s] * out;
+                    x = out;
+                }
+                dst[dstPtr++] = x;
+            }
+        }
+    }
+    
+    @Override
+    public void reset() 
+    {
+        for ( int i = 0 ; i < z1.length ; i++ ) 
+        {
+            z1[i] = 0;
+            z2[i] = 0;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package de.codesourcery.fft.filter;
+
+/**
+ * Cascade of {@link BiQuadFilter} sections that runs all sections sample by sample
+ * in a single pass.
+ * 
+ * Unlike {@link FilterCascade} each input sample is read and each output sample is written exactly
+ * once , no matter how many sections there are.
+ */
+public final class BiQuadCascade extends Filter 
+{
+    private final int sections;
+    
+    private final double[] a0;
+    private final double[] a1;
+    private final double[] a2;
+    private final double[] b1;
+    private final double[] b2;
+    
+    private final double[] z1;
+    private final double[] z2;
+    
+    public BiQuadCascade(BiQuadFilter... filters) 
+    {
+        this( coefficientsOf( filters ) );
+    }
+    
+    public BiQuadCascade(BiQuadCoefficients... coefficients) 
+    {
+        this.sections = coefficients.length;
+        this.a0 = new double[sections];
+        this.a1 = new double[sections];
+        this.a2 = new double[sections];
+        this.b1 = new double[sections];
+        this.b2 = new double[sections];
+        this.z1 = new double[sections];
+        this.z2 = new double[sections];
+        for ( int i = 0 ; i < sections ; i++ ) 
+        {
+            a0[i] = coefficients[i].a0;
+            a1[i] = coefficients[i].a1;
+            a2[i] = coefficients[i].a2;
+            b1[i] = coefficients[i].b1;
+            b2[i] = coefficients[i].b2;
+        }
+    }
+    
+    static BiQuadCoefficients[] coefficientsOf(BiQuadFilter... filters) 
+    {
+        final BiQuadCoefficients[] result = new BiQuadCoefficients[ filters.length ];
+        for ( int i = 0 ; i < filters.length ; i++ ) {
+            result[i] = filters[i].getCoefficients();
+        }
+        return result;
+    }
+    
+    @Override
+    public void process(double[] src, int srcOffset, double[] dst, int dstOffset, int len) 
+    {
+        if ( sections == 2 ) {
+            process2( src , srcOffset , dst , dstOffset , len );
+            return;
+        }
+        
+        for ( int n = 0 ; n < len ; n++ ) 
+        {
+            double x = src[srcOffset+n];
+            for ( int s = 0 ; s < sections ; s++ ) 
+            {
+                final double out = x * a0[s] + z1[s];
+                z1[s] = x * a1[s] + z2[s] - b1[s] * out;
+                z2[s] = x * a2[s] - b2[s] * out;
+                x = out;
+            }
+            dst[dstOffset+n] = x;
+        }
+    }
+    
+    /*
+     * Specialization for the common high-pass + low-pass combination, keeps
+     * all coefficients and state in registers.
+     */
+    private void process2(double[] src, int srcOffset, double[] dst, int dstOffset, int len) 
+    {
+        final double a00 = a0[0] , a10 = a1[0] , a20 = a2[0] , b10 = b1[0] , b20 = b2[0];
+        final double a01 = a0[1] , a11 = a1[1] , a21 = a2[1] , b11 = b1[1] , b21 = b2[1];
+        
+        double z10 = z1[0] , z20 = z2[0];
+        double z11 = z1[1] , z21 = z2[1];
+        
+        for ( int n = 0 ; n < len ; n++ ) 
+        {
+            final double x = src[srcOffset+n];
+            
+            final double y0 = x * a00 + z10;
+            z10 = x * a10 + z20 - b10 * y0;
+            z20 = x * a20 - b20 * y0;
+            
+            final double y1 = y0 * a01 + z11;
+            z11 = y0 * a11 + z21 - b11 * y1;
+            z21 = y0 * a21 - b21 * y1;
+            
+            dst[dstOffset+n] = y1;
+        }
+        
+        z1[0] = z10; z2[0] = z20;
+        z1[1] = z11; z2[1] = z21;
+    }
+    
+    @Override
+    public void reset() 
+    {
+        for ( int i = 0 ; i < sections ; i++ ) 
+        {
+            z1[i] = 0;
+            z2[i] = 0;
+        }
+    }
+}
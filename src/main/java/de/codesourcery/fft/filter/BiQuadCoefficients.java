@@ -0,0 +1,187 @@
+package de.codesourcery.fft.filter;
+
+import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+
+/**
+ * Immutable BiQuad filter coefficients.
+ * 
+ * Coefficients can be shared freely between threads and filter instances, the 
+ * filter state lives in {@link BiQuadFilter} , {@link BiQuadCascade} or {@link BiQuadBank}.
+ * 
+ * Code taken from http://www.earlevel.com/main/2012/11/26/biquad-c-source-code/ and
+ * JavaScript source on http://www.earlevel.com/main/2010/12/20/biquad-calculator/.
+ * 
+ * (C) Nigel Redmon / earlevel.com
+ */
+public final class BiQuadCoefficients 
+{
+    public final double a0;
+    public final double a1;
+    public final double a2;        
+
+    public final double b1;
+    public final double b2;        
+
+    public BiQuadCoefficients(double a0, double a1, double a2, double b1, double b2)
+    {
+        this.a0 = a0;
+        this.a1 = a1;
+        this.a2 = a2;
+        this.b1 = b1;
+        this.b2 = b2;
+    }
+
+    public static final BiQuadCoefficients design(BiQuadType type , double Fc, double Fs , double Q , double peakGain) 
+    {
+        double a0 = 0;
+        double a1 = 0;
+        double a2 = 0;
+        double b1 = 0;
+        double b2 = 0;
+        double norm=0;
+
+        double V = Math.pow(10, Math.abs(peakGain) / 20);
+        double K = Math.tan(Math.PI * Fc / Fs);
+        switch (type) {
+            case LOWPASS:
+                norm = 1 / (1 + K / Q + K * K);
+                a0 = K * K * norm;
+                a1 = 2 * a0;
+                a2 = a0;
+                b1 = 2 * (K * K - 1) * norm;
+                b2 = (1 - K / Q + K * K) * norm;
+                break;
+            
+            case HIGHPASS:
+                norm = 1 / (1 + K / Q + K * K);
+                a0 = 1 * norm;
+                a1 = -2 * a0;
+                a2 = a0;
+                b1 = 2 * (K * K - 1) * norm;
+                b2 = (1 - K / Q + K * K) * norm;
+                break;
+            
+            case BANDPASS:
+                norm = 1 / (1 + K / Q + K * K);
+                a0 = K / Q * norm;
+                a1 = 0;
+                a2 = -a0;
+                b1 = 2 * (K * K - 1) * norm;
+                b2 = (1 - K / Q + K * K) * norm;
+                break;
+            
+            case NOTCH:
+                norm = 1 / (1 + K / Q + K * K);
+                a0 = (1 + K * K) * norm;
+                a1 = 2 * (K * K - 1) * norm;
+                a2 = a0;
+                b1 = a1;
+                b2 = (1 - K / Q + K * K) * norm;
+                break;
+            
+            case PEAK:
+                if (peakGain >= 0) {
+                    norm = 1 / (1 + 1/Q * K + K * K);
+                    a0 = (1 + V/Q * K + K * K) * norm;
+                    a1 = 2 * (K * K - 1) * norm;
+                    a2 = (1 - V/Q * K + K * K) * norm;
+                    b1 = a1;
+                    b2 = (1 - 1/Q * K + K * K) * norm;
+                }
+                else {  
+                    norm = 1 / (1 + V/Q * K + K * K);
+                    a0 = (1 + 1/Q * K + K * K) * norm;
+                    a1 = 2 * (K * K - 1) * norm;
+                    a2 = (1 - 1/Q * K + K * K) * norm;
+                    b1 = a1;
+                    b2 = (1 - V/Q * K + K * K) * norm;
+                }
+                break;
+            case LOWSHELF:
+                if (peakGain >= 0) {
+                    norm = 1 / (1 + Math.sqrt(2) * K + K * K);
+                    a0 = (1 + Math.sqrt(2*V) * K + V * K * K) * norm;
+                    a1 = 2 * (V * K * K - 1) * norm;
+                    a2 = (1 - Math.sqrt(2*V) * K + V * K * K) * norm;
+                    b1 = 2 * (K * K - 1) * norm;
+                    b2 = (1 - Math.sqrt(2) * K + K * K) * norm;
+                }
+                else {  
+                    norm = 1 / (1 + Math.sqrt(2*V) * K + V * K * K);
+                    a0 = (1 + Math.sqrt(2) * K + K * K) * norm;
+                    a1 = 2 * (K * K - 1) * norm;
+                    a2 = (1 - Math.sqrt(2) * K + K * K) * norm;
+                    b1 = 2 * (V * K * K - 1) * norm;
+                    b2 = (1 - Math.sqrt(2*V) * K + V * K * K) * norm;
+                }
+                break;
+            case HIGHSHELF:
+                if (peakGain >= 0) {
+                    norm = 1 / (1 + Math.sqrt(2) * K + K * K);
+                    a0 = (V + Math.sqrt(2*V) * K + K * K) * norm;
+                    a1 = 2 * (K * K - V) * norm;
+                    a2 = (V - Math.sqrt(2*V) * K + K * K) * norm;
+                    b1 = 2 * (K * K - 1) * norm;
+                    b2 = (1 - Math.sqrt(2) * K + K * K) * norm;
+                }
+                else {  
+                    norm = 1 / (V + Math.sqrt(2*V) * K + K * K);
+                    a0 = (1 + Math.sqrt(2) * K + K * K) * norm;
+                    a1 = 2 * (K * K - 1) * norm;
+                    a2 = (1 - Math.sqrt(2) * K + K * K) * norm;
+                    b1 = 2 * (K * K - V) * norm;
+                    b2 = (V - Math.sqrt(2*V) * K + K * K) * norm;
+                }
+                break;
+        }
+        return new BiQuadCoefficients( a0 , a1 , a2 , b1 , b2 );
+    }
+
+    /**
+     * Returns the power response |H(e^jw)|^2 of this filter section.
+     * 
+     * @param omega normalized angular frequency (2*PI*f/Fs)
+     * @return
+     */
+    public double powerResponse(double omega) 
+    {
+        final double cos1 = Math.cos( omega );
+        final double sin1 = Math.sin( omega );
+        final double cos2 = Math.cos( 2 * omega );
+        final double sin2 = Math.sin( 2 * omega );
+        
+        final double numRe = a0 + a1 * cos1 + a2 * cos2;
+        final double numIm = -( a1 * sin1 + a2 * sin2 );
+        final double denRe = 1 + b1 * cos1 + b2 * cos2;
+        final double denIm = -( b1 * sin1 + b2 * sin2 );
+        return ( numRe * numRe + numIm * numIm ) / ( denRe * denRe + denIm * denIm );
+    }
+    
+    @Override
+    public boolean equals(Object obj) 
+    {
+        if ( obj instanceof BiQuadCoefficients ) 
+        {
+            final BiQuadCoefficients o = (BiQuadCoefficients) obj;
+            return o.a0 == a0 && o.a1 == a1 && o.a2 == a2 && o.b1 == b1 && o.b2 == b2;
+        }
+        return false;
+    }
+    
+    @Override
+    public int hashCode() 
+    {
+        long bits = Double.doubleToLongBits( a0 );
+        bits = 31 * bits + Double.doubleToLongBits( a1 );
+        bits = 31 * bits + Double.doubleToLongBits( a2 );
+        bits = 31 * bits + Double.doubleToLongBits( b1 );
+        bits = 31 * bits + Double.doubleToLongBits( b2 );
+        return (int) ( bits ^ ( bits >>> 32 ) );
+    }
+    
+    @Override
+    public String toString()
+    {
+        return "BiQuadCoefficients [ \na0=" + a0 + ", \na1=" + a1 + ", \na2=" + a2 + ", \nb1=" + b1 + ", \nb2=" + b2 + "]";
+    }    
+}
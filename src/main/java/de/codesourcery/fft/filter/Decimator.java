@@ -0,0 +1,196 @@
+package de.codesourcery.fft.filter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Anti-aliasing decimator for integer factors between {@link #MIN_FACTOR} and {@link #MAX_FACTOR}.
+ * 
+ * The factor is split into a cascade of half-band stages (one per factor of two) followed by 
+ * a single windowed-sinc stage for the remaining odd factor (if any). Each stage is evaluated in
+ * polyphase fashion, only every M-th output sample is actually computed and zero taps of the 
+ * half-band kernels are skipped. 
+ * 
+ * Decimators keep their filter state and decimation phase across calls, a signal may be fed block by block.
+ */
+public final class Decimator 
+{
+    public static final int MIN_FACTOR = 2;
+    public static final int MAX_FACTOR = 16;
+    
+    private static final int HALFBAND_TAPS = 47; // needs to be 4k+3 so that every other tap is zero
+    
+    private final int factor;
+    private final Stage[] stages;
+    
+    private double[] scratch1 = new double[0];
+    private double[] scratch2 = new double[0];
+    
+    private static final class Stage 
+    {
+        private final int factor;
+        private final int taps;
+        
+        // non-zero coefficients and their delay
+        private final double[] coefficients;
+        private final int[] delays;
+        
+        // delay line , each sample is stored twice so that the taps can always be read without wrapping
+        private final double[] delayLine;
+        private int writePtr;
+        private int phase;
+        
+        public Stage(double[] kernel,int factor) 
+        {
+            this.factor = factor;
+            this.taps = kernel.length;
+            final List<Integer> nonZero = new ArrayList<>();
+            for ( int i = 0 ; i < kernel.length ; i++ ) 
+            {
+                if ( Math.abs( kernel[i] ) > 1e-12 ) {
+                    nonZero.add( i );
+                }
+            }
+            this.coefficients = new double[ nonZero.size() ];
+            this.delays = new int[ nonZero.size() ];
+            for ( int i = 0 ; i < delays.length ; i++ ) 
+            {
+                delays[i] = nonZero.get(i);
+                coefficients[i] = kernel[ delays[i] ];
+            }
+            this.delayLine = new double[ 2 * taps ];
+        }
+        
+        public int process(double[] src,int srcOffset,int len,double[] dst,int dstOffset) 
+        {
+            final int count = coefficients.length;
+            int written = 0;
+            for ( int i = 0 ; i < len ; i++ ) 
+            {
+                writePtr = ( writePtr == 0 ? taps : writePtr ) - 1;
+                final double x = src[ srcOffset + i ];
+                delayLine[ writePtr ] = x;
+                delayLine[ writePtr + taps ] = x;
+                
+                if ( ++phase == factor ) 
+                {
+                    phase = 0;
+                    // delayLine[ writePtr + k ] holds x[n-k]
+                    double sum = 0;
+                    for ( int j = 0 ; j < count ; j++ ) {
+                        sum += coefficients[j] * delayLine[ writePtr + delays[j] ];
+                    }
+                    dst[ dstOffset + written++ ] = sum;
+                }
+            }
+            return written;
+        }
+        
+        public void reset() 
+        {
+            for ( int i = 0 ; i < delayLine.length ; i++ ) {
+                delayLine[i] = 0;
+            }
+            writePtr = 0;
+            phase = 0;
+        }
+    }
+    
+    public Decimator(int factor) 
+    {
+        if ( factor < MIN_FACTOR || factor > MAX_FACTOR ) {
+            throw new IllegalArgumentException("Decimation factor must be in range ["+MIN_FACTOR+","+MAX_FACTOR+"] , was: "+factor);
+        }
+        this.factor = factor;
+        
+        final List<Stage> list = new ArrayList<>();
+        int remaining = factor;
+        while ( ( remaining % 2 ) == 0 ) 
+        {
+            list.add( new Stage( FIRKernel.windowedSinc( 0.25 , 1 , HALFBAND_TAPS ) , 2 ) );
+            remaining /= 2;
+        }
+        if ( remaining > 1 ) {
+            list.add( new Stage( FIRKernel.windowedSinc( 0.45 / remaining , 1 , 16*remaining+1 ) , remaining ) );
+        }
+        this.stages = list.toArray( new Stage[ list.size() ] );
+    }
+    
+    public int getFactor() {
+        return factor;
+    }
+    
+    /**
+     * Returns the max. number of samples {@link #process(double[], int, int, double[], int)} 
+     * will output for a given number of input samples.
+     * 
+     * @param inputLength
+     * @return
+     */
+    public int getMaxOutputLength(int inputLength) {
+        return inputLength / factor + 1;
+    }
+    
+    /**
+     * Decimates a block of samples.
+     * 
+     * @param src
+     * @param srcOffset
+     * @param len number of input samples
+     * @param dst destination array , needs to have room for at least {@link #getMaxOutputLength(int)} samples
+     * @param dstOffset
+     * @return number of samples written to <code>dst</code>
+     */
+    public int process(double[] src,int srcOffset,int len,double[] dst,int dstOffset) 
+    {
+        if ( stages.length == 1 ) {
+            return stages[0].process( src , srcOffset , len , dst , dstOffset );
+        }
+        
+        if ( scratch1.length < len ) 
+        {
+            scratch1 = new double[ len ];
+            scratch2 = new double[ len ];
+        }
+        
+        double[] in = src;
+        int inOffset = srcOffset;
+        int inLen = len;
+        double[] out = scratch1;
+        for ( int i = 0 ; i < stages.length ; i++ ) 
+        {
+            final boolean last = i == stages.length-1;
+            final double[] target = last ? dst : out;
+            inLen = stages[i].process( in , inOffset , inLen , target , last ? dstOffset : 0 );
+            in = target;
+            inOffset = 0;
+            out = ( out == scratch1 ) ? scratch2 : scratch1;
+        }
+        return inLen;
+    }
+    
+    /**
+     * Decimates a whole array.
+     * 
+     * @param data
+     * @return decimated data
+     */
+    public double[] decimate(double[] data) 
+    {
+        final double[] tmp = new double[ getMaxOutputLength( data.length ) ];
+        final int len = process( data , 0 , data.length , tmp , 0 );
+        if ( len == tmp.length ) {
+            return tmp;
+        }
+        final double[] result = new double[ len ];
+        System.arraycopy( tmp , 0 , result , 0 , len );
+        return result;
+    }
+    
+    public void reset() 
+    {
+        for ( Stage s : stages ) {
+            s.reset();
+        }
+    }
+}
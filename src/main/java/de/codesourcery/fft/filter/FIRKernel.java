@@ -0,0 +1,137 @@
+package de.codesourcery.fft.filter;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+/**
+ * Immutable FIR filter kernel along with its pre-computed spectrum.
+ * 
+ * The spectrum is calculated once for the FFT size used by {@link FastConvolutionFilter} and 
+ * can be shared by any number of filter instances.
+ */
+public final class FIRKernel 
+{
+    private final double[] taps;
+    private final int fftSize;
+    
+    // kernel spectrum in JTransforms' real-FFT layout
+    private final double[] spectrum;
+    
+    /**
+     * Creates a kernel using an FFT size of at least twice the number of taps.
+     * 
+     * @param taps
+     */
+    public FIRKernel(double[] taps) 
+    {
+        this( taps , nextPowerOfTwo( 2 * taps.length ) );
+    }
+    
+    /**
+     * 
+     * @param taps
+     * @param fftSize FFT size (power of two), must be larger than the number of taps. Each FFT
+     * will process <code>fftSize - taps.length + 1</code> input samples.
+     */
+    public FIRKernel(double[] taps,int fftSize) 
+    {
+        if ( taps.length < 1 ) {
+            throw new IllegalArgumentException("Kernel needs at least one tap");
+        }
+        if ( Integer.bitCount( fftSize ) != 1 || fftSize <= taps.length ) {
+            throw new IllegalArgumentException("FFT size must be a power of two larger than the kernel size ("+taps.length+"), was: "+fftSize);
+        }
+        this.taps = taps.clone();
+        this.fftSize = fftSize;
+        this.spectrum = new double[ fftSize ];
+        System.arraycopy( taps , 0 , spectrum , 0 , taps.length );
+        new DoubleFFT_1D( fftSize ).realForward( spectrum );
+    }
+    
+    public int getLength() {
+        return taps.length;
+    }
+    
+    public int getFFTSize() {
+        return fftSize;
+    }
+    
+    /**
+     * Returns the max. number of input samples that can be processed with one FFT.
+     * 
+     * @return
+     */
+    public int getBlockSize() {
+        return fftSize - taps.length + 1;
+    }
+    
+    public double[] getTaps() {
+        return taps.clone();
+    }
+    
+    double[] getSpectrum() {
+        return spectrum;
+    }
+    
+    /**
+     * Designs a linear-phase low-pass filter (windowed sinc , Blackman window).
+     * 
+     * @param Fc cut-off frequency
+     * @param Fs sample rate
+     * @param tapCount number of taps , gets rounded up to the next odd number
+     * @return
+     */
+    public static FIRKernel lowPass(double Fc, double Fs, int tapCount) 
+    {
+        return new FIRKernel( windowedSinc( Fc , Fs , tapCount ) );
+    }
+    
+    /**
+     * Designs a linear-phase high-pass filter by spectral inversion of a windowed-sinc low-pass.
+     * 
+     * @param Fc cut-off frequency
+     * @param Fs sample rate
+     * @param tapCount number of taps , gets rounded up to the next odd number
+     * @return
+     */
+    public static FIRKernel highPass(double Fc, double Fs, int tapCount) 
+    {
+        final double[] taps = windowedSinc( Fc , Fs , tapCount );
+        for ( int i = 0 ; i < taps.length ; i++ ) {
+            taps[i] = -taps[i];
+        }
+        taps[ taps.length / 2 ] += 1;
+        return new FIRKernel( taps );
+    }
+    
+    static double[] windowedSinc(double Fc,double Fs,int tapCount) 
+    {
+        final int len = ( tapCount % 2 ) == 0 ? tapCount + 1 : tapCount;
+        final int middle = len / 2;
+        final double fc = Fc / Fs;
+        
+        final double[] result = new double[ len ];
+        double sum = 0;
+        for ( int i = 0 ; i < len ; i++ ) 
+        {
+            final int n = i - middle;
+            final double sinc = n == 0 ? 2 * Math.PI * fc : Math.sin( 2 * Math.PI * fc * n ) / n;
+            final double window = 0.42 - 0.5 * Math.cos( 2 * Math.PI * i / ( len - 1 ) ) + 0.08 * Math.cos( 4 * Math.PI * i / ( len - 1 ) );
+            result[i] = sinc * window;
+            sum += result[i];
+        }
+        // normalize to unity gain at DC
+        for ( int i = 0 ; i < len ; i++ ) {
+            result[i] /= sum;
+        }
+        return result;
+    }
+    
+    static int nextPowerOfTwo(int value) 
+    {
+        int result = 1;
+        while ( result < value ) {
+            result <<= 1;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+package de.codesourcery.fft.filter;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+/**
+ * FIR filter that performs the convolution in the frequency domain (overlap-add).
+ * 
+ * Input is split into blocks of at most {@link FIRKernel#getBlockSize()} samples, each block
+ * is transformed , multiplied with the pre-transformed kernel and transformed back. The tail
+ * of each block's convolution result is carried over to the next call , so feeding a signal
+ * block by block yields exactly the same output as filtering it in one go, without adding latency.
+ * 
+ * Cost per output sample is O(log N) instead of O(M) for a kernel with M taps.
+ */
+public final class FastConvolutionFilter extends Filter 
+{
+    private final FIRKernel kernel;
+    private final DoubleFFT_1D fft;
+    
+    // FFT work buffer
+    private final double[] buffer;
+    
+    // convolution results not yet written to the output , element 0 is the next output sample 
+    private final double[] overlap;
+    
+    public FastConvolutionFilter(FIRKernel kernel) 
+    {
+        this.kernel = kernel;
+        this.fft = new DoubleFFT_1D( kernel.getFFTSize() );
+        this.buffer = new double[ kernel.getFFTSize() ];
+        this.overlap = new double[ kernel.getFFTSize() ];
+    }
+    
+    public FIRKernel getKernel() {
+        return kernel;
+    }
+    
+    @Override
+    public void process(double[] src, int srcOffset, double[] dst, int dstOffset, int len) 
+    {
+        final int fftSize = kernel.getFFTSize();
+        final int blockSize = kernel.getBlockSize();
+        final double[] h = kernel.getSpectrum();
+        
+        int done = 0;
+        while ( done < len ) 
+        {
+            final int n = Math.min( blockSize , len - done );
+            
+            System.arraycopy( src , srcOffset + done , buffer , 0 , n );
+            for ( int i = n ; i < fftSize ; i++ ) {
+                buffer[i] = 0;
+            }
+            
+            fft.realForward( buffer );
+            
+            // multiply spectra , element 0 and 1 hold the (real) DC and Nyquist bins 
+            buffer[0] *= h[0];
+            buffer[1] *= h[1];
+            for ( int i = 2 ; i < fftSize ; i += 2 ) 
+            {
+                final double re = buffer[i];
+                final double im = buffer[i+1];
+                buffer[i]   = re * h[i]   - im * h[i+1];
+                buffer[i+1] = re * h[i+1] + im * h[i];
+            }
+            
+            fft.realInverse( buffer , true );
+            
+            // only the first n+M-1 samples of the result are non-zero
+            final int resultLen = n + kernel.getLength() - 1;
+            for ( int i = 0 ; i < resultLen ; i++ ) {
+                overlap[i] += buffer[i];
+            }
+            
+            System.arraycopy( overlap , 0 , dst , dstOffset + done , n );
+            
+            System.arraycopy( overlap , n , overlap , 0 , fftSize - n );
+            for ( int i = fftSize - n ; i < fftSize ; i++ ) {
+                overlap[i] = 0;
+            }
+            done += n;
+        }
+    }
+    
+    @Override
+    public void reset() 
+    {
+        for ( int i = 0 ; i < overlap.length ; i++ ) {
+            overlap[i] = 0;
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package de.codesourcery.fft.filter;
 
+/**
+ * Streaming filter.
+ * 
+ * Filters may carry state from one {@link #process(double[], int, double[], int, int)} call
+ * to the next so that a long signal can be fed block by block ; {@link #reset()} 
+ * returns the filter to its initial state.
+ */
 public abstract class Filter 
 {
     public static final NOPFilter NOP_FILTER = new NOPFilter();
@@ -7,10 +14,42 @@ public abstract class Filter
     public static final class NOPFilter extends Filter {
 
         @Override
-        public double[] filter(double[] data) {
-            return data;
+        public void process(double[] src, int srcOffset, double[] dst, int dstOffset, int len) 
+        {
+            if ( src != dst || srcOffset != dstOffset ) {
+                System.arraycopy( src , srcOffset , dst , dstOffset , len );
+            }
         }
     } 
     
-    public abstract double[] filter(double[] data);
-}
\ No newline at end of file
+    /**
+     * Filters the whole array in-place.
+     * 
+     * @param data
+     * @return <code>data</code>
+     */
+    public double[] filter(double[] data) 
+    {
+        process( data , 0 , data , 0 , data.length );
+        return data;
+    }
+    
+    /**
+     * Filters <code>len</code> samples from <code>src</code> and writes the result to <code>dst</code>.
+     * 
+     * Source and destination may be the same array as long as both offsets are equal.
+     * 
+     * @param src
+     * @param srcOffset
+     * @param dst
+     * @param dstOffset
+     * @param len
+     */
+    public abstract void process(double[] src,int srcOffset,double[] dst,int dstOffset,int len);
+    
+    /**
+     * Discards any state accumulated by previous calls to {@link #process(double[], int, double[], int, int)}.
+     */
+    public void reset() {
+    }
+}
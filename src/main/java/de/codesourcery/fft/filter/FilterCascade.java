@@ -1,5 +1,10 @@
 package de.codesourcery.fft.filter;
 
+/**
+ * Runs filters one after another , each stage makes a full pass over the block.
+ * 
+ * @see BiQuadCascade
+ */
 public class FilterCascade extends Filter
 {
     private final Filter[] filters;
@@ -14,12 +19,23 @@ public class FilterCascade extends Filter
     }
 
     @Override
-    public double[] filter(double[] data)
+    public void process(double[] src, int srcOffset, double[] dst, int dstOffset, int len) 
+    {
+        if ( filters.length == 0 ) {
+            NOP_FILTER.process( src , srcOffset , dst , dstOffset , len );
+            return;
+        }
+        filters[0].process( src , srcOffset , dst , dstOffset , len );
+        for ( int i = 1 ; i < filters.length ; i++ ) {
+            filters[i].process( dst , dstOffset , dst , dstOffset , len );
+        }
+    }
+    
+    @Override
+    public void reset() 
     {
-        double[] result = data;
         for ( Filter f : filters ) {
-            result = f.filter( result );
+            f.reset();
         }
-        return result;
     }
 }
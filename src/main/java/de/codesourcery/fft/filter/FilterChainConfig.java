@@ -0,0 +1,160 @@
+package de.codesourcery.fft.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+
+/**
+ * Immutable description of a chain of BiQuad filter sections.
+ *
+ * Since instances never change they can be swapped atomically while filters
+ * are in use. Coefficients are designed lazily and cached per sample rate.
+ */
+public final class FilterChainConfig
+{
+    public static final FilterChainConfig EMPTY = new FilterChainConfig();
+
+    private final List<Section> sections;
+
+    private final ConcurrentHashMap<Float,BiQuadCoefficients[]> designs = new ConcurrentHashMap<>();
+
+    /**
+     * One filter section.
+     */
+    public static final class Section
+    {
+        public final BiQuadType type;
+        public final double Fc;
+        public final double Q;
+        public final double peakGain;
+
+        public Section(BiQuadType type, double Fc, double Q, double peakGain)
+        {
+            if ( type == null ) {
+                throw new IllegalArgumentException("Filter type must not be NULL");
+            }
+            if ( Fc <= 0 ) {
+                throw new IllegalArgumentException("Cut-off frequency must be > 0 , was: "+Fc);
+            }
+            if ( Q <= 0 ) {
+                throw new IllegalArgumentException("Q must be > 0 , was: "+Q);
+            }
+            this.type = type;
+            this.Fc = Fc;
+            this.Q = Q;
+            this.peakGain = peakGain;
+        }
+
+        public BiQuadCoefficients design(double Fs)
+        {
+            if ( Fc >= Fs / 2 ) {
+                throw new IllegalArgumentException("Cut-off frequency "+Fc+" Hz is not below Nyquist frequency of "+Fs+" Hz");
+            }
+            return BiQuadCoefficients.design( type , Fc , Fs , Q , peakGain );
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if ( obj instanceof Section )
+            {
+                final Section o = (Section) obj;
+                return o.type == type && o.Fc == Fc && o.Q == Q && o.peakGain == peakGain;
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = type.hashCode();
+            result = 31 * result + Double.valueOf( Fc ).hashCode();
+            result = 31 * result + Double.valueOf( Q ).hashCode();
+            return 31 * result + Double.valueOf( peakGain ).hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return type+" [ Fc="+Fc+" Hz , Q="+Q+" , gain="+peakGain+" dB ]";
+        }
+    }
+
+    public FilterChainConfig(Section... sections)
+    {
+        this( Arrays.asList( sections ) );
+    }
+
+    public FilterChainConfig(List<Section> sections)
+    {
+        for ( Section s : sections ) {
+            if ( s == null ) {
+                throw new IllegalArgumentException("Sections must not be NULL");
+            }
+        }
+        this.sections = Collections.unmodifiableList( new ArrayList<>( sections ) );
+    }
+
+    public List<Section> getSections() {
+        return sections;
+    }
+
+    public boolean isEmpty() {
+        return sections.isEmpty();
+    }
+
+    /**
+     * Returns a copy of this chain with an additional section appended.
+     *
+     * @param section
+     * @return
+     */
+    public FilterChainConfig with(Section section)
+    {
+        final List<Section> copy = new ArrayList<>( sections );
+        copy.add( section );
+        return new FilterChainConfig( copy );
+    }
+
+    /**
+     * Returns the filter coefficients of all sections for a given sample rate.
+     *
+     * @param sampleRate
+     * @return cached coefficients , callers must not modify the array
+     * @throws IllegalArgumentException if a section's cut-off frequency is not below the Nyquist frequency
+     */
+    public BiQuadCoefficients[] getDesign(float sampleRate)
+    {
+        BiQuadCoefficients[] result = designs.get( sampleRate );
+        if ( result == null )
+        {
+            result = new BiQuadCoefficients[ sections.size() ];
+            for ( int i = 0 ; i < result.length ; i++ ) {
+                result[i] = sections.get(i).design( sampleRate );
+            }
+            final BiQuadCoefficients[] existing = designs.putIfAbsent( sampleRate , result );
+            if ( existing != null ) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FilterChainConfig && ((FilterChainConfig) obj).sections.equals( sections );
+    }
+
+    @Override
+    public int hashCode() {
+        return sections.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FilterChainConfig "+sections;
+    }
+}
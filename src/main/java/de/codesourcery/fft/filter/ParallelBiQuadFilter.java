@@ -0,0 +1,203 @@
+package de.codesourcery.fft.filter;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Filters a long signal with a {@link BiQuadCascade} on several threads at once.
+ *
+ * The signal is split into chunks that are filtered independently. Since an IIR filter's
+ * output depends on all previous input, each chunk (except the first) starts with a fresh
+ * filter that is primed with the <code>warmUp</code> input samples preceding the chunk.
+ * The difference to serial filtering decays with the filter's pole radius, so a warm-up
+ * prefix long enough for the filter's impulse response to die out makes the result
+ * practically identical to the serial one ; see {@link #getWarmUpLength(BiQuadCoefficients[], double)}.
+ *
+ * Instances are immutable and may be used by any number of threads concurrently.
+ */
+public final class ParallelBiQuadFilter
+{
+    public static final int DEFAULT_CHUNK_SIZE = 64*1024;
+
+    private final BiQuadCoefficients[] design;
+    private final int chunkSize;
+    private final int warmUp;
+
+    /**
+     * Create instance.
+     *
+     * @param design filter sections
+     * @param chunkSize number of samples filtered by one task
+     * @param warmUp number of samples each chunk's filter gets primed with
+     */
+    public ParallelBiQuadFilter(BiQuadCoefficients[] design,int chunkSize,int warmUp)
+    {
+        if ( chunkSize < 1 ) {
+            throw new IllegalArgumentException("Chunk size must be >= 1");
+        }
+        if ( warmUp < 0 ) {
+            throw new IllegalArgumentException("Warm-up length must be >= 0");
+        }
+        this.design = design.clone();
+        this.chunkSize = chunkSize;
+        this.warmUp = warmUp;
+    }
+
+    /**
+     * Create instance with a warm-up length chosen so that the
+     * deviation from serial filtering stays below <code>tolerance</code>.
+     *
+     * @param design filter sections
+     * @param chunkSize number of samples filtered by one task
+     * @param tolerance max. deviation from the serial result, relative to the signal's peak amplitude
+     * @see #getWarmUpLength(BiQuadCoefficients[], double)
+     */
+    public ParallelBiQuadFilter(BiQuadCoefficients[] design,int chunkSize,double tolerance)
+    {
+        this( design , chunkSize , getWarmUpLength( design , tolerance ) );
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getWarmUpLength() {
+        return warmUp;
+    }
+
+    /**
+     * Estimates the number of warm-up samples needed so that the contribution of the
+     * unknown initial filter state drops below <code>tolerance</code> (relative to the signal's
+     * peak amplitude).
+     *
+     * The state's contribution decays like <code>r^n</code> where <code>r</code> is the largest pole radius of
+     * all sections. Since cascaded sections (and repeated poles) add a polynomial factor to that decay,
+     * the estimate is doubled.
+     *
+     * @param design
+     * @param tolerance relative tolerance , e.g. <code>1e-6</code>
+     * @return
+     * @throws IllegalArgumentException if the filter is not stable
+     */
+    public static int getWarmUpLength(BiQuadCoefficients[] design,double tolerance)
+    {
+        if ( tolerance <= 0 || tolerance >= 1 ) {
+            throw new IllegalArgumentException("Tolerance must be in range (0,1) , was: "+tolerance);
+        }
+        double maxRadius = 0;
+        for ( BiQuadCoefficients c : design ) {
+            maxRadius = Math.max( maxRadius , poleRadius( c ) );
+        }
+        if ( maxRadius >= 1 ) {
+            throw new IllegalArgumentException("Filter is not stable , pole radius: "+maxRadius);
+        }
+        if ( maxRadius == 0 ) { // FIR or empty
+            return 2*design.length;
+        }
+        return 2 * (int) Math.ceil( Math.log( tolerance ) / Math.log( maxRadius ) );
+    }
+
+    /*
+     * Largest radius of the roots of z^2 + b1*z + b2.
+     */
+    private static double poleRadius(BiQuadCoefficients c)
+    {
+        final double discriminant = c.b1*c.b1 - 4*c.b2;
+        if ( discriminant < 0 ) { // complex conjugate pair
+            return Math.sqrt( c.b2 );
+        }
+        final double root = Math.sqrt( discriminant );
+        return Math.max( Math.abs( -c.b1 + root ) , Math.abs( -c.b1 - root ) ) / 2;
+    }
+
+    /**
+     * Filters an array in-place.
+     *
+     * Chunks get submitted to <code>executor</code> but the calling thread processes chunks as well
+     * and does not wait for tasks that have not started yet, so this method completes even if
+     * the executor is busy or rejects tasks (and it is safe to call it from a task that runs
+     * on <code>executor</code> itself).
+     *
+     * @param data
+     * @param executor
+     * @return <code>data</code>
+     */
+    public double[] filter(final double[] data,Executor executor)
+    {
+        final int chunks = ( data.length + chunkSize - 1 ) / chunkSize;
+        if ( chunks <= 1 ) {
+            return new BiQuadCascade( design ).filter( data );
+        }
+
+        // chunks read the unfiltered input preceding them , so filtering happens out-of-place
+        final double[] input = data.clone();
+        final AtomicInteger nextChunk = new AtomicInteger();
+        final AtomicInteger finishedChunks = new AtomicInteger();
+        final Object lock = new Object();
+
+        final Runnable worker = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                int chunk;
+                while ( ( chunk = nextChunk.getAndIncrement() ) < chunks )
+                {
+                    try {
+                        filterChunk( input , data , chunk );
+                    }
+                    finally
+                    {
+                        if ( finishedChunks.incrementAndGet() == chunks )
+                        {
+                            synchronized(lock) {
+                                lock.notifyAll();
+                            }
+                        }
+                    }
+                }
+            }
+        };
+
+        for ( int i = 1 ; i < chunks ; i++ )
+        {
+            try {
+                executor.execute( worker );
+            }
+            catch(RejectedExecutionException e) {
+                break; // we'll do the remaining work ourselves
+            }
+        }
+        worker.run();
+
+        boolean interrupted = false;
+        synchronized(lock)
+        {
+            while ( finishedChunks.get() < chunks )
+            {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if ( interrupted ) {
+            Thread.currentThread().interrupt();
+        }
+        return data;
+    }
+
+    private void filterChunk(double[] input,double[] output,int chunk)
+    {
+        final int start = chunk * chunkSize;
+        final int len = Math.min( chunkSize , input.length - start );
+        final BiQuadCascade filter = new BiQuadCascade( design );
+        final int primeStart = Math.max( 0 , start - warmUp );
+        if ( primeStart < start ) {
+            filter.process( input , primeStart , new double[ start - primeStart ] , 0 , start - primeStart );
+        }
+        filter.process( input , start , output , start , len );
+    }
+}
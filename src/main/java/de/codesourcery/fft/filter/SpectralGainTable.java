@@ -0,0 +1,111 @@
+package de.codesourcery.fft.filter;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-bin power gains of a BiQuad cascade , to apply a filter's magnitude response
+ * directly to a power spectrum instead of filtering in the time domain.
+ * 
+ * Tables are cached per filter design and FFT size ; since the coefficients are already normalized to 
+ * the sample rate they were designed for , different sample rates yield different cache entries.
+ */
+public final class SpectralGainTable 
+{
+    private static final ConcurrentHashMap<Key,double[]> CACHE = new ConcurrentHashMap<>();
+    private static final int MAX_CACHED_TABLES = 32;
+    
+    private static final class Key 
+    {
+        private final BiQuadCoefficients[] design;
+        private final int fftSize;
+        private final int decimationFactor;
+        
+        public Key(BiQuadCoefficients[] design, int fftSize,int decimationFactor) 
+        {
+            this.design = design;
+            this.fftSize = fftSize;
+            this.decimationFactor = decimationFactor;
+        }
+        
+        @Override
+        public boolean equals(Object obj) 
+        {
+            if ( obj instanceof Key ) 
+            {
+                final Key o = (Key) obj;
+                return o.fftSize == fftSize && o.decimationFactor == decimationFactor && Arrays.equals( o.design , design );
+            }
+            return false;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * ( 31 * fftSize + decimationFactor ) + Arrays.hashCode( design );
+        }
+    }
+    
+    private SpectralGainTable() {
+    }
+    
+    /**
+     * Returns the power gain |H(e^jw)|^2 of a filter cascade for every bin of a complex FFT 
+     * of real-valued input.
+     * 
+     * Bins above fftSize/2 hold the mirrored (negative) frequencies and get the same gain as their positive counterpart.
+     * 
+     * @param design the filter sections
+     * @param fftSize
+     * @return gain table with <code>fftSize</code> entries , callers must not modify it
+     */
+    public static double[] getPowerGains(BiQuadCoefficients[] design,int fftSize) 
+    {
+        return getPowerGains( design , fftSize , 1 );
+    }
+    
+    /**
+     * Returns the power gain of a filter cascade for every bin of a complex FFT that 
+     * is performed on data decimated after filtering.
+     * 
+     * @param design the filter sections , designed for the original sample rate
+     * @param fftSize
+     * @param decimationFactor ratio between the sample rate the filters were designed for and the sample rate of the FFT input
+     * @return gain table with <code>fftSize</code> entries , callers must not modify it
+     */
+    public static double[] getPowerGains(BiQuadCoefficients[] design,int fftSize,int decimationFactor) 
+    {
+        final Key key = new Key( design.clone() , fftSize , decimationFactor );
+        double[] result = CACHE.get( key );
+        if ( result == null ) 
+        {
+            result = calculate( design , fftSize , decimationFactor );
+            if ( CACHE.size() >= MAX_CACHED_TABLES ) {
+                // filter chains , FFT sizes and decimation may change at runtime , don't keep tables that are no longer used
+                CACHE.clear();
+            }
+            final double[] existing = CACHE.putIfAbsent( key , result );
+            if ( existing != null ) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+    
+    private static double[] calculate(BiQuadCoefficients[] design,int fftSize,int decimationFactor) 
+    {
+        final double[] result = new double[ fftSize ];
+        for ( int bin = 0 ; bin <= fftSize / 2 ; bin++ ) 
+        {
+            final double omega = 2 * Math.PI * bin / ( (double) fftSize * decimationFactor );
+            double gain = 1;
+            for ( BiQuadCoefficients section : design ) {
+                gain *= section.powerResponse( omega );
+            }
+            result[bin] = gain;
+            if ( bin > 0 && bin < fftSize / 2 ) {
+                result[ fftSize - bin ] = gain;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,101 @@
+package de.codesourcery.fft.kernels;
+
+/**
+ * The per-sample inner loops of spectrum calculation.
+ *
+ * {@link #getInstance()} returns a SIMD implementation based on the JDK Vector API when the
+ * application runs on Java 17+ with <code>--add-modules jdk.incubator.vector</code> (the
+ * implementation lives in the <code>META-INF/versions/17</code> part of the multi-release jar), and
+ * a plain scalar implementation otherwise. Both implementations yield identical results.
+ *
+ * Setting the system property <code>{@value #FORCE_SCALAR_PROPERTY}</code> to <code>true</code>
+ * disables the SIMD implementation.
+ */
+public abstract class SampleKernels
+{
+    public static final String FORCE_SCALAR_PROPERTY = "fftest.scalarKernels";
+
+    private static final class Holder
+    {
+        public static final SampleKernels INSTANCE = select();
+    }
+
+    private static SampleKernels select()
+    {
+        if ( ! Boolean.getBoolean( FORCE_SCALAR_PROPERTY ) )
+        {
+            try
+            {
+                final SampleKernels result = VectorSampleKernels.create();
+                if ( result != null ) {
+                    return result;
+                }
+            }
+            catch(LinkageError e) {
+                // incubator module not available
+            }
+        }
+        return new ScalarSampleKernels();
+    }
+
+    /**
+     * Returns the fastest implementation supported by the running JVM.
+     *
+     * @return
+     */
+    public static SampleKernels getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Returns the scalar implementation.
+     *
+     * @return
+     */
+    public static SampleKernels getScalarInstance() {
+        return new ScalarSampleKernels();
+    }
+
+    /**
+     * Adds the power of each bin of a complex FFT result to a running sum, using
+     * Kahan summation.
+     *
+     * Bin zero only has a real component (JTransforms stores the real part of bin N/2 in
+     * its imaginary part).
+     *
+     * @param fftData interleaved real/imaginary parts
+     * @param gains optional per-bin power gains , may be <code>null</code>
+     * @param sum running sums , one per bin
+     * @param compensation Kahan compensation terms , one per bin
+     * @param bins number of bins
+     */
+    public abstract void accumulatePower(double[] fftData,double[] gains,double[] sum,double[] compensation,int bins);
+
+    /**
+     * Multiplies <code>len</code> elements of <code>data</code> (starting at <code>offset</code>)
+     * with <code>factors[0...len-1]</code>.
+     *
+     * @param data
+     * @param offset
+     * @param factors
+     * @param len
+     */
+    public abstract void multiply(double[] data,int offset,double[] factors,int len);
+
+    /**
+     * Divides a range of values by a constant and determines the min./max. of the results.
+     *
+     * @param data
+     * @param from first index (inclusive)
+     * @param to last index (exclusive)
+     * @param divisor
+     * @param minMax receives min. (index 0) and max. (index 1) value ; <code>Double.MAX_VALUE</code>
+     * and <code>-Double.MAX_VALUE</code> if the range is empty
+     */
+    public abstract void divideMinMax(double[] data,int from,int to,double divisor,double[] minMax);
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,54 @@
+package de.codesourcery.fft.kernels;
+
+/**
+ * Plain Java implementation , runs everywhere.
+ */
+final class ScalarSampleKernels extends SampleKernels
+{
+    @Override
+    public void accumulatePower(double[] fftData, double[] gains, double[] sum, double[] compensation, int bins)
+    {
+        int ptr = 0;
+        for ( int bin = 0 ; bin < bins ; bin++ , ptr+=2)
+        {
+            double input;
+            if ( bin != 0 ) {
+                input = fftData[ptr] * fftData[ptr] + fftData[ptr+1]*fftData[ptr+1];
+            } else {
+                input = fftData[ptr] * fftData[ptr];
+            }
+            if ( gains != null ) {
+                input *= gains[bin];
+            }
+
+            final double y = input - compensation[bin];
+            final double t = sum[bin] + y;
+            compensation[bin] = ( t - sum[bin] ) - y;
+            sum[bin] = t;
+        }
+    }
+
+    @Override
+    public void multiply(double[] data, int offset, double[] factors, int len)
+    {
+        for ( int i = 0 ; i < len ; i++ ) {
+            data[offset+i] *= factors[i];
+        }
+    }
+
+    @Override
+    public void divideMinMax(double[] data, int from, int to, double divisor, double[] minMax)
+    {
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for ( int i = from ; i < to ; i++ )
+        {
+            final double tmp = data[i] / divisor;
+            data[i] = tmp;
+            min = Math.min( min , tmp );
+            max = Math.max( max , tmp );
+        }
+        minMax[0] = min;
+        minMax[1] = max;
+    }
+}
@@ -0,0 +1,17 @@
+package de.codesourcery.fft.kernels;
+
+/**
+ * Placeholder for Java versions without the Vector API.
+ *
+ * The multi-release jar replaces this class with the SIMD implementation
+ * from <code>src/main/java17</code> on Java 17+.
+ */
+final class VectorSampleKernels
+{
+    private VectorSampleKernels() {
+    }
+
+    static SampleKernels create() {
+        return null;
+    }
+}
@@ -0,0 +1,125 @@
+package de.codesourcery.fft.kernels;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD implementation based on the JDK Vector API.
+ *
+ * Only used on Java 17+ when the <code>jdk.incubator.vector</code> module has been added , results
+ * are bit-identical to {@link ScalarSampleKernels} since every lane performs the same
+ * operations in the same order.
+ */
+final class VectorSampleKernels extends SampleKernels
+{
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private static final int LANES = SPECIES.length();
+
+    // gather indices to de-interleave real/imaginary parts
+    private static final int[] EVEN_INDICES = new int[ LANES ];
+
+    static
+    {
+        for ( int i = 0 ; i < LANES ; i++ ) {
+            EVEN_INDICES[i] = 2*i;
+        }
+    }
+
+    private final ScalarSampleKernels scalar = new ScalarSampleKernels();
+
+    private VectorSampleKernels() {
+    }
+
+    static SampleKernels create()
+    {
+        // nothing to gain without at least two lanes
+        return LANES >= 2 ? new VectorSampleKernels() : null;
+    }
+
+    @Override
+    public void accumulatePower(double[] fftData, double[] gains, double[] sum, double[] compensation, int bins)
+    {
+        if ( bins < 1 ) {
+            return;
+        }
+        // bin 0 has no imaginary part
+        scalar.accumulatePower( fftData , gains , sum , compensation , 1 );
+
+        int bin = 1;
+        final int upperBound = 1 + SPECIES.loopBound( bins - 1 );
+        for ( ; bin < upperBound ; bin += LANES )
+        {
+            final DoubleVector re = DoubleVector.fromArray( SPECIES , fftData , 2*bin , EVEN_INDICES , 0 );
+            final DoubleVector im = DoubleVector.fromArray( SPECIES , fftData , 2*bin+1 , EVEN_INDICES , 0 );
+            DoubleVector input = re.mul( re ).add( im.mul( im ) );
+            if ( gains != null ) {
+                input = input.mul( DoubleVector.fromArray( SPECIES , gains , bin ) );
+            }
+            final DoubleVector s = DoubleVector.fromArray( SPECIES , sum , bin );
+            final DoubleVector y = input.sub( DoubleVector.fromArray( SPECIES , compensation , bin ) );
+            final DoubleVector t = s.add( y );
+            t.sub( s ).sub( y ).intoArray( compensation , bin );
+            t.intoArray( sum , bin );
+        }
+
+        // remaining bins
+        for ( ; bin < bins ; bin++ )
+        {
+            double input = fftData[2*bin] * fftData[2*bin] + fftData[2*bin+1]*fftData[2*bin+1];
+            if ( gains != null ) {
+                input *= gains[bin];
+            }
+            final double y = input - compensation[bin];
+            final double t = sum[bin] + y;
+            compensation[bin] = ( t - sum[bin] ) - y;
+            sum[bin] = t;
+        }
+    }
+
+    @Override
+    public void multiply(double[] data, int offset, double[] factors, int len)
+    {
+        int i = 0;
+        final int upperBound = SPECIES.loopBound( len );
+        for ( ; i < upperBound ; i += LANES )
+        {
+            DoubleVector.fromArray( SPECIES , data , offset+i )
+                .mul( DoubleVector.fromArray( SPECIES , factors , i ) )
+                .intoArray( data , offset+i );
+        }
+        for ( ; i < len ; i++ ) {
+            data[offset+i] *= factors[i];
+        }
+    }
+
+    @Override
+    public void divideMinMax(double[] data, int from, int to, double divisor, double[] minMax)
+    {
+        DoubleVector min = DoubleVector.broadcast( SPECIES , Double.MAX_VALUE );
+        DoubleVector max = DoubleVector.broadcast( SPECIES , -Double.MAX_VALUE );
+
+        int i = from;
+        final int upperBound = from + SPECIES.loopBound( to - from );
+        for ( ; i < upperBound ; i += LANES )
+        {
+            final DoubleVector v = DoubleVector.fromArray( SPECIES , data , i ).div( divisor );
+            v.intoArray( data , i );
+            min = min.min( v );
+            max = max.max( v );
+        }
+
+        double scalarMin = min.reduceLanes( VectorOperators.MIN );
+        double scalarMax = max.reduceLanes( VectorOperators.MAX );
+        for ( ; i < to ; i++ )
+        {
+            final double tmp = data[i] / divisor;
+            data[i] = tmp;
+            scalarMin = Math.min( scalarMin , tmp );
+            scalarMax = Math.max( scalarMax , tmp );
+        }
+        minMax[0] = scalarMin;
+        minMax[1] = scalarMax;
+    }
+}
@@ -0,0 +1,344 @@
+package de.codesourcery.fft;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sound.sampled.AudioFormat;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.ISpectrumProvider.ICallback;
+import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+import de.codesourcery.fft.filter.FilterChainConfig;
+import de.codesourcery.fft.filter.FilterChainConfig.Section;
+
+public class AbstractSpectrumProviderTest extends TestCase {
+
+	private static final AudioFormat FORMAT = new AudioFormat(44100, 16, 1, true , false);
+
+	private AnalysisPool pool;
+	private SineProvider provider;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		pool = new AnalysisPool(4);
+		provider = new SineProvider(pool);
+	}
+
+	@Override
+	protected void tearDown() throws Exception
+	{
+		provider.close();
+		pool.shutdown();
+	}
+
+	public void testDifferentParameterSetsAreCalculatedInParallel() throws InterruptedException
+	{
+		final int[] fftSizes = { 512 , 1024 , 2048 , 4096 };
+		final CountDownLatch latch = new CountDownLatch( fftSizes.length );
+		final List<RecordingCallback> callbacks = new ArrayList<>();
+		for ( int fftSize : fftSizes )
+		{
+			final RecordingCallback callback = new RecordingCallback(fftSize,latch);
+			callbacks.add( callback );
+			provider.calcSpectrum( callback , fftSize , true , true );
+		}
+
+		assertTrue( "Calculations did not finish in time" , latch.await( 30 , TimeUnit.SECONDS ) );
+		for ( RecordingCallback callback : callbacks ) {
+			callback.assertValid();
+		}
+		assertTrue( "Calculations were serialised (max. concurrency: "+provider.maxConcurrentCalls.get()+")" , provider.maxConcurrentCalls.get() > 1 );
+	}
+
+	public void testCachedSpectrumIsReturnedWithoutBlocking() throws InterruptedException
+	{
+		final CountDownLatch latch = new CountDownLatch(1);
+		final RecordingCallback first = new RecordingCallback(1024,latch);
+		provider.calcSpectrum( first , 1024 , false , false );
+		assertTrue( latch.await( 30 , TimeUnit.SECONDS ) );
+
+		// keep the worker busy with another parameter set
+		provider.calcSpectrum( new RecordingCallback(2048,new CountDownLatch(1)) , 2048 , false , false );
+
+		final int callsBefore = provider.totalCalls.get();
+		final RecordingCallback second = new RecordingCallback(1024,new CountDownLatch(1));
+		provider.calcSpectrum( second , 1024 , false , false );
+		// cache hits are delivered synchronously
+		assertSame( first.received.get() , second.received.get() );
+		assertTrue( provider.totalCalls.get() - callsBefore <= 1 );
+	}
+
+	public void testConcurrentRequestsWhileDataChanges() throws Exception
+	{
+		final int threadCount = 8;
+		final int requestsPerThread = 20;
+		final int[] fftSizes = { 256 , 512 , 1024 };
+
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		final AtomicInteger delivered = new AtomicInteger();
+		final AtomicInteger rejected = new AtomicInteger();
+		final CountDownLatch allDone = new CountDownLatch( threadCount * requestsPerThread );
+
+		final List<Thread> threads = new ArrayList<>();
+		for ( int t = 0 ; t < threadCount ; t++ )
+		{
+			final int threadNo = t;
+			threads.add( new Thread() {
+
+				@Override
+				public void run()
+				{
+					for ( int i = 0 ; i < requestsPerThread ; i++ )
+					{
+						final int fftSize = fftSizes[ (threadNo+i) % fftSizes.length ];
+						final RecordingCallback callback = new RecordingCallback( fftSize , allDone ) {
+
+							@Override
+							public void calculationFinished(ISpectrumProvider provider, Spectrum spectrum)
+							{
+								if ( spectrum.getFFTSize() != fftSize || ! spectrum.isFiltersApplied() ) {
+									failure.compareAndSet( null , new AssertionError("Got spectrum for wrong parameters: "+spectrum.getFFTSize() ) );
+								}
+								delivered.incrementAndGet();
+								super.calculationFinished( provider , spectrum );
+							}
+
+							@Override
+							public void calculationFailed(ISpectrumProvider provider)
+							{
+								// worker queue is bounded , requests exceeding it get rejected
+								rejected.incrementAndGet();
+								super.calculationFailed(provider);
+							}
+						};
+						provider.calcSpectrum( callback , fftSize , true , true );
+						if ( (i % 5) == 0 ) {
+							provider.invalidateCache();
+						}
+					}
+				}
+			});
+		}
+
+		for ( Thread t : threads ) {
+			t.start();
+		}
+		for ( Thread t : threads ) {
+			t.join();
+		}
+
+		assertTrue( "Requests did not finish in time" , allDone.await( 60 , TimeUnit.SECONDS ) );
+		if ( failure.get() != null ) {
+			throw new AssertionError( failure.get() );
+		}
+		assertEquals( threadCount * requestsPerThread , delivered.get() + rejected.get() );
+		assertTrue( delivered.get() > 0 );
+		assertTrue( provider.maxConcurrentCalls.get() > 1 );
+
+		// once things have calmed down , requests must see the latest data
+		provider.invalidateCache();
+		final int callsBefore = provider.totalCalls.get();
+		final CountDownLatch latch = new CountDownLatch(1);
+		final RecordingCallback last = new RecordingCallback( 512 , latch );
+		provider.calcSpectrum( last , 512 , true , true );
+		assertTrue( latch.await( 30 , TimeUnit.SECONDS ) );
+		last.assertValid();
+		assertEquals( callsBefore+1 , provider.totalCalls.get() );
+	}
+
+	public void testSilenceGate() throws InterruptedException
+	{
+		// sine has an RMS level of about -13 dBFS
+		provider.setSilenceGate( new SilenceGate( -10 , -16 , 1 , Double.NaN ) );
+		CountDownLatch latch = new CountDownLatch(1);
+		final RecordingCallback quiet = new RecordingCallback(1024,latch);
+		provider.calcSpectrum( quiet , 1024 , true , false );
+		assertTrue( latch.await( 30 , TimeUnit.SECONDS ) );
+		quiet.assertValid();
+		assertTrue( quiet.received.get().isSilent() );
+
+		// changing the gate invalidates cached results
+		provider.setSilenceGate( SilenceGate.DEFAULT );
+		latch = new CountDownLatch(1);
+		final RecordingCallback loud = new RecordingCallback(1024,latch);
+		provider.calcSpectrum( loud , 1024 , true , false );
+		assertTrue( latch.await( 30 , TimeUnit.SECONDS ) );
+		loud.assertValid();
+		assertFalse( loud.received.get().isSilent() );
+		assertTrue( loud.received.get().getMaxValue() > 0 );
+	}
+
+	public void testTargetedBins() throws InterruptedException
+	{
+		provider.setTargetedBins( new GoertzelBank( new double[] { 330 , 440 } , 2 , 50 , 10 ) );
+		final CountDownLatch latch = new CountDownLatch(1);
+		final RecordingCallback callback = new RecordingCallback(1024,latch);
+		provider.calcSpectrum( callback , 1024 , true , false );
+		assertTrue( latch.await( 30 , TimeUnit.SECONDS ) );
+		callback.assertValid();
+
+		final TargetedBins bins = callback.received.get().getTargetedBins();
+		assertNotNull( bins );
+		assertEquals( 1 , bins.getBaseIndex() );
+		assertEquals( 440 , callback.received.get().getFundamentalFrequency() , 0.5 );
+	}
+
+	public void testTargetedBinsWithSpectralFiltering() throws InterruptedException
+	{
+		final GoertzelBank bank = new GoertzelBank( new double[] { 330 , 440 } , 2 , 50 , 10 );
+		// index of the fundamental of the 440 Hz base without offset
+		final int target = ( bank.getOffsetCount() + bank.getOffsetCount() / 2 ) * bank.getHarmonics();
+		assertEquals( 440 , bank.getFrequencies()[ target ] , 1e-9 );
+
+		provider.setTargetedBins( bank );
+		// attenuates the 440 Hz tone by more than 20 dB
+		provider.setFilterChain( new FilterChainConfig( new Section( BiQuadType.HIGHPASS , 2000 , 1 , 6 ) ) );
+		final double unfiltered = calculate( provider , 1024 , true , false ).getTargetedBins().getPower()[ target ];
+		final double timeDomain = calculate( provider , 1024 , true , true ).getTargetedBins().getPower()[ target ];
+		provider.setSpectralFiltering( true );
+		final Spectrum spectral = calculate( provider , 1024 , true , true );
+
+		assertTrue( spectral.isFiltersApplied() );
+		assertTrue( timeDomain < unfiltered * 1e-2 );
+		assertEquals( timeDomain , spectral.getTargetedBins().getPower()[ target ] , 0 );
+	}
+
+	public void testInstantaneousFrequency() throws InterruptedException
+	{
+		final CountDownLatch latch = new CountDownLatch(1);
+		final RecordingCallback callback = new RecordingCallback(1024,latch);
+		provider.calcSpectrum( callback , 1024 , true , false );
+		assertTrue( latch.await( 30 , TimeUnit.SECONDS ) );
+		callback.assertValid();
+
+		// bins are ~43 Hz wide , 440 Hz lies between bins 10 and 11
+		final InstantaneousFrequency estimates = callback.received.get().getInstantaneousFrequency();
+		assertNotNull( estimates );
+		assertEquals( 440 , estimates.refine( 430 ) , 0.25 );
+	}
+
+	public void testSpectralFilteringMatchesTimeDomainFiltering() throws Exception
+	{
+		final SineProvider sine = new SineProvider( pool , 3000 );
+		try
+		{
+			final Spectrum timeDomain = calculate( sine , 1024 , true , true );
+			sine.setSpectralFiltering( true );
+			final Spectrum spectral = calculate( sine , 1024 , true , true );
+
+			// the lowest bins differ because the spectral gains also apply to leakage of the 3 kHz tone
+			final double[] expected = timeDomain.getData();
+			final double[] actual = spectral.getData();
+			final double tolerance = 0.01 * timeDomain.getMaxValue();
+			for ( int bin = 20 ; bin < timeDomain.getBands() ; bin++ ) {
+				assertEquals( "Bin "+bin , expected[bin] , actual[bin] , tolerance );
+			}
+		} 
+		finally {
+			sine.close();
+		}
+	}
+
+	private static Spectrum calculate(AbstractSpectrumProvider provider,int fftSize,boolean applyWindowingFunction,boolean applyFilters) throws InterruptedException
+	{
+		final CountDownLatch latch = new CountDownLatch(1);
+		final RecordingCallback callback = new RecordingCallback(fftSize,latch);
+		provider.calcSpectrum( callback , fftSize , applyWindowingFunction , applyFilters );
+		assertTrue( latch.await( 30 , TimeUnit.SECONDS ) );
+		callback.assertValid();
+		return callback.received.get();
+	}
+
+	protected static class RecordingCallback implements ICallback
+	{
+		private final int expectedFFTSize;
+		private final CountDownLatch latch;
+		public final AtomicReference<Spectrum> received = new AtomicReference<>();
+		public volatile boolean failed;
+
+		public RecordingCallback(int expectedFFTSize,CountDownLatch latch)
+		{
+			this.expectedFFTSize = expectedFFTSize;
+			this.latch = latch;
+		}
+
+		@Override
+		public void calculationFailed(ISpectrumProvider provider)
+		{
+			failed = true;
+			latch.countDown();
+		}
+
+		@Override
+		public void calculationFinished(ISpectrumProvider provider, Spectrum spectrum)
+		{
+			received.set( spectrum );
+			latch.countDown();
+		}
+
+		public void assertValid()
+		{
+			assertFalse( failed );
+			assertNotNull( received.get() );
+			assertEquals( expectedFFTSize , received.get().getFFTSize() );
+		}
+	}
+
+	protected static final class SineProvider extends AbstractSpectrumProvider
+	{
+		private final AtomicInteger concurrentCalls = new AtomicInteger();
+		public final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+		public final AtomicInteger totalCalls = new AtomicInteger();
+		private final double frequency;
+
+		public SineProvider(AnalysisPool pool) throws FileNotFoundException
+		{
+			this(pool, 440);
+		}
+
+		public SineProvider(AnalysisPool pool,double frequency) throws FileNotFoundException
+		{
+			super(FORMAT, null, pool);
+			this.frequency = frequency;
+		}
+
+		@Override
+		protected SampleData getData()
+		{
+			totalCalls.incrementAndGet();
+			final int current = concurrentCalls.incrementAndGet();
+			try
+			{
+				int max;
+				while ( current > ( max = maxConcurrentCalls.get() ) && ! maxConcurrentCalls.compareAndSet( max , current ) ) {
+				}
+
+				final double[] data = new double[ 16384 ];
+				for ( int i = 0 ; i < data.length ; i++ ) {
+					data[i] = 10000 * Math.sin( 2*Math.PI*frequency*i / FORMAT.getSampleRate() );
+				}
+				try {
+					// make sure calculations overlap
+					Thread.sleep( 50 );
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return new SampleData( data , -10000 , 10000 );
+			}
+			finally {
+				concurrentCalls.decrementAndGet();
+			}
+		}
+
+		@Override
+		public boolean isStatic() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package de.codesourcery.fft;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.AnimationScheduler.IAnimation;
+
+public class AnimationSchedulerTest extends TestCase {
+
+	private static final class CountingAnimation implements IAnimation
+	{
+		private final int ticks;
+		public final List<Long> times = new ArrayList<>();
+
+		public CountingAnimation(int ticks) {
+			this.ticks = ticks;
+		}
+
+		@Override
+		public synchronized boolean animate(long time)
+		{
+			times.add( time );
+			return times.size() < ticks;
+		}
+
+		public synchronized int getCount() {
+			return times.size();
+		}
+	}
+
+	private static void waitForIdle(AnimationScheduler scheduler) throws InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + 5000;
+		while ( scheduler.isRunning() && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 10 );
+		}
+		assertFalse( "Timer still running" , scheduler.isRunning() );
+	}
+
+	public void testAnimationsRunUntilDone() throws Exception
+	{
+		final AnimationScheduler scheduler = new AnimationScheduler( 100 );
+		assertFalse( scheduler.isRunning() );
+
+		final CountingAnimation shortAnimation = new CountingAnimation( 3 );
+		final CountingAnimation longAnimation = new CountingAnimation( 10 );
+		scheduler.start( shortAnimation );
+		scheduler.start( longAnimation );
+		// already running
+		scheduler.start( longAnimation );
+		waitForIdle( scheduler );
+
+		assertEquals( 3 , shortAnimation.getCount() );
+		assertEquals( 10 , longAnimation.getCount() );
+		assertFalse( scheduler.isRunning( longAnimation ) );
+
+		// both animations were driven by the same ticks
+		for ( int i = 0 ; i < 3 ; i++ ) {
+			assertEquals( shortAnimation.times.get(i) , longAnimation.times.get(i) );
+		}
+		for ( int i = 1 ; i < 10 ; i++ ) {
+			assertTrue( longAnimation.times.get(i) > longAnimation.times.get(i-1) );
+		}
+		assertTrue( longAnimation.times.get(9) <= AnimationScheduler.getTime() );
+
+		// restarts after having been idle
+		final CountingAnimation another = new CountingAnimation( 2 );
+		scheduler.start( another );
+		waitForIdle( scheduler );
+		assertEquals( 2 , another.getCount() );
+	}
+
+	public void testStop() throws Exception
+	{
+		final AnimationScheduler scheduler = new AnimationScheduler( 100 );
+		final CountingAnimation animation = new CountingAnimation( Integer.MAX_VALUE );
+		scheduler.start( animation );
+		assertTrue( scheduler.isRunning( animation ) );
+		Thread.sleep( 50 );
+		scheduler.stop( animation );
+		waitForIdle( scheduler );
+
+		final int count = animation.getCount();
+		assertTrue( count > 0 );
+		Thread.sleep( 50 );
+		assertEquals( count , animation.getCount() );
+	}
+}
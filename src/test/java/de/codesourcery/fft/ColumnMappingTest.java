@@ -0,0 +1,109 @@
+package de.codesourcery.fft;
+
+import junit.framework.TestCase;
+
+public class ColumnMappingTest extends TestCase {
+
+	public void testEveryBinIsCoveredOnce()
+	{
+		for ( int bands : new int[] { 16 , 500 , 4096 } )
+		{
+			final ColumnMapping mapping = ColumnMapping.linear( bands , 500 );
+			if ( bands >= 500 ) 
+			{
+				int expected = 1;
+				for ( int x = 0 ; x < mapping.getWidth() ; x++ )
+				{
+					if ( mapping.getEndBin( x ) == mapping.getFirstBin( x ) ) {
+						// DC only
+						assertEquals( 0 , x );
+						continue;
+					}
+					assertEquals( expected , mapping.getFirstBin( x ) );
+					expected = mapping.getEndBin( x );
+				}
+				assertEquals( bands , expected );
+			}
+			else 
+			{
+				// fewer bins than columns , each column shows one bin (or nothing but DC)
+				for ( int x = 0 ; x < mapping.getWidth() ; x++ ) 
+				{
+					final int expected = x * bands / mapping.getWidth() == 0 ? mapping.getFirstBin( x ) : mapping.getFirstBin( x ) + 1;
+					assertEquals( expected , mapping.getEndBin( x ) );
+				}
+				assertEquals( bands-1 , mapping.getFirstBin( mapping.getWidth()-1 ) );
+			}
+		}
+	}
+
+	public void testAggregate()
+	{
+		final double[] data = new double[ 16 ];
+		for ( int i = 0 ; i < data.length ; i++ ) {
+			data[i] = i;
+		}
+		// 4 bins per column , DC left out
+		final ColumnMapping mapping = ColumnMapping.linear( 16 , 4 );
+		final ColumnMapping.Aggregate result = mapping.aggregate( data , Double.NEGATIVE_INFINITY , new ColumnMapping.Aggregate( 4 ) );
+		assertEquals( 1 , result.min[0] , 0 );
+		assertEquals( 3 , result.max[0] , 0 );
+		assertEquals( 2 , result.mean[0] , 0 );
+		assertEquals( 12 , result.min[3] , 0 );
+		assertEquals( 15 , result.max[3] , 0 );
+
+		mapping.aggregate( data , 13.5 , result );
+		assertFalse( result.valid[0] );
+		assertTrue( result.valid[3] );
+		assertEquals( 14.5 , result.mean[3] , 0 );
+	}
+
+	public void testLogarithmic()
+	{
+		final ColumnMapping mapping = ColumnMapping.logarithmic( 1024 , 44100 , 20 , 500 );
+		assertSame( mapping , ColumnMapping.logarithmic( 1024 , 44100 , 20 , 500 ) );
+		assertTrue( mapping.isLogarithmic() );
+		assertEquals( 512 , mapping.getBands() );
+
+		final double[] data = new double[ 512 ];
+		for ( int i = 0 ; i < data.length ; i++ ) {
+			data[i] = i;
+		}
+		final ColumnMapping.Aggregate result = mapping.aggregate( data , Double.NEGATIVE_INFINITY , new ColumnMapping.Aggregate( 500 ) );
+
+		int interpolated = 0;
+		int expected = -1;
+		for ( int x = 0 ; x < mapping.getWidth() ; x++ )
+		{
+			assertTrue( result.valid[x] );
+			assertEquals( x , mapping.getColumn( mapping.getCenterBin( x ) ) );
+			if ( mapping.getFirstBin( x ) == mapping.getEndBin( x ) )
+			{
+				// narrower than a bin , linear data interpolates exactly
+				interpolated++;
+				assertEquals( mapping.getCenterBin( x ) , result.mean[x] , 1e-9 );
+				continue;
+			}
+			if ( expected != -1 ) {
+				assertEquals( expected , mapping.getFirstBin( x ) );
+			}
+			expected = mapping.getEndBin( x );
+		}
+		assertEquals( 512 , expected );
+		// 43 Hz bins , so the lowest octaves get interpolated while the highest columns aggregate several bins
+		assertTrue( interpolated > 100 );
+		assertTrue( mapping.getEndBin( 499 ) - mapping.getFirstBin( 499 ) > 1 );
+		assertEquals( -1 , mapping.getColumn( 0 ) );
+	}
+
+	public void testLinearColumnOfBin()
+	{
+		final ColumnMapping mapping = ColumnMapping.linear( 1000 , 300 );
+		for ( int x = 0 ; x < mapping.getWidth() ; x++ )
+		{
+			for ( int bin = mapping.getFirstBin( x ) ; bin < mapping.getEndBin( x ) ; bin++ ) {
+				assertEquals( x , mapping.getColumn( bin ) );
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package de.codesourcery.fft;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.SwingUtilities;
+
+import junit.framework.TestCase;
+
+public class FrameSchedulerTest extends TestCase {
+
+	private static final class Counter implements Runnable
+	{
+		public final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public void run() {
+			count.incrementAndGet();
+		}
+	}
+
+	private static void waitForIdle(FrameScheduler scheduler) throws InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + 5000;
+		while ( scheduler.isRunning() && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 10 );
+		}
+		assertFalse( "Timer still running" , scheduler.isRunning() );
+	}
+
+	public void testUpdatesAreCoalesced() throws Exception
+	{
+		final FrameScheduler scheduler = new FrameScheduler( 20 );
+		final Counter counter = new Counter();
+		for ( int i = 0 ; i < 1000 ; i++ ) {
+			scheduler.requestUpdate( counter );
+		}
+		waitForIdle( scheduler );
+
+		assertTrue( counter.count.get() >= 1 );
+		assertTrue( "Update ran "+counter.count.get()+" times" , counter.count.get() <= scheduler.getFrameCount() );
+		assertTrue( scheduler.getFrameCount() <= 2 );
+	}
+
+	public void testFramesAreSkippedWhileEDTIsBusy() throws Exception
+	{
+		final FrameScheduler scheduler = new FrameScheduler( 100 );
+		final Counter counter = new Counter();
+
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		SwingUtilities.invokeLater( new Runnable() {
+
+			@Override
+			public void run()
+			{
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		assertTrue( blocked.await( 5 , TimeUnit.SECONDS ) );
+		try
+		{
+			final long deadline = System.currentTimeMillis() + 5000;
+			while ( scheduler.getSkippedFrameCount() < 3 && System.currentTimeMillis() < deadline )
+			{
+				scheduler.requestUpdate( counter );
+				Thread.sleep( 5 );
+			}
+			assertTrue( scheduler.getSkippedFrameCount() >= 3 );
+			assertEquals( 0 , counter.count.get() );
+		}
+		finally {
+			release.countDown();
+		}
+		waitForIdle( scheduler );
+		assertEquals( 1 , counter.count.get() );
+	}
+}
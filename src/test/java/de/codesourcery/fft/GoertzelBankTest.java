@@ -0,0 +1,71 @@
+package de.codesourcery.fft;
+
+import junit.framework.TestCase;
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+public class GoertzelBankTest extends TestCase {
+
+	private static final double SAMPLE_RATE = 44100 / 8.0;
+
+	/*
+	 * Hann-windowed tone with 3 harmonics (amplitude 1/h).
+	 */
+	private static double[] tone(double fundamental,int len)
+	{
+		final double[] result = new double[ len ];
+		for ( int i = 0 ; i < len ; i++ )
+		{
+			double sample = 0;
+			for ( int h = 1 ; h <= 3 ; h++ ) {
+				sample += Math.sin( 2*Math.PI*fundamental*h*i / SAMPLE_RATE ) / h;
+			}
+			result[i] = sample * ( 0.5 - 0.5*Math.cos( 2*Math.PI*i / ( len-1 ) ) );
+		}
+		return result;
+	}
+
+	private static double cents(double actual,double expected) {
+		return 1200 * Math.log( actual / expected ) / Math.log( 2 );
+	}
+
+	public void testMatchesFFT()
+	{
+		final int len = 2048;
+		final double[] samples = tone( 100 , len );
+		final double[] fftData = new double[ 2*len ];
+		for ( int i = 0 ; i < len ; i++ ) {
+			fftData[2*i] = samples[i];
+		}
+		new DoubleFFT_1D( len ).complexForward( fftData );
+
+		// Goertzel at a bin center yields the same power as the FFT
+		final double binWidth = SAMPLE_RATE / len;
+		for ( int bin : new int[] { 30 , 37 , 75 } )
+		{
+			final GoertzelBank bank = new GoertzelBank( new double[] { bin * binWidth } , 1 , 0 , 1 );
+			final double expected = fftData[2*bin]*fftData[2*bin] + fftData[2*bin+1]*fftData[2*bin+1];
+			assertEquals( expected , bank.evaluate( samples , SAMPLE_RATE ).getPower()[0] , expected * 1e-9 );
+		}
+	}
+
+	public void testDetectsDetunedString()
+	{
+		final GoertzelBank bank = GoertzelBank.forKeys( TuningHelper.GUITAR_KEYS );
+		assertEquals( 6 * 11 * 3 , bank.size() );
+		for ( int i = 0 ; i < TuningHelper.GUITAR_KEYS.length ; i++ )
+		{
+			final double target = TuningHelper.GUITAR_KEYS[i].getTargetFrequency();
+			final double actual = target * Math.pow( 2 , 13 / 1200.0 );
+			final TargetedBins bins = bank.evaluate( tone( actual , 2048 ) , SAMPLE_RATE );
+			assertEquals( i , bins.getBaseIndex() );
+			assertEquals( 13 , cents( bins.getFundamentalFrequency() , target ) , 3 );
+		}
+	}
+
+	public void testSilence()
+	{
+		final TargetedBins bins = GoertzelBank.forKeys( TuningHelper.GUITAR_KEYS ).evaluate( new double[ 1024 ] , SAMPLE_RATE );
+		assertTrue( Double.isNaN( bins.getFundamentalFrequency() ) );
+		assertEquals( -1 , bins.getBaseIndex() );
+	}
+}
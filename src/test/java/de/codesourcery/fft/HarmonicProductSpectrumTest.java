@@ -0,0 +1,53 @@
+package de.codesourcery.fft;
+
+import junit.framework.TestCase;
+
+public class HarmonicProductSpectrumTest extends TestCase {
+
+	private static final double SAMPLE_RATE = TestSignals.SAMPLE_RATE;
+	private static final int FFT_SIZE = TestSignals.FFT_SIZE;
+
+	/*
+	 * Power spectrum of a tone with harmonics 'firstHarmonic' ... 6 .
+	 */
+	private static double[] powerSpectrum(double fundamental,int firstHarmonic) {
+		return TestSignals.powerSpectrum( new double[] { fundamental } , firstHarmonic , 6 , 0 , 0 );
+	}
+
+	public void testDetectsGuitarStrings()
+	{
+		final HarmonicProductSpectrum hps = new HarmonicProductSpectrum();
+		for ( double f : new double[] { 82.41 , 110 , 146.83 , 196 , 246.94 , 329.63 } )
+		{
+			final double detected = hps.detectPitch( powerSpectrum( f , 1 ) , FFT_SIZE , SAMPLE_RATE );
+			// bin width is ~5.4 Hz
+			assertEquals( "Expected "+f , f , detected , 1.0 );
+		}
+	}
+
+	public void testDetectsMissingFundamental()
+	{
+		final double detected = new HarmonicProductSpectrum().detectPitch( powerSpectrum( 110 , 2 ) , FFT_SIZE , SAMPLE_RATE );
+		assertEquals( 110 , detected , 1.0 );
+	}
+
+	public void testNarrowSearchMatchesFullSearch()
+	{
+		final HarmonicProductSpectrum hps = new HarmonicProductSpectrum();
+		final double[] power = powerSpectrum( 146.83 , 1 );
+		final double full = hps.detectPitch( power , FFT_SIZE , SAMPLE_RATE );
+		final int bin = (int) Math.round( full * FFT_SIZE / SAMPLE_RATE );
+		assertEquals( full , hps.detectPitch( power , FFT_SIZE , SAMPLE_RATE , bin-3 , bin+3 ) , 1e-9 );
+		assertTrue( Double.isNaN( hps.detectPitch( new double[ FFT_SIZE ] , FFT_SIZE , SAMPLE_RATE , bin-3 , bin+3 ) ) );
+	}
+
+	public void testSilenceYieldsNaN()
+	{
+		assertTrue( Double.isNaN( new HarmonicProductSpectrum().detectPitch( new double[ FFT_SIZE ] , FFT_SIZE , SAMPLE_RATE ) ) );
+	}
+
+	public void testTooCoarseSpectrumYieldsNaN()
+	{
+		assertTrue( Double.isNaN( new HarmonicProductSpectrum().detectPitch( new double[ 32 ] , 32 , SAMPLE_RATE ) ) );
+	}
+}
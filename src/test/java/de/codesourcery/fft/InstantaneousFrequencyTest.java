@@ -0,0 +1,65 @@
+package de.codesourcery.fft;
+
+import junit.framework.TestCase;
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+public class InstantaneousFrequencyTest extends TestCase {
+
+	private static final double SAMPLE_RATE = 44100;
+	private static final int FFT_SIZE = 4096; // ~10.8 Hz per bin
+	private static final int HOP_SIZE = (int) ( FFT_SIZE * 0.33 );
+
+	/*
+	 * Phase-vocoder estimates for 4 Hann-windowed frames of a tone with 5 harmonics (amplitude 1/h).
+	 */
+	private static InstantaneousFrequency analyse(double fundamental)
+	{
+		final double[] window = new double[ FFT_SIZE ];
+		for ( int i = 0 ; i < FFT_SIZE ; i++ ) {
+			window[i] = 0.5 - 0.5*Math.cos( 2*Math.PI*i / ( FFT_SIZE-1 ) );
+		}
+		final DoubleFFT_1D fft = new DoubleFFT_1D( FFT_SIZE );
+		final InstantaneousFrequency.Accumulator accumulator = new InstantaneousFrequency.Accumulator( FFT_SIZE , HOP_SIZE );
+		final double[] fftData = new double[ FFT_SIZE * 2 ];
+		for ( int frame = 0 ; frame < 4 ; frame++ )
+		{
+			for ( int i = 0 ; i < FFT_SIZE ; i++ )
+			{
+				final int n = frame * HOP_SIZE + i;
+				double sample = 0;
+				for ( int h = 1 ; h <= 5 ; h++ ) {
+					sample += Math.sin( 2*Math.PI*fundamental*h*n / SAMPLE_RATE + h ) / h;
+				}
+				fftData[2*i] = sample * window[i];
+				fftData[2*i+1] = 0;
+			}
+			fft.complexForward( fftData );
+			accumulator.add( fftData );
+		}
+		return accumulator.finish( SAMPLE_RATE );
+	}
+
+	private static double cents(double actual,double expected) {
+		return 1200 * Math.log( actual / expected ) / Math.log( 2 );
+	}
+
+	public void testSingleFrameYieldsNull()
+	{
+		final InstantaneousFrequency.Accumulator accumulator = new InstantaneousFrequency.Accumulator( 16 , 4 );
+		accumulator.add( new double[ 32 ] );
+		assertNull( accumulator.finish( SAMPLE_RATE ) );
+	}
+
+	public void testCentLevelAccuracy()
+	{
+		// low E string , slightly sharp , between two bins
+		for ( double f : new double[] { 82.41 * 1.004 , 110.37 , 196.9 } )
+		{
+			final InstantaneousFrequency estimates = analyse( f );
+			// bin-level estimate is off by up to half a bin
+			final double coarse = Math.round( f * FFT_SIZE / SAMPLE_RATE ) * SAMPLE_RATE / FFT_SIZE;
+			assertEquals( 0 , cents( estimates.refine( coarse ) , f ) , 1 );
+			assertEquals( 0 , cents( estimates.refineFundamental( coarse , 5 ) , f ) , 1 );
+		}
+	}
+}
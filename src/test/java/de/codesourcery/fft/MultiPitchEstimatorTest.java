@@ -0,0 +1,56 @@
+package de.codesourcery.fft;
+
+import junit.framework.TestCase;
+
+public class MultiPitchEstimatorTest extends TestCase {
+
+	private static final double SAMPLE_RATE = TestSignals.SAMPLE_RATE;
+	private static final int FFT_SIZE = TestSignals.FFT_SIZE;
+
+	/*
+	 * Power spectrum of a mix of tones with 8 harmonics each.
+	 */
+	private static double[] powerSpectrum(double... fundamentals) {
+		return TestSignals.powerSpectrum( fundamentals , 1 , 8 , 0 , 0 );
+	}
+
+	private static int key(double frequency) {
+		return TuningHelper.frequencyToKeyIndex( frequency );
+	}
+
+	public void testSingleNote()
+	{
+		final PitchSet result = new MultiPitchEstimator().estimate( powerSpectrum( 110 ) , FFT_SIZE , SAMPLE_RATE );
+		assertEquals( result.toString() , 1 , result.size() );
+		assertEquals( key( 110 ) , result.getPitches().get(0).keyIndex );
+		assertEquals( 110 , result.getPitches().get(0).frequency , 0.5 );
+	}
+
+	public void testMajorTriad()
+	{
+		// C3 , E3 , G3
+		final double[] notes = { 130.81 , 164.81 , 196.00 };
+		final PitchSet result = new MultiPitchEstimator().estimate( powerSpectrum( notes ) , FFT_SIZE , SAMPLE_RATE );
+		assertEquals( result.toString() , 3 , result.size() );
+		for ( double f : notes ) {
+			assertTrue( result.toString() , result.containsKey( key( f ) ) );
+		}
+	}
+
+	public void testOpenEChord()
+	{
+		// E2 , H2 , E3 , G#3 , H3 , E4 ; octaves share all their harmonics so only the distinct pitch classes
+		// of the lower notes are required
+		final double[] notes = { 82.41 , 123.47 , 164.81 , 207.65 , 246.94 , 329.63 };
+		final PitchSet result = new MultiPitchEstimator().estimate( powerSpectrum( notes ) , FFT_SIZE , SAMPLE_RATE );
+		assertTrue( result.toString() , result.containsKey( key( 82.41 ) ) );
+		assertTrue( result.toString() , result.containsKey( key( 123.47 ) ) );
+		assertTrue( result.toString() , result.containsKey( key( 207.65 ) ) );
+		assertTrue( result.size() <= MultiPitchEstimator.DEFAULT_MAX_POLYPHONY );
+	}
+
+	public void testSilence()
+	{
+		assertTrue( new MultiPitchEstimator().estimate( new double[ FFT_SIZE ] , FFT_SIZE , SAMPLE_RATE ).isEmpty() );
+	}
+}
@@ -0,0 +1,95 @@
+package de.codesourcery.fft;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.PeakFinder.Interpolation;
+import de.codesourcery.fft.PeakFinder.Peak;
+
+public class PeakFinderTest extends TestCase {
+
+	/*
+	 * The quadratic algorithm Spectrum used before.
+	 */
+	private static List<Integer> bruteForce(final double[] data,int radius,int count)
+	{
+		final List<Integer> candidates = new ArrayList<>();
+outer:
+		for ( int i = radius ; i < data.length-radius ; i++ )
+		{
+			for ( int j = i-radius ; j < i ; j++ ) {
+				if ( data[j] >= data[i] ) {
+					continue outer;
+				}
+			}
+			for ( int j = i+1 ; j < i+radius ; j++ ) {
+				if ( data[j] >= data[i] ) {
+					continue outer;
+				}
+			}
+			candidates.add( i );
+		}
+		Collections.sort( candidates , new Comparator<Integer>() {
+
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return Double.compare( data[o2] , data[o1] );
+			}
+		});
+		return candidates.size() > count ? candidates.subList( 0 , count ) : candidates;
+	}
+
+	public void testMatchesBruteForce()
+	{
+		final Random rnd = new Random(42);
+		final PeakFinder finder = new PeakFinder( Interpolation.NONE );
+		for ( int run = 0 ; run < 200 ; run++ )
+		{
+			final double[] data = new double[ 10 + rnd.nextInt( 500 ) ];
+			for ( int i = 0 ; i < data.length ; i++ ) {
+				// coarse values to provoke ties
+				data[i] = rnd.nextInt( 50 );
+			}
+			final int radius = 1 + rnd.nextInt( data.length / 4 );
+			final int count = 1 + rnd.nextInt( 6 );
+
+			final List<Integer> expected = bruteForce( data , radius , count );
+			final List<Peak> actual = finder.findPeaks( data , radius , data.length-radius , radius , count );
+			assertEquals( expected.size() , actual.size() );
+			for ( int i = 0 ; i < expected.size() ; i++ ) {
+				// peaks are strict maxima within their neighbourhood , so values are unique per position but
+				// may tie between distant peaks
+				assertEquals( data[ expected.get(i) ] , actual.get(i).value , 0 );
+				assertEquals( data[ actual.get(i).index ] , actual.get(i).value , 0 );
+			}
+		}
+	}
+
+	public void testStrongestFirst()
+	{
+		final double[] data = { 0 , 5 , 0 , 9 , 0 , 7 , 0 , 1 , 0 };
+		final List<Peak> peaks = new PeakFinder( Interpolation.NONE ).findPeaks( data , 0 , data.length , 1 , 2 );
+		assertEquals( 2 , peaks.size() );
+		assertEquals( 3 , peaks.get(0).index );
+		assertEquals( 5 , peaks.get(1).index );
+	}
+
+	public void testInterpolation()
+	{
+		// samples of a Gaussian centered at 10.3
+		final double[] data = new double[ 20 ];
+		for ( int i = 0 ; i < data.length ; i++ ) {
+			data[i] = Math.exp( -Math.pow( i - 10.3 , 2 ) / 4 );
+		}
+		final Peak gaussian = new PeakFinder( Interpolation.GAUSSIAN ).findPeaks( data , 1 , data.length-1 , 3 , 1 ).get(0);
+		assertEquals( 10 , gaussian.index );
+		assertEquals( 10.3 , gaussian.position , 1e-9 );
+
+		final Peak parabolic = new PeakFinder( Interpolation.PARABOLIC ).findPeaks( data , 1 , data.length-1 , 3 , 1 ).get(0);
+		assertEquals( 10.3 , parabolic.position , 0.05 );
+	}
+}
@@ -0,0 +1,61 @@
+package de.codesourcery.fft;
+
+import junit.framework.TestCase;
+
+public class PitchTrackerTest extends TestCase {
+
+	private static final double SAMPLE_RATE = TestSignals.SAMPLE_RATE;
+	private static final int FFT_SIZE = TestSignals.FFT_SIZE;
+
+	/*
+	 * Power spectrum of a tone with 6 harmonics plus some noise , a fundamental of 0 yields noise only.
+	 */
+	private static double[] powerSpectrum(double fundamental,double noise,long seed)
+	{
+		final double[] fundamentals = fundamental > 0 ? new double[] { fundamental } : new double[0];
+		return TestSignals.powerSpectrum( fundamentals , 1 , 6 , noise , seed );
+	}
+
+	public void testHeldNoteUsesNarrowSearch()
+	{
+		final PitchTracker tracker = new PitchTracker();
+		final HarmonicProductSpectrum hps = new HarmonicProductSpectrum();
+		// slowly drifting note , narrow search must yield the same result as a full search
+		for ( int frame = 0 ; frame < 10 ; frame++ )
+		{
+			final double[] power = powerSpectrum( 110 + frame * 0.2 , 0.01 , frame );
+			assertEquals( hps.detectPitch( power , FFT_SIZE , SAMPLE_RATE ) , tracker.track( power , FFT_SIZE , SAMPLE_RATE ) , 1e-9 );
+			assertTrue( tracker.isLocked() );
+		}
+		assertEquals( 1 , tracker.getFullSearchCount() );
+	}
+
+	public void testNoteChangeTriggersFullSearch()
+	{
+		final PitchTracker tracker = new PitchTracker();
+		assertEquals( 110 , tracker.track( powerSpectrum( 110 , 0.01 , 1 ) , FFT_SIZE , SAMPLE_RATE ) , 1.0 );
+		assertEquals( 196 , tracker.track( powerSpectrum( 196 , 0.01 , 2 ) , FFT_SIZE , SAMPLE_RATE ) , 1.0 );
+		assertEquals( 2 , tracker.getFullSearchCount() );
+		assertTrue( tracker.isLocked() );
+	}
+
+	public void testNoiseLosesLock()
+	{
+		final PitchTracker tracker = new PitchTracker();
+		tracker.track( powerSpectrum( 110 , 0.01 , 1 ) , FFT_SIZE , SAMPLE_RATE );
+		assertTrue( tracker.isLocked() );
+		assertTrue( Double.isNaN( tracker.track( powerSpectrum( 0 , 1 , 2 ) , FFT_SIZE , SAMPLE_RATE ) ) );
+		assertFalse( tracker.isLocked() );
+	}
+
+	public void testPeriodicFullSearch()
+	{
+		final PitchTracker tracker = new PitchTracker( new HarmonicProductSpectrum() , PitchTracker.DEFAULT_MIN_CONFIDENCE , 4 );
+		final double[] power = powerSpectrum( 146.83 , 0.01 , 1 );
+		for ( int frame = 0 ; frame < 10 ; frame++ ) {
+			tracker.track( power , FFT_SIZE , SAMPLE_RATE );
+		}
+		// frames 0 , 5
+		assertEquals( 2 , tracker.getFullSearchCount() );
+	}
+}
@@ -0,0 +1,77 @@
+package de.codesourcery.fft;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.SilenceGate.Detector;
+
+public class SilenceGateTest extends TestCase {
+
+	private static final double FULL_SCALE = 32768;
+	private static final int CHUNK_SIZE = 4096;
+
+	private static double[] sine(double level,double frequency)
+	{
+		// RMS of a sine is amplitude / sqrt(2)
+		final double amplitude = Math.pow( 10 , level / 20 ) * FULL_SCALE * Math.sqrt( 2 );
+		final double[] result = new double[ CHUNK_SIZE ];
+		for ( int i = 0 ; i < result.length ; i++ ) {
+			result[i] = amplitude * Math.sin( 2*Math.PI*frequency*i / 44100.0 );
+		}
+		return result;
+	}
+
+	private static double[] noise(double level)
+	{
+		final Random rnd = new Random(42);
+		final double[] result = new double[ CHUNK_SIZE ];
+		for ( int i = 0 ; i < result.length ; i++ ) {
+			result[i] = rnd.nextGaussian() * Math.pow( 10 , level / 20 ) * FULL_SCALE;
+		}
+		return result;
+	}
+
+	public void testRms()
+	{
+		final double[] data = sine( -20 , 440 );
+		for ( int i = 0 ; i < data.length ; i++ ) {
+			data[i] += 1000; // DC offset
+		}
+		assertEquals( 0.1 , SilenceGate.rms( data ) / FULL_SCALE , 1e-3 );
+	}
+
+	public void testHysteresis()
+	{
+		final Detector gate = SilenceGate.DEFAULT.createDetector();
+
+		assertFalse( gate.process( sine( -60 , 440 ) , FULL_SCALE ) );
+		// between close and open level , still closed
+		assertFalse( gate.process( sine( -48 , 440 ) , FULL_SCALE ) );
+		assertTrue( gate.process( sine( -40 , 440 ) , FULL_SCALE ) );
+		// between close and open level , stays open
+		assertTrue( gate.process( sine( -48 , 440 ) , FULL_SCALE ) );
+
+		// closes only after DEFAULT_HOLD_CHUNKS quiet chunks
+		for ( int i = 1 ; i < SilenceGate.DEFAULT_HOLD_CHUNKS ; i++ ) {
+			assertTrue( gate.process( sine( -60 , 440 ) , FULL_SCALE ) );
+		}
+		assertFalse( gate.process( sine( -60 , 440 ) , FULL_SCALE ) );
+	}
+
+	public void testFlatnessCheck()
+	{
+		final SilenceGate gate = SilenceGate.DEFAULT.withMaxFlatness( SilenceGate.DEFAULT_MAX_FLATNESS );
+		assertFalse( gate.createDetector().process( noise( -20 ) , FULL_SCALE ) );
+		assertTrue( gate.createDetector().process( sine( -20 , 440 ) , FULL_SCALE ) );
+		assertTrue( SilenceGate.DEFAULT.createDetector().process( noise( -20 ) , FULL_SCALE ) );
+	}
+
+	public void testSilentSpectrum()
+	{
+		final Spectrum s = Spectrum.silent( 1024 , 44100 , true , false , 0.01 );
+		assertTrue( s.isSilent() );
+		assertSame( s.getData() , Spectrum.silent( 1024 , 44100 , true , false , 0.01 ).getData() );
+		assertFalse( s.hasFundamentalFrequency() );
+		assertTrue( s.getPitchSet().isEmpty() );
+	}
+}
@@ -0,0 +1,90 @@
+package de.codesourcery.fft;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+public class SpectrumTest extends TestCase {
+
+	private static final int FFT_SIZE = 1024;
+	private static final double SAMPLE_RATE = 1024; // 1 Hz per bin
+
+	private static Spectrum createSpectrum(double[] power)
+	{
+		double min = Double.MAX_VALUE;
+		double max = -Double.MAX_VALUE;
+		for ( int i = 1 ; i < power.length ; i++ ) {
+			min = Math.min( min , power[i] );
+			max = Math.max( max , power[i] );
+		}
+		return new Spectrum( power , null , FFT_SIZE , SAMPLE_RATE , false , min , max , false , 0.5 );
+	}
+
+	private static double[] noiseWithTones()
+	{
+		final double[] power = new double[ FFT_SIZE ];
+		Arrays.fill( power , 1 );
+		power[100] = 2000;
+		power[300] = 1000;
+		return power;
+	}
+
+	public void testDerivedValuesAreCached()
+	{
+		final Spectrum s = createSpectrum( noiseWithTones() );
+		assertSame( s.getDecibels() , s.getDecibels() );
+		assertSame( s.getLogScaledData() , s.getLogScaledData() );
+		assertSame( s.getOctaveBandEnergies() , s.getOctaveBandEnergies() );
+		assertSame( s.getPowerPeaks() , s.getPowerPeaks() );
+		assertSame( s.getTopAutoCorrelated() , s.getTopAutoCorrelated() );
+		assertSame( s.getPitchSet() , s.getPitchSet() );
+		assertTrue( s.getTopAutoCorrelated().isEmpty() );
+	}
+
+	public void testDerivedValues()
+	{
+		final Spectrum s = createSpectrum( noiseWithTones() );
+
+		assertEquals( 0 , s.getDecibels()[100] , 1e-9 );
+		assertEquals( -10*Math.log10( 2000 ) , s.getDecibels()[5] , 1e-9 );
+
+		assertEquals( 1 , s.getNoiseFloor() , 0 );
+
+		// 509 bins of power 1 plus two tones at 100 and 300 Hz
+		final double expectedCentroid = ( 2000*100 + 1000*300 + (511*512/2 - 100 - 300) ) / ( 3000.0 + 509 );
+		assertEquals( expectedCentroid , s.getSpectralCentroid() , 1e-9 );
+
+		assertEquals( 2 , s.getPowerPeaks().size() );
+		assertEquals( 100 , s.getFrequencyForBin( s.getPowerPeaks().get(0).position ) , 0.5 );
+
+		// 100 Hz falls into the 125 Hz octave band (88..177 Hz) , 300 Hz into the 250 Hz one
+		final double[] octaves = s.getOctaveBandEnergies();
+		assertEquals( 2000 + ( 177 - 88 ) , octaves[2] , 1 );
+		assertEquals( 1000 + ( 354 - 177 ) , octaves[3] , 1 );
+		assertEquals( 0 , octaves[9] , 0 );
+	}
+
+	public void testConcurrentFirstAccess() throws InterruptedException
+	{
+		final Spectrum s = createSpectrum( noiseWithTones() );
+		final double[][] results = new double[8][];
+		final Thread[] threads = new Thread[ results.length ];
+		for ( int i = 0 ; i < threads.length ; i++ )
+		{
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					results[index] = s.getDecibels();
+				}
+			};
+			threads[i].start();
+		}
+		for ( Thread t : threads ) {
+			t.join();
+		}
+		for ( double[] result : results ) {
+			assertTrue( Arrays.equals( results[0] , result ) );
+		}
+	}
+}
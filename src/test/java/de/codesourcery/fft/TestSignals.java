@@ -0,0 +1,53 @@
+package de.codesourcery.fft;
+
+import java.util.Random;
+
+import edu.emory.mathcs.jtransforms.fft.DoubleFFT_1D;
+
+/**
+ * Synthetic test signals shared by the pitch detection tests.
+ */
+final class TestSignals {
+
+	public static final double SAMPLE_RATE = 44100;
+	public static final int FFT_SIZE = 8192;
+
+	private TestSignals() {
+	}
+
+	/**
+	 * Returns the power spectrum of a Hann-windowed mix of harmonic tones plus white noise.
+	 *
+	 * Harmonic <code>h</code> of each tone has an amplitude of <code>1/h</code> and a phase offset of <code>h</code> radians
+	 * (so the harmonics don't add up to sharp spikes).
+	 *
+	 * @param fundamentals fundamental frequencies of the tones , may be empty for noise only
+	 * @param firstHarmonic first harmonic to include (1 = fundamental)
+	 * @param lastHarmonic last harmonic to include
+	 * @param noise standard deviation of the noise
+	 * @param seed seed for the noise
+	 * @return power spectrum with {@link #FFT_SIZE} bins
+	 */
+	public static double[] powerSpectrum(double[] fundamentals,int firstHarmonic,int lastHarmonic,double noise,long seed)
+	{
+		final Random rnd = new Random( seed );
+		final double[] fftData = new double[ FFT_SIZE * 2 ];
+		for ( int i = 0 ; i < FFT_SIZE ; i++ )
+		{
+			double sample = noise * rnd.nextGaussian();
+			for ( double f : fundamentals ) {
+				for ( int h = firstHarmonic ; h <= lastHarmonic ; h++ ) {
+					sample += Math.sin( 2*Math.PI*f*h*i / SAMPLE_RATE + h ) / h;
+				}
+			}
+			final double window = 0.5 - 0.5*Math.cos( 2*Math.PI*i / ( FFT_SIZE-1 ) );
+			fftData[2*i] = sample * window;
+		}
+		new DoubleFFT_1D( FFT_SIZE ).complexForward( fftData );
+		final double[] result = new double[ FFT_SIZE ];
+		for ( int bin = 0 ; bin < FFT_SIZE ; bin++ ) {
+			result[bin] = fftData[2*bin]*fftData[2*bin] + fftData[2*bin+1]*fftData[2*bin+1];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,75 @@
+package de.codesourcery.fft;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.TuningHelper.Key;
+import de.codesourcery.fft.TuningHelper.KeyMatch;
+
+public class TuningHelperTest extends TestCase {
+
+	@Override
+	protected void tearDown() throws Exception {
+		TuningHelper.setReferencePitch( TuningHelper.DEFAULT_REFERENCE_PITCH );
+	}
+
+	private static int roundedKeyIndex(double frequency,double a4)
+	{
+		return (int) Math.round( 12.0 * Math.log( frequency / a4 ) / Math.log(2) + 49 );
+	}
+
+	public void testLookupMatchesRounding()
+	{
+		final Random rnd = new Random(42);
+		final KeyMatch match = new KeyMatch();
+		for ( int i = 0 ; i < 100000 ; i++ )
+		{
+			final double frequency = 20 + rnd.nextDouble() * 4500;
+			final int expected = roundedKeyIndex( frequency , 440 );
+			final int actual = TuningHelper.frequencyToKeyIndex( frequency );
+			if ( expected < 1 || expected > 88 ) {
+				assertEquals( -1 , actual );
+			} else {
+				assertEquals( "Frequency "+frequency , expected , actual );
+			}
+
+			assertEquals( actual > 0 , TuningHelper.lookup( frequency , match ) );
+			assertEquals( actual , match.keyIndex );
+			if ( actual > 0 )
+			{
+				assertTrue( Math.abs( match.cents ) <= 50 + 1e-9 );
+				final double expectedFrequency = TuningHelper.keyToFrequency( actual ) * Math.pow( 2 , match.cents / 1200 );
+				assertEquals( frequency , expectedFrequency , 1e-9 * frequency );
+			}
+		}
+	}
+
+	public void testKeysAreShared()
+	{
+		assertSame( TuningHelper.getKey( 49 ) , TuningHelper.getKey( 49 ) );
+		assertEquals( "A4" , TuningHelper.getKey( 49 ).getName() );
+		assertEquals( 440 , TuningHelper.getKey( 49 ).getTargetFrequency() , 0 );
+		assertEquals( "E2" , TuningHelper.frequencyToKey( 82.41 ) );
+		assertNull( TuningHelper.getKey( 0 ) );
+		assertNull( TuningHelper.getKey( 89 ) );
+		assertNull( TuningHelper.frequencyToKey( Double.NaN ) );
+	}
+
+	public void testReferencePitch()
+	{
+		final Key before = TuningHelper.getKey( 49 );
+		TuningHelper.setReferencePitch( 440 );
+		assertSame( before , TuningHelper.getKey( 49 ) );
+
+		TuningHelper.setReferencePitch( 432 );
+		assertEquals( 432 , TuningHelper.getReferencePitch() , 0 );
+		assertEquals( 432 , TuningHelper.getKey( 49 ).getTargetFrequency() , 0 );
+		assertEquals( 432*2 , TuningHelper.keyToFrequency( 61 ) , 1e-9 );
+
+		// 440 Hz is +31.8 cents relative to A4 = 432 Hz
+		final KeyMatch match = new KeyMatch();
+		assertTrue( TuningHelper.lookup( 440 , match ) );
+		assertEquals( 49 , match.keyIndex );
+		assertEquals( 1200 * Math.log( 440 / 432.0 ) / Math.log( 2 ) , match.cents , 1e-9 );
+	}
+}
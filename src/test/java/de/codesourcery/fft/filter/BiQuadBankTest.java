@@ -0,0 +1,55 @@
+package de.codesourcery.fft.filter;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+
+public class BiQuadBankTest extends TestCase {
+
+	private static final BiQuadCoefficients[] DESIGN = {
+		BiQuadCoefficients.design( BiQuadType.HIGHPASS , 200 , 44100 , 1 , 6 ),
+		BiQuadCoefficients.design( BiQuadType.LOWPASS , 18000 , 44100 , 1 , 6 )
+	};
+
+	public void testChannelsAreFilteredIndependently() 
+	{
+		final int channels = 3;
+		final int frames = 5000;
+
+		final Random rnd = new Random(0x1234);
+		final double[] interleaved = new double[ frames * channels ];
+		for ( int i = 0 ; i < interleaved.length ; i++ ) {
+			interleaved[i] = rnd.nextGaussian()*1000;
+		}
+
+		final BiQuadBank bank = new BiQuadBank( channels , DESIGN );
+		final double[] actual = new double[ interleaved.length ];
+		// process in two blocks to make sure per-channel state is carried over
+		bank.process( interleaved , 0 , actual , 0 , 999*channels );
+		bank.process( interleaved , 999*channels , actual , 999*channels , interleaved.length - 999*channels );
+
+		for ( int channel = 0 ; channel < channels ; channel++ ) 
+		{
+			final double[] mono = new double[ frames ];
+			for ( int i = 0 ; i < frames ; i++ ) {
+				mono[i] = interleaved[ i*channels + channel ];
+			}
+			new BiQuadCascade( DESIGN ).filter( mono );
+
+			for ( int i = 0 ; i < frames ; i++ ) {
+				assertEquals( "Channel "+channel+" , frame "+i , mono[i] , actual[ i*channels + channel ] , 1e-9 );
+			}
+		}
+	}
+
+	public void testRejectsPartialFrames() 
+	{
+		try {
+			new BiQuadBank( 2 , DESIGN ).process( new double[3] , 0 , new double[3] , 0 , 3 );
+			fail("Should have failed");
+		} catch(IllegalArgumentException e) {
+			// ok
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package de.codesourcery.fft.filter;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+
+public class BiQuadCascadeTest extends TestCase {
+
+	private static final double EPSILON = 1e-9;
+
+	private static double[] randomSignal(int len) 
+	{
+		final Random rnd = new Random(0xdeadbeef);
+		final double[] result = new double[len];
+		for ( int i = 0 ; i < len ; i++ ) {
+			result[i] = rnd.nextGaussian()*10000;
+		}
+		return result;
+	}
+
+	private static BiQuadFilter[] sections(int count) 
+	{
+		final BiQuadFilter[] result = new BiQuadFilter[count];
+		for ( int i = 0 ; i < count ; i++ ) 
+		{
+			final BiQuadType type = (i % 2) == 0 ? BiQuadType.HIGHPASS : BiQuadType.LOWPASS;
+			result[i] = BiQuadFilter.create( type , (i % 2) == 0 ? 200+i*50 : 18000-i*500 , 44100 , 1 , 6 );
+		}
+		return result;
+	}
+
+	public void testFusedCascadeMatchesMultiPassCascade() 
+	{
+		for ( int sectionCount = 1 ; sectionCount <= 4 ; sectionCount++ ) 
+		{
+			final double[] input = randomSignal( 10000 );
+
+			final double[] expected = new FilterCascade( sections( sectionCount ) ).filter( input.clone() );
+
+			final double[] actual = new double[ input.length ];
+			new BiQuadCascade( sections( sectionCount ) ).process( input , 0 , actual , 0 , input.length );
+
+			for ( int i = 0 ; i < input.length ; i++ ) {
+				assertEquals( "Mismatch at "+i+" with "+sectionCount+" sections" , expected[i] , actual[i] , EPSILON*Math.max(1,Math.abs(expected[i])) );
+			}
+		}
+	}
+
+	public void testBlockwiseProcessingMatchesSinglePass() 
+	{
+		final double[] input = randomSignal( 10000 );
+		final double[] expected = new BiQuadCascade( sections(2) ).filter( input.clone() );
+
+		final BiQuadCascade filter = new BiQuadCascade( sections(2) );
+		final double[] output = new double[ input.length + 7 ];
+		int offset = 0;
+		int blockSize = 1;
+		while ( offset < input.length ) 
+		{
+			final int len = Math.min( blockSize , input.length - offset );
+			filter.process( input , offset , output , offset+7 , len );
+			offset += len;
+			blockSize = blockSize*2+1;
+		}
+
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			assertEquals( expected[i] , output[i+7] , 0 );
+		}
+	}
+
+	public void testReset() 
+	{
+		final double[] input = randomSignal( 1000 );
+		final BiQuadCascade filter = new BiQuadCascade( sections(3) );
+
+		final double[] first = new double[ input.length ];
+		filter.process( input , 0 , first , 0 , input.length );
+
+		filter.reset();
+		final double[] second = new double[ input.length ];
+		filter.process( input , 0 , second , 0 , input.length );
+
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			assertEquals( first[i] , second[i] , 0 );
+		}
+	}
+}
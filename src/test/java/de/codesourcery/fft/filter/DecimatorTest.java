@@ -0,0 +1,68 @@
+package de.codesourcery.fft.filter;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class DecimatorTest extends TestCase {
+
+	private static double[] sine(double frequency,double sampleRate,int len)
+	{
+		final double[] result = new double[ len ];
+		for ( int i = 0 ; i < len ; i++ ) {
+			result[i] = Math.sin( 2*Math.PI*frequency*i / sampleRate );
+		}
+		return result;
+	}
+
+	private static double rms(double[] data,int from)
+	{
+		double sum = 0;
+		for ( int i = from ; i < data.length ; i++ ) {
+			sum += data[i]*data[i];
+		}
+		return Math.sqrt( sum / ( data.length - from ) );
+	}
+
+	public void testPassBandIsPreservedAndAliasesAreSuppressed()
+	{
+		for ( int factor : new int[] { 2 , 3 , 8 , 12 , 16 } )
+		{
+			final double[] inBand = new Decimator( factor ).decimate( sine( 100 , 44100 , 44100 ) );
+			assertEquals( 44100 / factor , inBand.length , 1 );
+			assertEquals( "factor "+factor , Math.sqrt(0.5) , rms( inBand , 100 ) , 0.01 );
+
+			// would alias to 44100/factor - 100 Hz without filtering
+			final double[] outOfBand = new Decimator( factor ).decimate( sine( 44100.0 / factor - 100 , 44100 , 44100 ) );
+			assertTrue( "factor "+factor+": "+rms( outOfBand , 100 ) , rms( outOfBand , 100 ) < 0.01 );
+		}
+	}
+
+	public void testBlockwiseProcessingMatchesSinglePass()
+	{
+		final Random rnd = new Random(42);
+		final double[] input = new double[ 10000 ];
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			input[i] = rnd.nextGaussian();
+		}
+
+		final Decimator decimator = new Decimator( 8 );
+		final double[] expected = decimator.decimate( input );
+
+		decimator.reset();
+		final double[] actual = new double[ decimator.getMaxOutputLength( input.length ) + 8 ];
+		int written = 0;
+		int offset = 0;
+		while ( offset < input.length )
+		{
+			final int len = Math.min( 1+rnd.nextInt( 100 ) , input.length - offset );
+			written += decimator.process( input , offset , len , actual , written );
+			offset += len;
+		}
+
+		assertEquals( expected.length , written );
+		for ( int i = 0 ; i < written ; i++ ) {
+			assertEquals( "Mismatch at "+i , expected[i] , actual[i] , 1e-9 );
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package de.codesourcery.fft.filter;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FastConvolutionFilterTest extends TestCase {
+
+	private static double[] directConvolution(double[] x,double[] h) 
+	{
+		final double[] result = new double[ x.length ];
+		for ( int n = 0 ; n < x.length ; n++ ) 
+		{
+			double sum = 0;
+			for ( int k = 0 ; k < h.length && k <= n ; k++ ) {
+				sum += h[k] * x[n-k];
+			}
+			result[n] = sum;
+		}
+		return result;
+	}
+
+	public void testMatchesDirectConvolutionWhenStreaming() 
+	{
+		final Random rnd = new Random(42);
+		final double[] input = new double[ 20000 ];
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			input[i] = rnd.nextGaussian()*1000;
+		}
+
+		final FIRKernel kernel = FIRKernel.lowPass( 1000 , 44100 , 1001 );
+		final double[] expected = directConvolution( input , kernel.getTaps() );
+
+		final FastConvolutionFilter filter = new FastConvolutionFilter( kernel );
+		final double[] actual = new double[ input.length ];
+		int offset = 0;
+		while ( offset < input.length ) 
+		{
+			// mix of blocks smaller and larger than the FFT block size
+			final int len = Math.min( 1+rnd.nextInt( 3*kernel.getBlockSize() ) , input.length - offset );
+			filter.process( input , offset , actual , offset , len );
+			offset += len;
+		}
+
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			assertEquals( "Mismatch at "+i , expected[i] , actual[i] , 1e-6 );
+		}
+	}
+
+	public void testInPlaceAndReset() 
+	{
+		final double[] input = new double[ 5000 ];
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			input[i] = Math.sin( i * 0.1 );
+		}
+		final FastConvolutionFilter filter = new FastConvolutionFilter( FIRKernel.highPass( 500 , 44100 , 255 ) );
+		final double[] first = filter.filter( input.clone() );
+		filter.reset();
+		final double[] second = filter.filter( input.clone() );
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			assertEquals( first[i] , second[i] , 0 );
+		}
+	}
+
+	public void testLowPassAttenuatesStopBand() 
+	{
+		final FIRKernel kernel = FIRKernel.lowPass( 1000 , 44100 , 2001 );
+		final double[] input = new double[ 44100 ];
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			input[i] = Math.sin( 2*Math.PI*5000*i/44100.0 );
+		}
+		final double[] output = new FastConvolutionFilter( kernel ).filter( input );
+		double max = 0;
+		for ( int i = kernel.getLength() ; i < output.length ; i++ ) {
+			max = Math.max( max , Math.abs( output[i] ) );
+		}
+		assertTrue( "Stop-band not attenuated: "+max , max < 1e-3 );
+	}
+}
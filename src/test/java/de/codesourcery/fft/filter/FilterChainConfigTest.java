@@ -0,0 +1,44 @@
+package de.codesourcery.fft.filter;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+import de.codesourcery.fft.filter.FilterChainConfig.Section;
+
+public class FilterChainConfigTest extends TestCase {
+
+	private static final FilterChainConfig CHAIN = new FilterChainConfig(
+			new Section( BiQuadType.HIGHPASS , 200 , 1 , 6 ) ,
+			new Section( BiQuadType.LOWPASS , 18000 , 0.7 , 6 ) );
+
+	public void testDesignsAreCachedPerSampleRate()
+	{
+		final BiQuadCoefficients[] design44 = CHAIN.getDesign( 44100 );
+		assertEquals( 2 , design44.length );
+		assertSame( design44 , CHAIN.getDesign( 44100 ) );
+
+		final BiQuadCoefficients[] design48 = CHAIN.getDesign( 48000 );
+		assertNotSame( design44 , design48 );
+		assertFalse( design44[0].equals( design48[0] ) );
+		assertEquals( BiQuadCoefficients.design( BiQuadType.LOWPASS , 18000 , 48000 , 0.7 , 6 ) , design48[1] );
+	}
+
+	public void testCutOffAboveNyquistIsRejected()
+	{
+		try {
+			CHAIN.getDesign( 22050 );
+			fail("Should've failed");
+		} catch(IllegalArgumentException e) {
+			// ok
+		}
+	}
+
+	public void testEquality()
+	{
+		final FilterChainConfig copy = new FilterChainConfig( CHAIN.getSections() );
+		assertEquals( CHAIN , copy );
+		assertEquals( CHAIN.hashCode() , copy.hashCode() );
+		assertFalse( CHAIN.equals( copy.with( new Section( BiQuadType.NOTCH , 50 , 10 , 0 ) ) ) );
+		assertTrue( FilterChainConfig.EMPTY.isEmpty() );
+		assertEquals( 0 , FilterChainConfig.EMPTY.getDesign( 8000 ).length );
+	}
+}
@@ -0,0 +1,92 @@
+package de.codesourcery.fft.filter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.AudioFile;
+import de.codesourcery.fft.AudioFile.AudioDataIterator;
+import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+
+public class ParallelBiQuadFilterTest extends TestCase {
+
+	private static final BiQuadCoefficients[] DESIGN = {
+		BiQuadCoefficients.design( BiQuadType.HIGHPASS , 200 , 44100 , 1 , 6 ),
+		BiQuadCoefficients.design( BiQuadType.LOWPASS , 18000 , 44100 , 1 , 6 )
+	};
+
+	private ExecutorService executor;
+
+	@Override
+	protected void setUp() throws Exception {
+		executor = Executors.newFixedThreadPool( 4 );
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		executor.shutdownNow();
+	}
+
+	private static double[] readWhiteNoise() throws Exception
+	{
+		final AudioFile file = AudioFile.fromClassPath( "/white_noise.wav" );
+		assertEquals( 1 , file.getFormat().getChannels() );
+		final int frames = (int) file.getTotalFrameCount();
+		final AudioDataIterator it = file.iterator( file.readFrames( 0 , frames ) , 0 );
+		final double[] result = new double[ frames ];
+		for ( int i = 0 ; i < frames ; i++ ) {
+			result[i] = it.next();
+		}
+		return result;
+	}
+
+	private static double peak(double[] data)
+	{
+		double result = 0;
+		for ( double d : data ) {
+			result = Math.max( result , Math.abs( d ) );
+		}
+		return result;
+	}
+
+	public void testErrorStaysWithinToleranceOnWhiteNoise() throws Exception
+	{
+		final double[] input = readWhiteNoise();
+		final double[] expected = new BiQuadCascade( DESIGN ).filter( input.clone() );
+
+		for ( double tolerance : new double[] { 1e-3 , 1e-6 , 1e-9 } )
+		{
+			final ParallelBiQuadFilter filter = new ParallelBiQuadFilter( DESIGN , 16384 , tolerance );
+			final double[] actual = filter.filter( input.clone() , executor );
+
+			final double maxAllowed = tolerance * peak( input );
+			double maxError = 0;
+			for ( int i = 0 ; i < input.length ; i++ ) {
+				maxError = Math.max( maxError , Math.abs( expected[i] - actual[i] ) );
+			}
+			assertTrue( "tolerance "+tolerance+" , warm-up "+filter.getWarmUpLength()+": error "+maxError+" > "+maxAllowed , maxError <= maxAllowed );
+		}
+	}
+
+	public void testWithoutWarmUpChunkBoundariesDeviate() throws Exception
+	{
+		final double[] input = readWhiteNoise();
+		final double[] expected = new BiQuadCascade( DESIGN ).filter( input.clone() );
+		final double[] actual = new ParallelBiQuadFilter( DESIGN , 16384 , 0 ).filter( input.clone() , executor );
+		assertTrue( Math.abs( expected[16384] - actual[16384] ) > 1e-3 * peak( input ) );
+	}
+
+	public void testCompletesWhenExecutorRejectsTasks()
+	{
+		final double[] input = new double[ 100000 ];
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			input[i] = Math.sin( i * 0.01 );
+		}
+		final double[] expected = new BiQuadCascade( DESIGN ).filter( input.clone() );
+		executor.shutdown();
+		final double[] actual = new ParallelBiQuadFilter( DESIGN , 10000 , 1e-9 ).filter( input.clone() , executor );
+		for ( int i = 0 ; i < input.length ; i++ ) {
+			assertEquals( expected[i] , actual[i] , 1e-9 );
+		}
+	}
+}
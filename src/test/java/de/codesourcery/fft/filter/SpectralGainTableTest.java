@@ -0,0 +1,92 @@
+package de.codesourcery.fft.filter;
+
+import junit.framework.TestCase;
+import de.codesourcery.fft.filter.BiQuadFilter.BiQuadType;
+
+public class SpectralGainTableTest extends TestCase {
+
+	private static final double FS = 44100;
+	private static final int FFT_SIZE = 1024;
+
+	private static BiQuadCoefficients[] design()
+	{
+		return new BiQuadCoefficients[] {
+				BiQuadCoefficients.design( BiQuadType.HIGHPASS , 200 , FS , 1 , 6 ) ,
+				BiQuadCoefficients.design( BiQuadType.LOWPASS , 18000 , FS , 1 , 6 ) ,
+				BiQuadCoefficients.design( BiQuadType.PEAK , 1000 , FS , 2 , 6 )
+		};
+	}
+
+	/*
+	 * Filters a unit sine and returns the power gain , measured after the filter has settled.
+	 */
+	private static double measurePowerGain(BiQuadCoefficients[] design,double omega)
+	{
+		final int settle = 20000;
+		final int len = settle + 8 * FFT_SIZE;
+		final double[] input = new double[ len ];
+		for ( int n = 0 ; n < len ; n++ ) {
+			input[n] = Math.sin( omega * n );
+		}
+		final double[] output = new double[ len ];
+		new BiQuadCascade( design ).process( input , 0 , output , 0 , len );
+
+		// correlate with sine and cosine over an integer number of periods (omega is a bin center)
+		double re = 0;
+		double im = 0;
+		for ( int n = settle ; n < len ; n++ )
+		{
+			re += output[n] * Math.sin( omega * n );
+			im += output[n] * Math.cos( omega * n );
+		}
+		final double amplitude = 2 * Math.hypot( re , im ) / ( len - settle );
+		return amplitude * amplitude;
+	}
+
+	public void testPowerResponseMatchesMeasuredResponse()
+	{
+		final BiQuadCoefficients[] design = design();
+		for ( int bin : new int[] { 3 , 5 , 10 , 23 , 50 , 200 , 420 , 500 } )
+		{
+			final double omega = 2 * Math.PI * bin / FFT_SIZE;
+			double expected = 1;
+			for ( BiQuadCoefficients section : design ) {
+				expected *= section.powerResponse( omega );
+			}
+			final double measured = measurePowerGain( design , omega );
+			assertEquals( "Bin "+bin , measured , expected , 1e-3 * Math.max( 1 , measured ) );
+		}
+	}
+
+	public void testGainTable()
+	{
+		final BiQuadCoefficients[] design = design();
+		final double[] gains = SpectralGainTable.getPowerGains( design , FFT_SIZE );
+		assertEquals( FFT_SIZE , gains.length );
+		assertSame( gains , SpectralGainTable.getPowerGains( design() , FFT_SIZE ) );
+
+		for ( int bin = 1 ; bin < FFT_SIZE / 2 ; bin++ )
+		{
+			double expected = 1;
+			for ( BiQuadCoefficients section : design ) {
+				expected *= section.powerResponse( 2 * Math.PI * bin / FFT_SIZE );
+			}
+			assertEquals( expected , gains[bin] , 1e-12 * expected );
+			// negative frequencies
+			assertEquals( gains[bin] , gains[ FFT_SIZE - bin ] , 0 );
+		}
+		for ( int bin : new int[] { 10 , 100 , 400 } ) {
+			assertEquals( measurePowerGain( design , 2 * Math.PI * bin / FFT_SIZE ) , gains[bin] , 1e-3 * Math.max( 1 , gains[bin] ) );
+		}
+	}
+
+	public void testGainTableForDecimatedData()
+	{
+		// bin k of a FFT on data decimated by 4 has the same frequency as bin k of a FFT 4 times larger
+		final double[] decimated = SpectralGainTable.getPowerGains( design() , FFT_SIZE , 4 );
+		final double[] full = SpectralGainTable.getPowerGains( design() , 4 * FFT_SIZE );
+		for ( int bin = 0 ; bin < FFT_SIZE / 2 ; bin++ ) {
+			assertEquals( full[bin] , decimated[bin] , 1e-12 * full[bin] );
+		}
+	}
+}
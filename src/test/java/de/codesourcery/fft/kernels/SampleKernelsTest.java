@@ -0,0 +1,79 @@
+package de.codesourcery.fft.kernels;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class SampleKernelsTest extends TestCase {
+
+	private static final int[] SIZES = { 1 , 2 , 3 , 7 , 8 , 9 , 1023 , 1024 };
+
+	private final Random rnd = new Random(42);
+
+	private double[] random(int len)
+	{
+		final double[] result = new double[ len ];
+		for ( int i = 0 ; i < len ; i++ ) {
+			result[i] = rnd.nextGaussian()*1000;
+		}
+		return result;
+	}
+
+	public void testSelectedImplementationMatchesScalar()
+	{
+		final SampleKernels selected = SampleKernels.getInstance();
+		final SampleKernels scalar = SampleKernels.getScalarInstance();
+		for ( int bins : SIZES )
+		{
+			final double[] fftData = random( 2*bins );
+			final double[] gains = random( bins );
+
+			final double[] sum1 = new double[bins], comp1 = new double[bins];
+			final double[] sum2 = new double[bins], comp2 = new double[bins];
+			for ( int i = 0 ; i < 4 ; i++ )
+			{
+				selected.accumulatePower( fftData , (i & 1) == 0 ? gains : null , sum1 , comp1 , bins );
+				scalar.accumulatePower( fftData , (i & 1) == 0 ? gains : null , sum2 , comp2 , bins );
+			}
+			assertTrue( Arrays.equals( sum1 , sum2 ) );
+			assertTrue( Arrays.equals( comp1 , comp2 ) );
+
+			final double[] data1 = fftData.clone();
+			final double[] data2 = fftData.clone();
+			selected.multiply( data1 , 1 , gains , bins );
+			scalar.multiply( data2 , 1 , gains , bins );
+			assertTrue( Arrays.equals( data1 , data2 ) );
+
+			final double[] minMax1 = new double[2];
+			final double[] minMax2 = new double[2];
+			selected.divideMinMax( data1 , 1 , data1.length , 3 , minMax1 );
+			scalar.divideMinMax( data2 , 1 , data2.length , 3 , minMax2 );
+			assertTrue( Arrays.equals( data1 , data2 ) );
+			assertTrue( Arrays.equals( minMax1 , minMax2 ) );
+		}
+	}
+
+	public void testAccumulatePower()
+	{
+		final double[] fftData = { 3 , 99 , 1 , 2 , -2 , 2 };
+		final double[] sum = new double[3];
+		final double[] compensation = new double[3];
+		final double[] gains = { 1 , 2 , 0.5 };
+		SampleKernels.getScalarInstance().accumulatePower( fftData , gains , sum , compensation , 3 );
+		// bin 0 has no imaginary part
+		assertEquals( 9 , sum[0] , 0 );
+		assertEquals( 10 , sum[1] , 0 );
+		assertEquals( 4 , sum[2] , 0 );
+	}
+
+	public void testDivideMinMax()
+	{
+		final double[] data = { 100 , 4 , -8 , 2 };
+		final double[] minMax = new double[2];
+		SampleKernels.getScalarInstance().divideMinMax( data , 1 , 4 , 2 , minMax );
+		assertTrue( Arrays.equals( new double[] { 100 , 2 , -4 , 1 } , data ) );
+		assertEquals( -4 , minMax[0] , 0 );
+		assertEquals( 2 , minMax[1] , 0 );
+	}
+}
@@ -0,0 +1,112 @@
+package de.codesourcery.fft.kernels;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import jdk.incubator.vector.DoubleVector;
+import junit.framework.TestCase;
+
+public class VectorSampleKernelsTest extends TestCase {
+
+	private static final int LANES = DoubleVector.SPECIES_PREFERRED.length();
+
+	// sizes around multiples of the vector length , to cover ragged tails
+	private static final int[] SIZES = { 1 , 2 , 3 , LANES-1 , LANES , LANES+1 , LANES+2 , 2*LANES-1 , 2*LANES , 2*LANES+1 , 1023 , 1024 , 1025 };
+
+	private final Random rnd = new Random(42);
+
+	private SampleKernels vector;
+	private SampleKernels scalar;
+
+	@Override
+	protected void setUp() throws Exception
+	{
+		vector = VectorSampleKernels.create();
+		scalar = SampleKernels.getScalarInstance();
+		assertNotNull( "Vector kernels not available" , vector );
+		assertEquals( VectorSampleKernels.class , vector.getClass() );
+	}
+
+	private double[] random(int len,double scale)
+	{
+		final double[] result = new double[ len ];
+		for ( int i = 0 ; i < len ; i++ ) {
+			result[i] = rnd.nextGaussian()*scale;
+		}
+		return result;
+	}
+
+	public void testSelectedByDefault()
+	{
+		assertEquals( VectorSampleKernels.class , SampleKernels.getInstance().getClass() );
+	}
+
+	public void testAccumulatePowerMatchesScalar()
+	{
+		for ( int bins : SIZES )
+		{
+			final double[] gains = random( bins , 1 );
+			final double[] sum1 = new double[bins], comp1 = new double[bins];
+			final double[] sum2 = new double[bins], comp2 = new double[bins];
+			for ( int i = 0 ; i < 16 ; i++ )
+			{
+				// alternate between huge and tiny values so the Kahan compensation terms become non-zero
+				final double[] fftData = random( 2*bins , (i % 4) == 0 ? 1e8 : 1e-3 );
+				vector.accumulatePower( fftData , (i & 1) == 0 ? gains : null , sum1 , comp1 , bins );
+				scalar.accumulatePower( fftData , (i & 1) == 0 ? gains : null , sum2 , comp2 , bins );
+			}
+			assertTrue( "Sums differ for "+bins+" bins" , Arrays.equals( sum1 , sum2 ) );
+			assertTrue( "Compensation differs for "+bins+" bins" , Arrays.equals( comp1 , comp2 ) );
+			if ( bins > 1 )
+			{
+				boolean compensated = false;
+				for ( int bin = 1 ; bin < bins ; bin++ ) {
+					compensated |= comp1[bin] != 0;
+				}
+				assertTrue( "No compensation for "+bins+" bins" , compensated );
+			}
+		}
+	}
+
+	public void testMultiplyMatchesScalar()
+	{
+		for ( int len : SIZES )
+		{
+			for ( int offset : new int[] { 0 , 1 , 3 } )
+			{
+				final double[] data = random( offset + len + 2 , 1000 );
+				final double[] factors = random( len , 1 );
+				final double[] data1 = data.clone();
+				final double[] data2 = data.clone();
+				vector.multiply( data1 , offset , factors , len );
+				scalar.multiply( data2 , offset , factors , len );
+				assertTrue( "Mismatch for len "+len+" at offset "+offset , Arrays.equals( data1 , data2 ) );
+			}
+		}
+	}
+
+	public void testDivideMinMaxMatchesScalar()
+	{
+		for ( int len : SIZES )
+		{
+			for ( int from : new int[] { 0 , 1 , 3 } )
+			{
+				final double[] data = random( from + len + 2 , 1000 );
+				final double[] data1 = data.clone();
+				final double[] data2 = data.clone();
+				final double[] minMax1 = new double[2];
+				final double[] minMax2 = new double[2];
+				vector.divideMinMax( data1 , from , from + len , 3 , minMax1 );
+				scalar.divideMinMax( data2 , from , from + len , 3 , minMax2 );
+				assertTrue( "Mismatch for len "+len+" from "+from , Arrays.equals( data1 , data2 ) );
+				assertTrue( "Min/max mismatch for len "+len+" from "+from , Arrays.equals( minMax1 , minMax2 ) );
+			}
+		}
+
+		// empty range
+		final double[] minMax = new double[2];
+		vector.divideMinMax( new double[4] , 2 , 2 , 3 , minMax );
+		assertEquals( Double.MAX_VALUE , minMax[0] , 0 );
+		assertEquals( -Double.MAX_VALUE , minMax[1] , 0 );
+	}
+}